@@ -0,0 +1,367 @@
+package com.headstartech.scheelite.actor;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.concurrent.EntityStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Processes events for many entities using a single {@link StateMachine}, running each active entity as an actor
+ * with its own thread and mailbox.
+ *
+ * The threads are virtual threads when running on Java 21 or later (see {@link VirtualThreads}), so states and actions
+ * may block, e.g. on remote I/O, and the thread just parks. The actor of an entity is started by the first event
+ * submitted for it, loading the context and state id with the {@link EntityStore}, and processes the events in its
+ * mailbox strictly in submission order, saving the state id after each event. An actor without events for the
+ * passivation timeout is passivated: it's removed and its thread terminates, the entity being represented by its
+ * saved state id until it gets another event. So memory and threads are only used by the active entities.
+ *
+ * Submitting and passivating use locks and lock-free queues rather than monitors, so a virtual thread waiting for
+ * another never pins its carrier thread. If processing an event fails, its future fails and processing continues
+ * with the next event, the state of the entity being the state before the failing event. If an {@link Error} is
+ * thrown, the actor is removed and the futures of its remaining events fail, the entity being loaded again on the
+ * next event.
+ *
+ * @param <K> entity key type
+ * @param <T> context type
+ * @param <U> state id type
+ */
+public class ActorStateMachineExecutor<K, T, U> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActorStateMachineExecutor.class);
+
+    private static final long DEFAULT_PASSIVATION_TIMEOUT_MILLIS = 60000;
+
+    private final StateMachine<T, U> stateMachine;
+    private final EntityStore<K, T, U> entityStore;
+    private final long passivationTimeoutNanos;
+    private final ThreadFactory threadFactory;
+    private final ConcurrentMap<K, Actor> actors;
+    private final AtomicInteger activeActors;
+    private final CountDownLatch terminated;
+    private final ReentrantLock startLock = new ReentrantLock();
+    private volatile boolean shutdown;  // set holding startLock
+
+    private ActorStateMachineExecutor(Builder<K, T, U> builder) {
+        this.stateMachine = builder.stateMachine;
+        this.entityStore = builder.entityStore;
+        this.passivationTimeoutNanos = builder.passivationTimeoutNanos;
+        this.threadFactory = builder.threadFactory;
+        this.actors = Maps.newConcurrentMap();
+        this.activeActors = new AtomicInteger();
+        this.terminated = new CountDownLatch(1);
+    }
+
+    public static <K, T, U> Builder<K, T, U> newBuilder(StateMachine<T, U> stateMachine, EntityStore<K, T, U> entityStore) {
+        return new Builder<K, T, U>(stateMachine, entityStore);
+    }
+
+    /**
+     * Submits an event for an entity, starting its actor if it's not active.
+     *
+     * @param key the entity key
+     * @param event the event
+     * @return a future completing with the state id of the entity after the event has been processed, or failing
+     * with the exception thrown processing the event (or loading or saving the entity)
+     * @throws RejectedExecutionException if the executor has been shut down
+     */
+    public ListenableFuture<U> submit(K key, Object event) {
+        checkNotNull(key);
+        checkNotNull(event);
+
+        Task<U> task = new Task<U>(event);
+        while (true) {
+            rejectIfShutdown();
+            Actor actor = actors.get(key);
+            if (actor == null) {
+                actor = startActor(key);
+            }
+            if (actor.offer(task)) {
+                return task.future;
+            }
+            // passivated after being looked up, it's removed before the lock is released
+        }
+    }
+
+    private Actor startActor(K key) {
+        Actor actor;
+        startLock.lock();
+        try {
+            // checked holding the lock shutdown takes, so no actor is started once shut down
+            rejectIfShutdown();
+            actor = actors.get(key);
+            if (actor != null) {
+                return actor;
+            }
+            actor = new Actor(key);
+            actors.put(key, actor);
+            activeActors.incrementAndGet();
+        } finally {
+            startLock.unlock();
+        }
+        threadFactory.newThread(actor).start();
+        return actor;
+    }
+
+    private void rejectIfShutdown() {
+        if (shutdown) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+    }
+
+    /**
+     * Initiates an orderly shutdown, the events already submitted are processed but no new events are accepted. The
+     * actors are passivated when their mailboxes are empty.
+     */
+    public void shutdown() {
+        startLock.lock();
+        try {
+            shutdown = true;
+        } finally {
+            startLock.unlock();
+        }
+        for (Actor actor : actors.values()) {
+            actor.wakeUp();
+        }
+        terminateIfIdle();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Waits for all actors to be passivated after a shutdown.
+     *
+     * @return <code>true</code> if terminated, <code>false</code> if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * Gets the number of active (not passivated) actors.
+     */
+    public int getActiveActorCount() {
+        return activeActors.get();
+    }
+
+    private void terminateIfIdle() {
+        if (shutdown && activeActors.get() == 0) {
+            terminated.countDown();
+        }
+    }
+
+    private final class Actor implements Runnable {
+
+        private final K key;
+        private final Queue<Task<U>> mailbox = new ConcurrentLinkedQueue<Task<U>>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean passivated;  // guarded by lock
+        private volatile Thread thread;
+        private T context;
+        private U stateId;
+
+        private Actor(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds a task to the mailbox.
+         *
+         * @return <code>false</code> if the actor has been passivated
+         */
+        private boolean offer(Task<U> task) {
+            lock.lock();
+            try {
+                if (passivated) {
+                    return false;
+                }
+                mailbox.add(task);
+            } finally {
+                lock.unlock();
+            }
+            wakeUp();
+            return true;
+        }
+
+        private void wakeUp() {
+            // the thread is set before the mailbox is first polled, if not set yet the task is seen anyway
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                if (!load()) {
+                    return;
+                }
+                long idleSince = System.nanoTime();
+                while (true) {
+                    Task<U> task = mailbox.poll();
+                    if (task != null) {
+                        process(task);
+                        idleSince = System.nanoTime();
+                        continue;
+                    }
+                    long idleNanos = System.nanoTime() - idleSince;
+                    if (shutdown || idleNanos >= passivationTimeoutNanos) {
+                        if (passivate()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, passivationTimeoutNanos - idleNanos);
+                }
+            } catch (RuntimeException e) {
+                logger.error("actor failed, remaining events not processed: key={}", key, e);
+                passivateAndFail(e);
+            } catch (Error e) {
+                logger.error("actor failed, remaining events not processed: key={}", key, e);
+                passivateAndFail(e);
+            }
+        }
+
+        private boolean load() {
+            try {
+                context = entityStore.getContext(key);
+                stateId = entityStore.getStateId(key, context);
+                return true;
+            } catch (Exception e) {
+                // the events already submitted fail, the entity is loaded again on the next event
+                passivateAndFail(e);
+                return false;
+            }
+        }
+
+        private void process(Task<U> task) {
+            U nextStateId;
+            try {
+                nextStateId = stateMachine.processEvent(context, stateId, task.event);
+                entityStore.saveStateId(key, context, nextStateId);
+            } catch (Exception e) {
+                task.future.setException(e);
+                return;
+            } catch (Error e) {
+                // the actor is removed, the state of the entity may be inconsistent
+                task.future.setException(e);
+                throw e;
+            }
+            stateId = nextStateId;
+            task.future.set(nextStateId);
+        }
+
+        /**
+         * Passivates the actor if its mailbox is empty.
+         *
+         * @return <code>true</code> if passivated
+         */
+        private boolean passivate() {
+            lock.lock();
+            try {
+                if (!mailbox.isEmpty()) {
+                    return false;
+                }
+                passivated = true;
+                actors.remove(key, this);
+            } finally {
+                lock.unlock();
+            }
+            passivated();
+            return true;
+        }
+
+        private void passivateAndFail(Throwable exception) {
+            lock.lock();
+            try {
+                passivated = true;
+                actors.remove(key, this);
+            } finally {
+                lock.unlock();
+            }
+            // no tasks are added after passivating
+            Task<U> task;
+            while ((task = mailbox.poll()) != null) {
+                task.future.setException(exception);
+            }
+            passivated();
+        }
+
+        private void passivated() {
+            activeActors.decrementAndGet();
+            terminateIfIdle();
+        }
+    }
+
+    private static final class Task<U> {
+        private final Object event;
+        private final SettableFuture<U> future = SettableFuture.create();
+
+        private Task(Object event) {
+            this.event = event;
+        }
+    }
+
+    /**
+     * Builder for {@link ActorStateMachineExecutor}.
+     */
+    public static final class Builder<K, T, U> {
+
+        private final StateMachine<T, U> stateMachine;
+        private final EntityStore<K, T, U> entityStore;
+        private long passivationTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_PASSIVATION_TIMEOUT_MILLIS);
+        private ThreadFactory threadFactory;
+
+        private Builder(StateMachine<T, U> stateMachine, EntityStore<K, T, U> entityStore) {
+            this.stateMachine = checkNotNull(stateMachine);
+            this.entityStore = checkNotNull(entityStore);
+        }
+
+        /**
+         * Sets the time an actor without events stays active before it's passivated. Defaults to one minute.
+         */
+        public Builder<K, T, U> withPassivationTimeout(long timeout, TimeUnit unit) {
+            checkArgument(timeout > 0, "timeout must be greater than zero");
+            this.passivationTimeoutNanos = checkNotNull(unit).toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the factory of the actor threads. Defaults to virtual threads if supported by the running JVM,
+         * otherwise platform daemon threads.
+         */
+        public Builder<K, T, U> withThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = checkNotNull(threadFactory);
+            return this;
+        }
+
+        public ActorStateMachineExecutor<K, T, U> build() {
+            if (threadFactory == null) {
+                threadFactory = VirtualThreads.newThreadFactory("scheelite-actor-");
+            }
+            return new ActorStateMachineExecutor<K, T, U>(this);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.headstartech.scheelite.actor;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Static utility methods for creating virtual threads (Java 21 or later), found reflectively so the module runs on
+ * older Java versions.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Creates a factory of virtual threads.
+     *
+     * @param namePrefix the prefix of the thread names, followed by a counter
+     * @return the factory or {@code Optional.absent()} if virtual threads aren't supported by the running JVM
+     */
+    public static Optional<ThreadFactory> newVirtualThreadFactory(String namePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return Optional.of((ThreadFactory) builderClass.getMethod("factory").invoke(builder));
+        } catch (Exception e) {
+            // Thread.ofVirtual isn't available (before Java 21)
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Creates a factory of virtual threads if supported by the running JVM, otherwise of platform daemon threads.
+     *
+     * @param namePrefix the prefix of the thread names, followed by a counter
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        Optional<ThreadFactory> res = newVirtualThreadFactory(namePrefix);
+        if (res.isPresent()) {
+            return res.get();
+        }
+        return new ThreadFactoryBuilder().setNameFormat(namePrefix + "%d").setDaemon(true).build();
+    }
+
+    /**
+     * Checks if virtual threads are supported by the running JVM.
+     */
+    public static boolean isSupported() {
+        return newVirtualThreadFactory("probe-").isPresent();
+    }
+}
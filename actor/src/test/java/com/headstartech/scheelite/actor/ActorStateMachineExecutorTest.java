@@ -0,0 +1,266 @@
+package com.headstartech.scheelite.actor;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.headstartech.scheelite.Action;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.concurrent.EntityStore;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ActorStateMachineExecutorTest {
+
+    private static final int ENTITIES = 200;
+    private static final int EVENTS_PER_ENTITY = 10;
+    private static final int ERROR = -2;
+
+    @Test
+    public void testEventsProcessedInOrderPerEntity() throws Exception {
+        // given ... blocking actions
+        RecordingStore store = new RecordingStore();
+        ActorStateMachineExecutor<Integer, RecordingEntity, String> executor = ActorStateMachineExecutor.newBuilder(createStateMachine(), store)
+                .build();
+        List<ListenableFuture<String>> futures = Lists.newArrayList();
+
+        // when
+        for (int i = 0; i < EVENTS_PER_ENTITY; i++) {
+            for (int key = 0; key < ENTITIES; key++) {
+                futures.add(executor.submit(key, new SequenceEvent(i)));
+            }
+        }
+        for (ListenableFuture<String> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // then
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(executor.getActiveActorCount(), 0);
+        for (int key = 0; key < ENTITIES; key++) {
+            RecordingEntity entity = store.entities.get(key);
+            assertEquals(entity.sequence.size(), EVENTS_PER_ENTITY);
+            for (int i = 0; i < EVENTS_PER_ENTITY; i++) {
+                assertEquals(entity.sequence.get(i).intValue(), i);
+            }
+            assertEquals(entity.stateId, EVENTS_PER_ENTITY % 2 == 0 ? "A" : "B");
+        }
+    }
+
+    @Test
+    public void testIdleActorPassivatedAndReactivated() throws Exception {
+        // given
+        RecordingStore store = new RecordingStore();
+        ActorStateMachineExecutor<Integer, RecordingEntity, String> executor = ActorStateMachineExecutor.newBuilder(createStateMachine(), store)
+                .withPassivationTimeout(50, TimeUnit.MILLISECONDS)
+                .build();
+        assertEquals(executor.submit(1, new SequenceEvent(0)).get(10, TimeUnit.SECONDS), "B");
+
+        // when
+        waitForPassivation(executor);
+        String stateId = executor.submit(1, new SequenceEvent(1)).get(10, TimeUnit.SECONDS);
+
+        // then ... state reloaded from the store
+        assertEquals(stateId, "A");
+        assertEquals(store.loads.get(), 2);
+        waitForPassivation(executor);
+        assertEquals(store.entities.get(1).stateId, "A");
+    }
+
+    @Test
+    public void testFailedEventKeepsState() throws Exception {
+        // given
+        RecordingStore store = new RecordingStore();
+        ActorStateMachineExecutor<Integer, RecordingEntity, String> executor = ActorStateMachineExecutor.newBuilder(createStateMachine(), store)
+                .build();
+
+        // when
+        ListenableFuture<String> first = executor.submit(1, new SequenceEvent(0));
+        ListenableFuture<String> failing = executor.submit(1, new SequenceEvent(-1));
+        ListenableFuture<String> last = executor.submit(1, new SequenceEvent(1));
+
+        // then
+        assertEquals(first.get(10, TimeUnit.SECONDS), "B");
+        try {
+            failing.get(10, TimeUnit.SECONDS);
+            fail("future should fail");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof com.headstartech.scheelite.ExecutionException);
+        }
+        assertEquals(last.get(10, TimeUnit.SECONDS), "A");
+        assertEquals(store.entities.get(1).sequence, Lists.newArrayList(0, 1));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testActorRemovedWhenErrorThrown() throws Exception {
+        // given
+        RecordingStore store = new RecordingStore();
+        ActorStateMachineExecutor<Integer, RecordingEntity, String> executor = ActorStateMachineExecutor.newBuilder(createStateMachine(), store)
+                .build();
+        assertEquals(executor.submit(1, new SequenceEvent(0)).get(10, TimeUnit.SECONDS), "B");
+
+        // when
+        ListenableFuture<String> failing = executor.submit(1, new SequenceEvent(ERROR));
+
+        // then ... the future fails, the actor is removed and the entity is loaded again on the next event
+        try {
+            failing.get(10, TimeUnit.SECONDS);
+            fail("future should fail");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        waitForPassivation(executor);
+        assertEquals(executor.submit(1, new SequenceEvent(1)).get(10, TimeUnit.SECONDS), "A");
+        assertEquals(store.loads.get(), 2);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEventsAcceptedBeforeTerminationProcessed() throws Exception {
+        // given ... submitting for new entities while shutting down
+        final ActorStateMachineExecutor<Integer, RecordingEntity, String> executor = ActorStateMachineExecutor.newBuilder(createStateMachine(), new RecordingStore())
+                .build();
+        final List<ListenableFuture<String>> futures = new CopyOnWriteArrayList<ListenableFuture<String>>();
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int key = 0; ; key++) {
+                        futures.add(executor.submit(key, new SequenceEvent(0)));
+                    }
+                } catch (RejectedExecutionException e) {
+                    // shut down
+                }
+            }
+        });
+        submitter.start();
+        Uninterruptibles.sleepUninterruptibly(20, TimeUnit.MILLISECONDS);
+
+        // when
+        executor.shutdown();
+        boolean terminated = executor.awaitTermination(10, TimeUnit.SECONDS);
+        submitter.join();
+
+        // then ... every accepted event was processed before terminating
+        assertTrue(terminated);
+        for (ListenableFuture<String> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertEquals(executor.getActiveActorCount(), 0);
+    }
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testSubmitAfterShutdownRejected() {
+        // given
+        ActorStateMachineExecutor<Integer, RecordingEntity, String> executor = ActorStateMachineExecutor.newBuilder(createStateMachine(), new RecordingStore())
+                .build();
+        executor.shutdown();
+
+        // when
+        executor.submit(1, new SequenceEvent(0));
+    }
+
+    private void waitForPassivation(ActorStateMachineExecutor<?, ?, ?> executor) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.getActiveActorCount() > 0) {
+            assertTrue(System.nanoTime() < deadline, "actor not passivated");
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // alternates between A and B on every event
+    private StateMachine<RecordingEntity, String> createStateMachine() {
+        RecordingState a = new RecordingState("A");
+        RecordingState b = new RecordingState("B");
+        RecordingAction action = new RecordingAction();
+        return StateMachineBuilder.<RecordingEntity, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, SequenceEvent.class, action)
+                .withTransition(b, a, SequenceEvent.class, action)
+                .build();
+    }
+
+    static class SequenceEvent {
+        final int sequence;
+
+        SequenceEvent(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    static class RecordingEntity {
+        final List<Integer> sequence = Lists.newArrayList();
+        volatile String stateId = "A";
+    }
+
+    static class RecordingState extends StateAdapter<RecordingEntity, String> {
+
+        private final String id;
+
+        RecordingState(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+
+    // blocks briefly before recording the sequence, failing for negative sequences (throwing an error for ERROR)
+    static class RecordingAction implements Action<RecordingEntity> {
+
+        @Override
+        public void execute(RecordingEntity context, Optional<?> event) throws Exception {
+            SequenceEvent sequenceEvent = (SequenceEvent) event.get();
+            if (sequenceEvent.sequence == ERROR) {
+                throw new AssertionError("error event");
+            }
+            if (sequenceEvent.sequence < 0) {
+                throw new IllegalStateException("failing event");
+            }
+            Thread.sleep(1);
+            context.sequence.add(sequenceEvent.sequence);
+        }
+    }
+
+    static class RecordingStore implements EntityStore<Integer, RecordingEntity, String> {
+
+        final ConcurrentMap<Integer, RecordingEntity> entities = Maps.newConcurrentMap();
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public RecordingEntity getContext(Integer key) {
+            loads.incrementAndGet();
+            RecordingEntity entity = new RecordingEntity();
+            RecordingEntity existing = entities.putIfAbsent(key, entity);
+            return existing != null ? existing : entity;
+        }
+
+        @Override
+        public String getStateId(Integer key, RecordingEntity context) {
+            return context.stateId;
+        }
+
+        @Override
+        public void saveStateId(Integer key, RecordingEntity context, String stateId) {
+            context.stateId = stateId;
+        }
+    }
+}
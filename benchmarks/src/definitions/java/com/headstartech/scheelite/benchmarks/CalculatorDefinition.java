@@ -0,0 +1,18 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.codegen.StateMachineDefinition;
+import com.headstartech.scheelite.samples.calculator.Application;
+import com.headstartech.scheelite.samples.calculator.CalculatorContext;
+import com.headstartech.scheelite.samples.calculator.CalculatorState;
+
+/**
+ * The calculator sample's chart, used to generate the specialized calculator state machine.
+ */
+public class CalculatorDefinition implements StateMachineDefinition<CalculatorContext, CalculatorState> {
+
+    @Override
+    public StateMachineBuilder<CalculatorContext, CalculatorState> define() {
+        return Application.createStateMachineBuilder();
+    }
+}
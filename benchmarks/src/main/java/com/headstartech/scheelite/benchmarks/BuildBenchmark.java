@@ -0,0 +1,46 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building (validating and compiling) a state machine from a large generated chart.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildBenchmark {
+
+    private static final int FAN_OUT = 10;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int states;
+
+    private StateMachineBuilder<Charts.Context, Integer> builder;
+
+    @Setup
+    public void setup() {
+        builder = Charts.large(states, FAN_OUT);
+    }
+
+    @Benchmark
+    public StateMachine<Charts.Context, Integer> build() {
+        return builder.build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.benchmarks.generated.GeneratedCalculatorStateMachine;
+import com.headstartech.scheelite.samples.calculator.Application;
+import com.headstartech.scheelite.samples.calculator.CalculatorContext;
+import com.headstartech.scheelite.samples.calculator.CalculatorState;
+import com.headstartech.scheelite.samples.calculator.DigitEvent;
+import com.headstartech.scheelite.samples.calculator.Operation;
+import com.headstartech.scheelite.samples.calculator.OperationEvent;
+import com.headstartech.scheelite.samples.calculator.ResultEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the calculator sample, cycling digit, operation, digit and result events, using either the interpreting
+ * state machine or the state machine generated from the calculator definition.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalculatorBenchmark {
+
+    @Param({"interpreted", "generated"})
+    public String implementation;
+
+    private StateMachine<CalculatorContext, CalculatorState> stateMachine;
+    private CalculatorContext context;
+    private Object[] events;
+    private CalculatorState stateId;
+    private int index;
+
+    @Setup
+    public void setup() throws ExecutionException {
+        stateMachine = Application.createStateMachine();
+        if ("generated".equals(implementation)) {
+            stateMachine = new GeneratedCalculatorStateMachine<CalculatorContext, CalculatorState>(stateMachine);
+        }
+        context = new CalculatorContext();
+        stateId = stateMachine.start(context);
+        // digit, operation, digit, result brings the calculator back to the result state
+        events = new Object[] { new DigitEvent(7), new OperationEvent(Operation.ADDITION), new DigitEvent(4), new ResultEvent() };
+    }
+
+    @Benchmark
+    public CalculatorState processEvent() throws ExecutionException {
+        stateId = stateMachine.processEvent(context, stateId, events[index++ & 3]);
+        return stateId;
+    }
+}
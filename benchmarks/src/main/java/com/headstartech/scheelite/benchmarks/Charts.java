@@ -0,0 +1,228 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.Guard;
+import com.headstartech.scheelite.State;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateMachineBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generated state charts used by the benchmarks. States are identified by integers.
+ */
+public final class Charts {
+
+    /**
+     * Event classes triggering the transitions of the generated charts.
+     */
+    public static final Class<?>[] EVENT_CLASSES = { Tick.class, E1.class, E2.class, E3.class, E4.class, E5.class, E6.class, E7.class };
+
+    private Charts() {
+    }
+
+    /**
+     * Creates a chart with the specified number of top level states arranged in a ring,
+     * a {@link Tick} moves to the next state.
+     */
+    public static StateMachineBuilder<Context, Integer> flat(int states) {
+        StateMachineBuilder<Context, Integer> builder = StateMachineBuilder.newBuilder();
+        List<State<Context, Integer>> ring = createStates(0, states);
+        builder.withInitialTransition(ring.get(0));
+        for (int i = 0; i < states; i++) {
+            builder.withTransition(ring.get(i), ring.get((i + 1) % states), Tick.class);
+        }
+        return builder;
+    }
+
+    /**
+     * Creates a chart with two branches of nested composite states, each of the specified depth.
+     * A {@link Tick} moves between the leafs of the branches, exiting and entering every level.
+     */
+    @SuppressWarnings("unchecked")
+    public static StateMachineBuilder<Context, Integer> deep(int depth) {
+        StateMachineBuilder<Context, Integer> builder = StateMachineBuilder.newBuilder();
+        List<State<Context, Integer>> left = createStates(0, depth);
+        List<State<Context, Integer>> right = createStates(depth, depth);
+        builder.withInitialTransition(left.get(0));
+        for (int i = 0; i < depth - 1; i++) {
+            builder.withCompositeState(left.get(i), left.get(i + 1));
+            builder.withCompositeState(right.get(i), right.get(i + 1));
+        }
+        builder.withTransition(left.get(depth - 1), right.get(depth - 1), Tick.class);
+        builder.withTransition(right.get(depth - 1), left.get(depth - 1), Tick.class);
+        return builder;
+    }
+
+    /**
+     * Creates a chart with a composite state having the specified number of sub states. Every sub state has a
+     * transition for each of the {@link #EVENT_CLASSES} and the composite state has a transition to a final
+     * top level state, inherited by all sub states.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static StateMachineBuilder<Context, Integer> wide(int subStates) {
+        StateMachineBuilder<Context, Integer> builder = StateMachineBuilder.newBuilder();
+        State<Context, Integer> composite = new BenchmarkState(0);
+        State<Context, Integer> exit = new BenchmarkState(1);
+        List<State<Context, Integer>> children = createStates(2, subStates);
+        builder.withInitialTransition(composite);
+        builder.withCompositeState(composite, children.get(0), children.subList(1, subStates).toArray(new State[subStates - 1]));
+        for (int i = 0; i < subStates; i++) {
+            for (int j = 0; j < EVENT_CLASSES.length; j++) {
+                builder.withTransition(children.get(i), children.get((i + j + 1) % subStates), EVENT_CLASSES[j]);
+            }
+        }
+        builder.withTransition(composite, exit, Exit.class);
+        return builder;
+    }
+
+    /**
+     * Creates a chart of two states where a {@link Tick} moves from the first to the second state through the
+     * specified number of guarded transitions, only the last guard accepting.
+     */
+    public static StateMachineBuilder<Context, Integer> guarded(int guards) {
+        StateMachineBuilder<Context, Integer> builder = StateMachineBuilder.newBuilder();
+        State<Context, Integer> a = new BenchmarkState(0);
+        State<Context, Integer> b = new BenchmarkState(1);
+        builder.withInitialTransition(a);
+        for (int i = 0; i < guards; i++) {
+            builder.withTransition(a, b, Tick.class, new ConstantGuard(i == guards - 1));
+        }
+        builder.withTransition(b, a, Tick.class);
+        return builder;
+    }
+
+    /**
+     * Creates a chart where a {@link Tick} triggers a chain of the specified number of triggerless
+     * (completion) transitions.
+     */
+    public static StateMachineBuilder<Context, Integer> completionChain(int length) {
+        StateMachineBuilder<Context, Integer> builder = StateMachineBuilder.newBuilder();
+        List<State<Context, Integer>> chain = createStates(0, length + 1);
+        builder.withInitialTransition(chain.get(0));
+        builder.withMaxTransitions(length + 2);
+        builder.withTransition(chain.get(0), chain.get(1), Tick.class);
+        for (int i = 1; i < length; i++) {
+            builder.withTransition(chain.get(i), chain.get(i + 1));
+        }
+        builder.withTransition(chain.get(length), chain.get(0), Tick.class);
+        return builder;
+    }
+
+    /**
+     * Creates a large chart with the specified number of states organized as a tree of composite states,
+     * each composite state having at most <code>fanOut</code> sub states. The leafs are connected in a ring by
+     * transitions triggered by {@link Tick}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static StateMachineBuilder<Context, Integer> large(int states, int fanOut) {
+        StateMachineBuilder<Context, Integer> builder = StateMachineBuilder.newBuilder();
+        List<State<Context, Integer>> all = createStates(0, states);
+        builder.withInitialTransition(all.get(0));
+
+        // state i is the parent of states i * fanOut + 1 ... i * fanOut + fanOut
+        List<State<Context, Integer>> leafs = new ArrayList<State<Context, Integer>>();
+        for (int i = 0; i < states; i++) {
+            int first = i * fanOut + 1;
+            if (first < states) {
+                int last = Math.min(first + fanOut, states);
+                List<State<Context, Integer>> subStates = all.subList(first + 1, last);
+                builder.withCompositeState(all.get(i), all.get(first), subStates.toArray(new State[subStates.size()]));
+            } else {
+                leafs.add(all.get(i));
+            }
+        }
+        for (int i = 0; i < leafs.size(); i++) {
+            builder.withTransition(leafs.get(i), leafs.get((i + 1) % leafs.size()), Tick.class);
+        }
+        return builder;
+    }
+
+    private static List<State<Context, Integer>> createStates(int firstId, int count) {
+        List<State<Context, Integer>> res = new ArrayList<State<Context, Integer>>(count);
+        for (int i = 0; i < count; i++) {
+            res.add(new BenchmarkState(firstId + i));
+        }
+        return res;
+    }
+
+    public static class Context {
+    }
+
+    public static class Tick {
+    }
+
+    public static class Exit {
+    }
+
+    public static class E1 {
+    }
+
+    public static class E2 {
+    }
+
+    public static class E3 {
+    }
+
+    public static class E4 {
+    }
+
+    public static class E5 {
+    }
+
+    public static class E6 {
+    }
+
+    public static class E7 {
+    }
+
+    static class BenchmarkState extends StateAdapter<Context, Integer> {
+
+        private final Integer id;
+
+        BenchmarkState(Integer id) {
+            this.id = id;
+        }
+
+        @Override
+        public Integer getId() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            BenchmarkState that = (BenchmarkState) o;
+            return id.equals(that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "BenchmarkState{" +
+                    "id=" + id +
+                    '}';
+        }
+    }
+
+    static class ConstantGuard implements Guard<Context> {
+
+        private final boolean value;
+
+        ConstantGuard(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(Context context, Optional<?> event) {
+            return value;
+        }
+    }
+}
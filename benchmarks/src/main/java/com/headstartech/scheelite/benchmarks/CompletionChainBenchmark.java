@@ -0,0 +1,51 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures processing an event followed by a chain of triggerless (completion) transitions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompletionChainBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int length;
+
+    private StateMachine<Charts.Context, Integer> stateMachine;
+    private Charts.Context context;
+    private Charts.Tick tick;
+    private Integer stateId;
+
+    @Setup
+    public void setup() throws ExecutionException {
+        stateMachine = Charts.completionChain(length).build();
+        context = new Charts.Context();
+        tick = new Charts.Tick();
+        stateId = stateMachine.start(context);
+    }
+
+    @Benchmark
+    public Integer processEvent() throws ExecutionException {
+        stateId = stateMachine.processEvent(context, stateId, tick);
+        return stateId;
+    }
+}
@@ -0,0 +1,61 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.methodhandles.MethodHandleDispatcherFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures processing an event with a number of guarded candidate transitions, only the last guard accepting,
+ * evaluating the candidates one by one or through a method handle chain.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GuardBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int guards;
+
+    @Param({"interpreted", "methodHandles"})
+    public String dispatch;
+
+    private StateMachine<Charts.Context, Integer> stateMachine;
+    private Charts.Context context;
+    private Charts.Tick tick;
+    private Integer stateId;
+
+    @Setup
+    public void setup() throws ExecutionException {
+        StateMachineBuilder<Charts.Context, Integer> builder = Charts.guarded(guards);
+        if ("methodHandles".equals(dispatch)) {
+            builder.withDispatcherFactory(new MethodHandleDispatcherFactory());
+        }
+        stateMachine = builder.build();
+        context = new Charts.Context();
+        tick = new Charts.Tick();
+        stateId = stateMachine.start(context);
+    }
+
+    @Benchmark
+    public Integer processEvent() throws ExecutionException {
+        stateId = stateMachine.processEvent(context, stateId, tick);
+        return stateId;
+    }
+}
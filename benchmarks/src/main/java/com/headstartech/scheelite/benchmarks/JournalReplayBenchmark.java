@@ -0,0 +1,155 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.google.common.io.Files;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateIdCodec;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.journal.ContextProvider;
+import com.headstartech.scheelite.journal.EventCodec;
+import com.headstartech.scheelite.journal.JournalReader;
+import com.headstartech.scheelite.journal.JournalReplayer;
+import com.headstartech.scheelite.journal.JournalWriter;
+import com.headstartech.scheelite.samples.calculator.Application;
+import com.headstartech.scheelite.samples.calculator.CalculatorContext;
+import com.headstartech.scheelite.samples.calculator.CalculatorState;
+import com.headstartech.scheelite.samples.calculator.DigitEvent;
+import com.headstartech.scheelite.samples.calculator.Operation;
+import com.headstartech.scheelite.samples.calculator.OperationEvent;
+import com.headstartech.scheelite.samples.calculator.ResultEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures replaying a journal segment of calculator events through the calculator state machine, either running
+ * the actions and state callbacks or in replay mode, reported per record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalReplayBenchmark {
+
+    private static final int ENTITIES = 1024;
+    private static final int RECORDS = 256 * 1024;
+
+    @Param({"processEvent", "replayMode"})
+    public String mode;
+
+    private File directory;
+    private File segment;
+    private JournalReplayer<CalculatorContext, Object, CalculatorState> replayer;
+
+    @Setup
+    public void setup() throws IOException, ExecutionException {
+        StateMachine<CalculatorContext, CalculatorState> stateMachine = Application.createStateMachine();
+        StateIdCodec<CalculatorState> stateIdCodec = new StateIdCodec<CalculatorState>(stateMachine.getConfiguration());
+        final CalculatorContext[] contexts = new CalculatorContext[ENTITIES];
+        CalculatorState[] stateIds = new CalculatorState[ENTITIES];
+        for (int i = 0; i < ENTITIES; i++) {
+            contexts[i] = new CalculatorContext();
+            stateIds[i] = stateMachine.start(contexts[i]);
+        }
+        // digit, operation, digit, result brings each calculator back to the result state
+        Object[] events = new Object[] { new DigitEvent(7), new OperationEvent(Operation.ADDITION), new DigitEvent(4), new ResultEvent() };
+
+        directory = Files.createTempDir();
+        JournalWriter<Object, CalculatorState> writer = new JournalWriter<Object, CalculatorState>(directory, stateIdCodec, new CalculatorEventCodec());
+        for (int i = 0; i < RECORDS; i++) {
+            int key = i % ENTITIES;
+            Object event = events[(i / ENTITIES) & 3];
+            stateIds[key] = stateMachine.processEvent(contexts[key], stateIds[key], event);
+            writer.append(key, event, stateIds[key]);
+        }
+        writer.close();
+        segment = directory.listFiles()[0];
+
+        JournalReader<Object, CalculatorState> reader = new JournalReader<Object, CalculatorState>(stateIdCodec, new CalculatorEventCodec());
+        if ("replayMode".equals(mode)) {
+            stateMachine = stateMachine.getReplayMode();
+        }
+        replayer = new JournalReplayer<CalculatorContext, Object, CalculatorState>(stateMachine, reader, new ContextProvider<CalculatorContext>() {
+            @Override
+            public CalculatorContext getContext(long key) {
+                return contexts[(int) key];
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public Map<Long, CalculatorState> replay() throws IOException, ExecutionException {
+        return replayer.replay(segment, new HashMap<Long, CalculatorState>(ENTITIES * 2));
+    }
+
+    static class CalculatorEventCodec implements EventCodec<Object> {
+
+        private static final byte DIGIT = 0;
+        private static final byte OPERATION = 1;
+        private static final byte RESULT = 2;
+
+        private static final OperationEvent[] OPERATIONS = new OperationEvent[Operation.values().length];
+        private static final ResultEvent RESULT_EVENT = new ResultEvent();
+
+        static {
+            for (Operation op : Operation.values()) {
+                OPERATIONS[op.ordinal()] = new OperationEvent(op);
+            }
+        }
+
+        @Override
+        public void encode(Object event, ByteBuffer buffer) {
+            if (event instanceof DigitEvent) {
+                buffer.put(DIGIT).put((byte) ((DigitEvent) event).getDigit().intValue());
+            } else if (event instanceof OperationEvent) {
+                buffer.put(OPERATION).put((byte) ((OperationEvent) event).getOp().ordinal());
+            } else if (event instanceof ResultEvent) {
+                buffer.put(RESULT);
+            } else {
+                throw new IllegalArgumentException("unsupported event: " + event);
+            }
+        }
+
+        @Override
+        public Object decode(ByteBuffer buffer) {
+            byte type = buffer.get();
+            switch (type) {
+                case DIGIT:
+                    return new DigitEvent((int) buffer.get());
+                case OPERATION:
+                    return OPERATIONS[buffer.get()];
+                case RESULT:
+                    return RESULT_EVENT;
+                default:
+                    throw new IllegalArgumentException("unsupported event type: " + type);
+            }
+        }
+    }
+}
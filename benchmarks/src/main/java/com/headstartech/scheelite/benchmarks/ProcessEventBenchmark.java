@@ -0,0 +1,76 @@
+package com.headstartech.scheelite.benchmarks;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures processing an event triggering a transition, for flat, deep and wide charts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessEventBenchmark {
+
+    public enum Chart {
+        FLAT, DEEP, WIDE
+    }
+
+    @Param({"FLAT", "DEEP", "WIDE"})
+    public Chart chart;
+
+    @Param({"8", "64"})
+    public int size;
+
+    private StateMachine<Charts.Context, Integer> stateMachine;
+    private Charts.Context context;
+    private Object[] events;
+    private Integer stateId;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        StateMachineBuilder<Charts.Context, Integer> builder;
+        switch (chart) {
+            case FLAT:
+                builder = Charts.flat(size);
+                break;
+            case DEEP:
+                builder = Charts.deep(size);
+                break;
+            default:
+                builder = Charts.wide(size);
+                break;
+        }
+        stateMachine = builder.build();
+        context = new Charts.Context();
+        stateId = stateMachine.start(context);
+        events = new Object[Charts.EVENT_CLASSES.length];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = chart == Chart.WIDE ? Charts.EVENT_CLASSES[i].newInstance() : new Charts.Tick();
+        }
+    }
+
+    @Benchmark
+    public Integer processEvent() throws ExecutionException {
+        Object event = events[index++ & (events.length - 1)];
+        stateId = stateMachine.processEvent(context, stateId, event);
+        return stateId;
+    }
+}
@@ -0,0 +1,388 @@
+package com.headstartech.scheelite.codegen;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.headstartech.scheelite.Action;
+import com.headstartech.scheelite.CompositeStateCompleted;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.FlightRecorder;
+import com.headstartech.scheelite.Guard;
+import com.headstartech.scheelite.GuardMemoizer;
+import com.headstartech.scheelite.InternalEvents;
+import com.headstartech.scheelite.MaxTransitionsPerEventException;
+import com.headstartech.scheelite.MultipleTransitionsTriggeredResolver;
+import com.headstartech.scheelite.State;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineConfiguration;
+import com.headstartech.scheelite.Transition;
+import com.headstartech.scheelite.UnknownStateIdException;
+import com.headstartech.scheelite.metrics.StateMachineMetrics;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Base class of the state machines generated by {@link StateMachineSourceWriter}.
+ *
+ * The generated subclass selects and takes transitions using switches on state and transition indexes, with the
+ * states to exit and enter inlined for every transition. The states, guards and actions are taken from the state
+ * machine built from the same chart definition, which is verified to match the generated source when the generated
+ * state machine is created.
+ *
+ * The generated state machine doesn't log and doesn't notify listeners, record metrics or record transitions in a
+ * flight recorder. Otherwise it behaves like the state machine it's created from. Its replay mode and asynchronous
+ * processing are delegated to the state machine it's created from. Internal events (see
+ * {@link com.headstartech.scheelite.InternalEvents}) and deferred events are not supported, posting an internal event
+ * from a callback fails even when processing is nested in another state machine processing an event.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+public abstract class AbstractGeneratedStateMachine<T, U> implements StateMachine<T, U> {
+
+    /**
+     * Index returned when no state or transition is selected.
+     */
+    protected static final int NONE = -1;
+
+    private final StateMachineConfiguration<T, U> configuration;
+    private final StateMachine<T, U> stateMachine;
+    private final MultipleTransitionsTriggeredResolver<T, U> multipleTransitionsTriggeredResolver;
+    private final int maxTransitionsPerEvent;
+    private final ImmutableMap<U, Integer> stateIndexes;
+    private final State<T, U>[] states;
+    private final int[] parents;
+    private final boolean[] completing;
+    private final Transition<T, U>[] transitions;
+    private final Guard<T>[] guards;
+    private final Class<?>[] triggerEventClasses;
+    private final GuardMemoizer guardMemoizer;
+
+    /**
+     * Creates a generated state machine.
+     *
+     * @param stateMachine the state machine built from the chart definition the source was generated from
+     * @param stateDescriptions the descriptions of the states when the source was generated
+     * @param transitionDescriptions the descriptions of the transitions when the source was generated
+     * @throws IllegalArgumentException if the states or transitions of the state machine don't match the descriptions
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected AbstractGeneratedStateMachine(StateMachine<T, U> stateMachine, String[] stateDescriptions, String[] transitionDescriptions) {
+        checkNotNull(stateMachine);
+        checkNotNull(stateDescriptions);
+        checkNotNull(transitionDescriptions);
+
+        checkArgument(!stateMachine.getConfiguration().hasDeferredEvents(), "deferred events not supported by generated state machines");
+        ChartIndex<T, U> index = new ChartIndex<T, U>(stateMachine.getConfiguration());
+        verify(index, stateDescriptions, transitionDescriptions);
+
+        this.configuration = stateMachine.getConfiguration();
+        this.stateMachine = stateMachine;
+        this.multipleTransitionsTriggeredResolver = configuration.getMultipleTransitionsTriggeredResolver();
+        this.maxTransitionsPerEvent = configuration.getMaxTransitionsPerEvent();
+
+        ImmutableMap.Builder<U, Integer> stateIndexesBuilder = ImmutableMap.builder();
+        this.states = new State[index.getStateCount()];
+        this.parents = new int[index.getStateCount()];
+        this.completing = new boolean[index.getStateCount()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = index.getState(i);
+            parents[i] = index.getParent(i);
+            completing[i] = index.isCompleting(i);
+            stateIndexesBuilder.put(states[i].getId(), i);
+        }
+        this.stateIndexes = stateIndexesBuilder.build();
+
+        this.transitions = new Transition[index.getTransitionCount()];
+        this.guards = new Guard[index.getTransitionCount()];
+        this.triggerEventClasses = new Class<?>[index.getTransitionCount()];
+        List<Transition<T, U>> transitionList = Lists.newArrayListWithCapacity(transitions.length);
+        for (int i = 0; i < transitions.length; i++) {
+            transitions[i] = index.getTransition(i);
+            triggerEventClasses[i] = transitions[i].getTriggerEventClass().orNull();
+            transitionList.add(transitions[i]);
+        }
+        // pure guards are memoized while selecting a transition, like the state machine built from the chart does
+        this.guardMemoizer = GuardMemoizer.create(transitionList);
+        for (int i = 0; i < transitions.length; i++) {
+            Guard<T> guard = transitions[i].getGuard().orNull();
+            guards[i] = guard != null && guardMemoizer != null ? guardMemoizer.memoize(guard) : guard;
+        }
+    }
+
+    private static <T, U> void verify(ChartIndex<T, U> index, String[] stateDescriptions, String[] transitionDescriptions) {
+        if (index.getStateCount() != stateDescriptions.length || index.getTransitionCount() != transitionDescriptions.length) {
+            throw new IllegalArgumentException(String.format("state machine doesn't match generated source: states=%d, transitions=%d, expectedStates=%d, expectedTransitions=%d",
+                    index.getStateCount(), index.getTransitionCount(), stateDescriptions.length, transitionDescriptions.length));
+        }
+        for (int i = 0; i < stateDescriptions.length; i++) {
+            if (!index.describeState(i).equals(stateDescriptions[i])) {
+                throw new IllegalArgumentException(String.format("state machine doesn't match generated source: state=[%s], expectedState=[%s]",
+                        index.describeState(i), stateDescriptions[i]));
+            }
+        }
+        for (int i = 0; i < transitionDescriptions.length; i++) {
+            if (!index.describeTransition(i).equals(transitionDescriptions[i])) {
+                throw new IllegalArgumentException(String.format("state machine doesn't match generated source: transition=[%s], expectedTransition=[%s]",
+                        index.describeTransition(i), transitionDescriptions[i]));
+            }
+        }
+    }
+
+    @Override
+    public U start(T context) throws ExecutionException {
+        Object suspended = InternalEvents.suspendPosting();
+        try {
+            return states[initial(context)].getId();
+        } finally {
+            InternalEvents.resumePosting(suspended);
+        }
+    }
+
+    @Override
+    public U processEvent(T context, U stateId, Object event) throws ExecutionException {
+        checkNotNull(context);
+        checkNotNull(stateId);
+        checkNotNull(event);
+
+        int state = getStateIndex(stateId);
+        Object suspended = InternalEvents.suspendPosting();
+        try {
+            return states[processEvent(context, state, event, null, 0)].getId();
+        } finally {
+            InternalEvents.resumePosting(suspended);
+        }
+    }
+
+    @Override
+    public U processEvents(T context, U stateId, Iterable<?> events) throws ExecutionException {
+        checkNotNull(context);
+        checkNotNull(stateId);
+        checkNotNull(events);
+
+        return states[processEvents(context, getStateIndex(stateId), events, null)].getId();
+    }
+
+    @Override
+    public U processEvents(T context, U stateId, Iterable<?> events, int[] transitionCounts) throws ExecutionException {
+        checkNotNull(context);
+        checkNotNull(stateId);
+        checkNotNull(events);
+        checkNotNull(transitionCounts);
+
+        return states[processEvents(context, getStateIndex(stateId), events, transitionCounts)].getId();
+    }
+
+    @Override
+    public ListenableFuture<U> startAsync(T context) {
+        return stateMachine.startAsync(context);
+    }
+
+    @Override
+    public ListenableFuture<U> processEventAsync(T context, U stateId, Object event) {
+        return stateMachine.processEventAsync(context, stateId, event);
+    }
+
+    @Override
+    public StateMachineConfiguration<T, U> getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public Optional<StateMachineMetrics<T, U>> getMetrics() {
+        return Optional.absent();
+    }
+
+    @Override
+    public Optional<FlightRecorder<T, U>> getFlightRecorder() {
+        return Optional.absent();
+    }
+
+    @Override
+    public StateMachine<T, U> getReplayMode() {
+        return stateMachine.getReplayMode();
+    }
+
+    /**
+     * Takes the initial transitions from the root state.
+     *
+     * @return the index of the state after the initial transitions
+     */
+    protected abstract int initial(T context) throws ExecutionException;
+
+    /**
+     * Selects and takes the transition triggered by the event (if any), followed by the initial transitions
+     * from the main target state. The event has already been handled by the state.
+     *
+     * @param state the index of the current state
+     * @param context the context
+     * @param event the event or <code>null</code> if no event is present
+     * @return the index of the state after the transition or {@link #NONE} if no transition was triggered
+     */
+    protected abstract int step(int state, T context, Object event) throws ExecutionException;
+
+    private int getStateIndex(U stateId) {
+        Integer res = stateIndexes.get(stateId);
+        if (res == null) {
+            throw new UnknownStateIdException(String.format("no state found for stateId: stateId=%s", stateId));
+        }
+        return res;
+    }
+
+    private int processEvents(T context, int state, Iterable<?> events, int[] transitionCounts) throws ExecutionException {
+        Object suspended = InternalEvents.suspendPosting();
+        try {
+            int index = 0;
+            for (Object event : events) {
+                checkNotNull(event);
+                if (transitionCounts != null && index >= transitionCounts.length) {
+                    throw new IllegalArgumentException(String.format("more events than transition counts: length=%d", transitionCounts.length));
+                }
+                state = processEvent(context, state, event, transitionCounts, index++);
+            }
+            return state;
+        } finally {
+            InternalEvents.resumePosting(suspended);
+        }
+    }
+
+    private int processEvent(T context, int sourceState, Object event, int[] transitionCounts, int index) throws ExecutionException {
+        int currentState = sourceState;
+        int transitionCount = 0;
+        int nextState = process(context, currentState, event, transitionCount);
+        while (nextState != NONE) {
+            transitionCount++;
+            currentState = nextState;
+            Object nextEvent = null;
+            if (completing[currentState]) {
+                nextEvent = new CompositeStateCompleted<U>(states[currentState].getId());
+            }
+            nextState = process(context, currentState, nextEvent, transitionCount);
+        }
+        if (transitionCounts != null) {
+            transitionCounts[index] = transitionCount;
+        }
+        return currentState;
+    }
+
+    private int process(T context, int currentState, Object event, int transitionCount) throws ExecutionException {
+        if (transitionCount >= maxTransitionsPerEvent) {
+            throw new MaxTransitionsPerEventException();
+        }
+        if (event != null) {
+            handleEvent(currentState, context, event);
+        }
+        if (guardMemoizer == null) {
+            return step(currentState, context, event);
+        }
+        long previousSelection = guardMemoizer.begin();
+        try {
+            return step(currentState, context, event);
+        } finally {
+            guardMemoizer.end(previousSelection);
+        }
+    }
+
+    private void handleEvent(int state, T context, Object event) throws ExecutionException {
+        for (int s = state; s != ChartIndex.ROOT; s = parents[s]) {
+            boolean eventHandled;
+            try {
+                eventHandled = states[s].onEvent(context, event);
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+            if (eventHandled) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks if the event is an instance of the trigger event class of the transition.
+     */
+    protected final boolean isTriggeredBy(int transition, Object event) {
+        return triggerEventClasses[transition].isInstance(event);
+    }
+
+    protected final boolean evaluateGuard(int transition, T context, Optional<?> event) throws ExecutionException {
+        try {
+            return guards[transition].evaluate(context, event);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    protected final void executeAction(int transition, T context, Optional<?> event) throws ExecutionException {
+        Action<T> action = transitions[transition].getAction().get();
+        try {
+            action.execute(context, event);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    protected final void exitState(int state, T context) throws ExecutionException {
+        try {
+            states[state].onExit(context);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    protected final void enterState(int state, T context) throws ExecutionException {
+        try {
+            states[state].onEntry(context);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    /**
+     * Adds a triggered transition when more than one transition is triggered.
+     *
+     * @param triggered the transitions triggered so far except the first or <code>null</code>
+     * @param first the first triggered transition
+     * @param transition the triggered transition
+     * @return the triggered transitions, including the first
+     */
+    protected static int[] addTriggered(int[] triggered, int first, int transition) {
+        if (triggered == null) {
+            return new int[] { first, transition };
+        }
+        int[] res = new int[triggered.length + 1];
+        System.arraycopy(triggered, 0, res, 0, triggered.length);
+        res[triggered.length] = transition;
+        return res;
+    }
+
+    /**
+     * Resolves which of the triggered transitions to take.
+     *
+     * @param state the index of the current state
+     * @param triggered the triggered transitions, in candidate order
+     * @return the index of the transition to take
+     * @throws IllegalStateException if the resolver doesn't return one of the triggered transitions
+     */
+    protected final int resolve(int state, T context, Object event, int[] triggered) throws ExecutionException {
+        List<Transition<T, U>> triggeredTransitions = Lists.newArrayListWithCapacity(triggered.length);
+        for (int t : triggered) {
+            triggeredTransitions.add(transitions[t]);
+        }
+        Transition<T, U> resolved;
+        try {
+            resolved = multipleTransitionsTriggeredResolver.resolve(states[state].getId(), context, Optional.fromNullable(event), triggeredTransitions);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+        for (int t : triggered) {
+            if (transitions[t].equals(resolved)) {
+                return t;
+            }
+        }
+        throw new IllegalStateException(String.format("resolved transition not triggered: state=%s, transition=%s", states[state].getId(), resolved));
+    }
+}
@@ -0,0 +1,266 @@
+package com.headstartech.scheelite.codegen;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.headstartech.scheelite.FinalState;
+import com.headstartech.scheelite.MultipleTransitionsTriggeredResolver;
+import com.headstartech.scheelite.PriorityResolver;
+import com.headstartech.scheelite.State;
+import com.headstartech.scheelite.StateMachineConfiguration;
+import com.headstartech.scheelite.Transition;
+import com.headstartech.scheelite.TransitionType;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Indexes the states and transitions of a state machine configuration, shared by the source writer and the
+ * generated state machine at runtime.
+ *
+ * Transitions are indexed in the order they were added to the builder. States are indexed in the order they
+ * are first referenced by the transitions, super states before sub states, so building the same chart twice
+ * gives the same indexes. The root state has index {@link #ROOT}.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+final class ChartIndex<T, U> {
+
+    static final int ROOT = -1;
+
+    private final StateMachineConfiguration<T, U> configuration;
+    private final List<State<T, U>> states;
+    private final Map<State<T, U>, Integer> stateIndexes;
+    private final List<Transition<T, U>> transitions;
+    private final Map<Transition<T, U>, Integer> transitionIndexes;
+    private final int[] parents;
+    private final List<List<Integer>> transitionsFromState;
+    private final int[] initialTransitions;
+    private final Comparator<Transition<T, U>> priorityOrder;
+
+    ChartIndex(StateMachineConfiguration<T, U> configuration) {
+        this.configuration = checkNotNull(configuration);
+        this.states = Lists.newArrayList();
+        this.stateIndexes = Maps.newHashMap();
+        this.transitions = ImmutableList.copyOf(configuration.getTransitions());
+        this.transitionIndexes = Maps.newHashMap();
+        MultipleTransitionsTriggeredResolver<T, U> resolver = configuration.getMultipleTransitionsTriggeredResolver();
+        this.priorityOrder = resolver instanceof PriorityResolver ?
+                ((PriorityResolver<T, U>) resolver).getPriorityOrder(configuration) : null;
+
+        for (int i = 0; i < transitions.size(); i++) {
+            Transition<T, U> t = transitions.get(i);
+            transitionIndexes.put(t, i);
+            addState(t.getMainSourceState());
+            addState(t.getMainTargetState());
+        }
+        // states not referenced by any transition, in no particular order
+        for (State<T, U> state : configuration.getStates()) {
+            addState(state);
+        }
+
+        this.parents = new int[states.size()];
+        this.transitionsFromState = Lists.newArrayListWithCapacity(states.size());
+        for (int i = 0; i < states.size(); i++) {
+            parents[i] = getStateIndex(configuration.getSuperState(states.get(i)));
+            transitionsFromState.add(Lists.<Integer>newArrayList());
+        }
+        this.initialTransitions = new int[states.size() + 1];
+        for (int i = 0; i < initialTransitions.length; i++) {
+            initialTransitions[i] = -1;
+        }
+        for (int i = 0; i < transitions.size(); i++) {
+            Transition<T, U> t = transitions.get(i);
+            int source = getStateIndex(t.getMainSourceState());
+            if (TransitionType.INITIAL.equals(t.getTransitionType())) {
+                initialTransitions[source + 1] = i;
+            } else {
+                transitionsFromState.get(source).add(i);
+            }
+        }
+    }
+
+    private void addState(State<T, U> state) {
+        if (state.equals(configuration.getRootState()) || stateIndexes.containsKey(state)) {
+            return;
+        }
+        addState(configuration.getSuperState(state));
+        stateIndexes.put(state, states.size());
+        states.add(state);
+    }
+
+    StateMachineConfiguration<T, U> getConfiguration() {
+        return configuration;
+    }
+
+    int getStateCount() {
+        return states.size();
+    }
+
+    State<T, U> getState(int state) {
+        return states.get(state);
+    }
+
+    int getStateIndex(State<T, U> state) {
+        if (state.equals(configuration.getRootState())) {
+            return ROOT;
+        }
+        Integer res = stateIndexes.get(state);
+        if (res == null) {
+            throw new IllegalArgumentException(String.format("unknown state: state=%s", state));
+        }
+        return res;
+    }
+
+    int getParent(int state) {
+        return parents[state];
+    }
+
+    /**
+     * Checks if the state is a final state of a composite state, i.e. entering it completes its super state.
+     */
+    boolean isCompleting(int state) {
+        return states.get(state) instanceof FinalState && parents[state] != ROOT;
+    }
+
+    int getTransitionCount() {
+        return transitions.size();
+    }
+
+    Transition<T, U> getTransition(int transition) {
+        return transitions.get(transition);
+    }
+
+    /**
+     * Gets the index of the transition or <code>-1</code> if the transition isn't part of the chart.
+     */
+    int getTransitionIndex(Transition<T, U> transition) {
+        Integer res = transitionIndexes.get(transition);
+        return res == null ? -1 : res;
+    }
+
+    /**
+     * Gets the initial transition from the state.
+     *
+     * @param state the state or {@link #ROOT}
+     * @return the transition or <code>-1</code> if the state has no initial transition
+     */
+    int getInitialTransition(int state) {
+        return initialTransitions[state + 1];
+    }
+
+    /**
+     * Checks if the first triggered candidate is taken, i.e. if the candidates are in priority order.
+     */
+    boolean isFirstMatch() {
+        return priorityOrder != null;
+    }
+
+    /**
+     * Gets the candidate transitions for the state, ordered according to source state's distance from the root
+     * (furthest away first) or in priority order, in the same order as the interpreting state machine evaluates them.
+     *
+     * @param state the state
+     * @param triggerless <code>true</code> for the transitions without trigger event class,
+     *                    <code>false</code> for the transitions with trigger event class
+     */
+    List<Integer> getCandidates(int state, boolean triggerless) {
+        List<Integer> res = Lists.newArrayList();
+        for (int s = state; s != ROOT; s = parents[s]) {
+            for (int t : transitionsFromState.get(s)) {
+                if (transitions.get(t).getTriggerEventClass().isPresent() != triggerless) {
+                    res.add(t);
+                }
+            }
+        }
+        if (priorityOrder != null) {
+            Collections.sort(res, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return priorityOrder.compare(transitions.get(o1), transitions.get(o2));
+                }
+            });
+        }
+        return res;
+    }
+
+    /**
+     * Gets the states exited when taking the transition from the state, innermost state first.
+     */
+    List<Integer> getExitStates(int state, int transition) {
+        Transition<T, U> t = transitions.get(transition);
+        int lowestCommonAncestor = getLowestCommonAncestor(t);
+        List<Integer> res = getPathToAncestor(state, lowestCommonAncestor);
+        if (isExitAndEnterAncestor(t, lowestCommonAncestor)) {
+            res.add(lowestCommonAncestor);
+        }
+        return res;
+    }
+
+    /**
+     * Gets the states entered when taking the transition, outermost state first.
+     */
+    List<Integer> getEntryStates(int transition) {
+        Transition<T, U> t = transitions.get(transition);
+        int lowestCommonAncestor = getLowestCommonAncestor(t);
+        List<Integer> res = getPathToAncestor(getStateIndex(t.getMainTargetState()), lowestCommonAncestor);
+        if (isExitAndEnterAncestor(t, lowestCommonAncestor)) {
+            res.add(lowestCommonAncestor);
+        }
+        Collections.reverse(res);
+        return res;
+    }
+
+    private boolean isExitAndEnterAncestor(Transition<T, U> t, int lowestCommonAncestor) {
+        return TransitionType.EXTERNAL.equals(t.getTransitionType()) &&
+                (getStateIndex(t.getMainSourceState()) == lowestCommonAncestor || getStateIndex(t.getMainTargetState()) == lowestCommonAncestor);
+    }
+
+    private int getLowestCommonAncestor(Transition<T, U> t) {
+        int source = getStateIndex(t.getMainSourceState());
+        int target = getStateIndex(t.getMainTargetState());
+        for (int b = target; b != ROOT; b = parents[b]) {
+            for (int a = source; a != ROOT; a = parents[a]) {
+                if (a == b) {
+                    return b;
+                }
+            }
+        }
+        return ROOT;
+    }
+
+    private List<Integer> getPathToAncestor(int state, int ancestor) {
+        List<Integer> res = Lists.newArrayList();
+        for (int s = state; s != ancestor; s = parents[s]) {
+            res.add(s);
+        }
+        return res;
+    }
+
+    /**
+     * Describes the state, used to verify that a state machine matches the generated source.
+     */
+    String describeState(int state) {
+        return String.format("%s %s", states.get(state).getId(), states.get(state).getClass().getName());
+    }
+
+    /**
+     * Describes the transition, used to verify that a state machine matches the generated source.
+     */
+    String describeTransition(int transition) {
+        Transition<T, U> t = transitions.get(transition);
+        int source = getStateIndex(t.getMainSourceState());
+        return String.format("%s -> %s %s %s%s%s",
+                source == ROOT ? "[*]" : String.valueOf(t.getMainSourceState().getId()),
+                t.getMainTargetState().getId(),
+                t.getTransitionType().name(),
+                t.getTriggerEventClass().isPresent() ? t.getTriggerEventClass().get().getName() : "-",
+                t.getGuard().isPresent() ? " [guard]" : "",
+                t.getAction().isPresent() ? " /action" : "");
+    }
+}
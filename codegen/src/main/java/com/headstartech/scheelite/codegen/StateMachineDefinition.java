@@ -0,0 +1,24 @@
+package com.headstartech.scheelite.codegen;
+
+import com.headstartech.scheelite.StateMachineBuilder;
+
+/**
+ * A chart definition expressed through a {@link StateMachineBuilder}, used when generating the source of
+ * a specialized state machine ahead of time.
+ *
+ * Implementations must have a public no-arg constructor and must define the same chart every time.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachineSourceGenerator
+ */
+public interface StateMachineDefinition<T, U> {
+
+    /**
+     * Defines the chart.
+     *
+     * @return a builder holding the chart
+     */
+    StateMachineBuilder<T, U> define();
+}
@@ -0,0 +1,62 @@
+package com.headstartech.scheelite.codegen;
+
+import com.google.common.base.Charsets;
+import com.headstartech.scheelite.StateMachine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Generates the source of a specialized state machine from a {@link StateMachineDefinition}, e.g. from a build task.
+ *
+ * Usage: <code>StateMachineSourceGenerator &lt;definition class&gt; &lt;generated class&gt; &lt;output directory&gt;</code>
+ */
+public class StateMachineSourceGenerator {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("usage: StateMachineSourceGenerator <definition class> <generated class> <output directory>");
+            System.exit(1);
+        }
+        StateMachineDefinition<?, ?> definition = (StateMachineDefinition<?, ?>) Class.forName(args[0]).newInstance();
+        File file = new StateMachineSourceGenerator().generate(definition, args[1], new File(args[2]));
+        System.out.println("generated " + file);
+    }
+
+    /**
+     * Generates the source of a state machine for the definition.
+     *
+     * @param definition the chart definition
+     * @param className the fully qualified name of the generated class
+     * @param outputDirectory the source root directory
+     * @return the generated source file
+     * @throws IOException if the source file can't be written
+     */
+    public <T, U> File generate(StateMachineDefinition<T, U> definition, String className, File outputDirectory) throws IOException {
+        checkNotNull(definition);
+        checkNotNull(className);
+        checkNotNull(outputDirectory);
+
+        StateMachine<T, U> stateMachine = definition.define().build();
+        File file = new File(outputDirectory, className.replace('.', File.separatorChar) + ".java");
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("failed to create directory: directory=%s", directory));
+        }
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+        try {
+            new StateMachineSourceWriter().writeSource(stateMachine.getConfiguration(), className, writer);
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()) {
+            throw new IOException(String.format("failed to write source: file=%s", file));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,280 @@
+package com.headstartech.scheelite.codegen;
+
+import com.headstartech.scheelite.StateMachineConfiguration;
+import com.headstartech.scheelite.Transition;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes the Java source of a state machine specialized for a {@linkplain com.headstartech.scheelite.StateMachineConfiguration}.
+ *
+ * The generated class extends {@link AbstractGeneratedStateMachine} and is created from the state machine built from
+ * the same chart definition, e.g.
+ *
+ * <pre>
+ * StateMachine&lt;Context, Id&gt; stateMachine = new GeneratedStateMachine&lt;Context, Id&gt;(definition.define().build());
+ * </pre>
+ *
+ * Transitions are selected by a switch on the current state, testing the candidate transitions in the same order
+ * as the interpreting state machine. Trigger event classes are tested with <code>instanceof</code> when the class
+ * is accessible from the generated class.
+ */
+public class StateMachineSourceWriter {
+
+    public <T, U> void writeSource(StateMachineConfiguration<T, U> configuration, String className, PrintWriter writer) {
+        checkNotNull(configuration);
+        checkNotNull(className);
+        checkNotNull(writer);
+        checkArgument(!className.isEmpty() && !className.endsWith("."), "invalid class name: className=%s", className);
+
+        ChartIndex<T, U> index = new ChartIndex<T, U>(configuration);
+        int lastDot = className.lastIndexOf('.');
+        String packageName = lastDot < 0 ? null : className.substring(0, lastDot);
+        String simpleName = className.substring(lastDot + 1);
+
+        if (packageName != null) {
+            writer.printf("package %s;%n%n", packageName);
+        }
+        writer.println("import com.google.common.base.Optional;");
+        writer.println("import com.headstartech.scheelite.ExecutionException;");
+        writer.println("import com.headstartech.scheelite.StateMachine;");
+        writer.println("import com.headstartech.scheelite.codegen.AbstractGeneratedStateMachine;");
+        writer.println();
+        writer.println("/**");
+        writer.println(" * Generated by scheelite-codegen, do not edit.");
+        writer.println(" */");
+        writer.printf("public final class %s<T, U> extends AbstractGeneratedStateMachine<T, U> {%n%n", simpleName);
+
+        writer.println("    private static final String[] STATES = {");
+        for (int i = 0; i < index.getStateCount(); i++) {
+            writer.printf("        %s,%n", quote(index.describeState(i)));
+        }
+        writer.println("    };");
+        writer.println();
+        writer.println("    private static final String[] TRANSITIONS = {");
+        for (int i = 0; i < index.getTransitionCount(); i++) {
+            writer.printf("        %s,%n", quote(index.describeTransition(i)));
+        }
+        writer.println("    };");
+        writer.println();
+
+        writer.printf("    public %s(StateMachine<T, U> stateMachine) {%n", simpleName);
+        writer.println("        super(stateMachine, STATES, TRANSITIONS);");
+        writer.println("    }");
+        writer.println();
+
+        writer.println("    @Override");
+        writer.println("    protected int initial(T context) throws ExecutionException {");
+        writeInitialTransitions(index, ChartIndex.ROOT, writer);
+        writer.println("    }");
+        writer.println();
+
+        writer.println("    @Override");
+        writer.println("    protected int step(int state, T context, Object event) throws ExecutionException {");
+        writer.println("        switch (state) {");
+        for (int s = 0; s < index.getStateCount(); s++) {
+            if (!index.getCandidates(s, true).isEmpty() || !index.getCandidates(s, false).isEmpty()) {
+                writer.printf("            case %d:%n", s);
+                writer.printf("                return step%d(context, event);%n", s);
+            }
+        }
+        writer.println("            default:");
+        writer.println("                return NONE;");
+        writer.println("        }");
+        writer.println("    }");
+
+        for (int s = 0; s < index.getStateCount(); s++) {
+            if (!index.getCandidates(s, true).isEmpty() || !index.getCandidates(s, false).isEmpty()) {
+                writeStep(index, s, writer);
+            }
+        }
+        for (int s = 0; s < index.getStateCount(); s++) {
+            if (index.getInitialTransition(s) != -1) {
+                writer.println();
+                writer.printf("    // %s%n", comment(index.describeState(s)));
+                writer.printf("    private int initial%d(T context) throws ExecutionException {%n", s);
+                writeInitialTransitions(index, s, writer);
+                writer.println("    }");
+            }
+        }
+        writer.println("}");
+        writer.flush();
+    }
+
+    private <T, U> void writeStep(ChartIndex<T, U> index, int state, PrintWriter writer) {
+        List<Integer> triggerless = index.getCandidates(state, true);
+        List<Integer> eventTriggered = index.getCandidates(state, false);
+
+        writer.println();
+        writer.printf("    // %s%n", comment(index.describeState(state)));
+        writer.printf("    private int step%d(T context, Object event) throws ExecutionException {%n", state);
+        writer.println("        int transition = NONE;");
+        if (!index.isFirstMatch()) {
+            writer.println("        int[] triggered = null;");
+        }
+        if (hasGuardOrAction(index, triggerless) || hasGuardOrAction(index, eventTriggered)) {
+            writer.println("        Optional<?> eventOptional = null;");
+        }
+        if (!triggerless.isEmpty()) {
+            writer.println("        if (event == null) {");
+            if (hasGuardOrAction(index, triggerless)) {
+                writer.println("            eventOptional = Optional.absent();");
+            }
+            for (int t : triggerless) {
+                writeCandidate(index, t, "            ", writer);
+            }
+            writer.println(eventTriggered.isEmpty() ? "        }" : "        } else {");
+        } else {
+            writer.println("        if (event != null) {");
+        }
+        Class<?> eventClass = null;
+        for (int t : eventTriggered) {
+            Class<?> triggerEventClass = index.getTransition(t).getTriggerEventClass().get();
+            if (!triggerEventClass.equals(eventClass)) {
+                if (eventClass != null) {
+                    writer.println("            }");
+                }
+                eventClass = triggerEventClass;
+                if (isAccessible(eventClass)) {
+                    writer.printf("            if (event instanceof %s) {%n", eventClass.getCanonicalName());
+                } else {
+                    writer.printf("            if (isTriggeredBy(%d, event)) {%n", t);
+                }
+            }
+            if (hasGuardOrAction(index.getTransition(t))) {
+                writer.println("                if (eventOptional == null) {");
+                writer.println("                    eventOptional = Optional.of(event);");
+                writer.println("                }");
+            }
+            writeCandidate(index, t, "                ", writer);
+        }
+        if (eventClass != null) {
+            writer.println("            }");
+            writer.println("        }");
+        }
+        if (!index.isFirstMatch()) {
+            writer.println("        if (triggered != null) {");
+            writer.printf("            transition = resolve(%d, context, event, triggered);%n", state);
+            writer.println("        }");
+        }
+        writer.println("        switch (transition) {");
+        for (int t : triggerless) {
+            writeTransition(index, state, t, writer);
+        }
+        for (int t : eventTriggered) {
+            writeTransition(index, state, t, writer);
+        }
+        writer.println("            default:");
+        writer.println("                return NONE;");
+        writer.println("        }");
+        writer.println("    }");
+    }
+
+    private <T, U> void writeCandidate(ChartIndex<T, U> index, int transition, String indentation, PrintWriter writer) {
+        if (index.isFirstMatch()) {
+            // candidates in priority order, skip the remaining guards once a transition has triggered
+            if (index.getTransition(transition).getGuard().isPresent()) {
+                writer.printf("%sif (transition == NONE && evaluateGuard(%d, context, eventOptional)) {%n", indentation, transition);
+            } else {
+                writer.printf("%sif (transition == NONE) {%n", indentation);
+            }
+            writer.printf("%s    transition = %d;%n", indentation, transition);
+            writer.printf("%s}%n", indentation);
+            return;
+        }
+        String trigger = String.format("if (transition == NONE) { transition = %d; } else { triggered = addTriggered(triggered, transition, %d); }",
+                transition, transition);
+        if (index.getTransition(transition).getGuard().isPresent()) {
+            writer.printf("%sif (evaluateGuard(%d, context, eventOptional)) {%n", indentation, transition);
+            writer.printf("%s    %s%n", indentation, trigger);
+            writer.printf("%s}%n", indentation);
+        } else {
+            writer.printf("%s%s%n", indentation, trigger);
+        }
+    }
+
+    private <T, U> void writeTransition(ChartIndex<T, U> index, int state, int transition, PrintWriter writer) {
+        writer.printf("            case %d: // %s%n", transition, comment(index.describeTransition(transition)));
+        for (int s : index.getExitStates(state, transition)) {
+            writer.printf("                exitState(%d, context);%n", s);
+        }
+        if (index.getTransition(transition).getAction().isPresent()) {
+            writer.printf("                executeAction(%d, context, eventOptional);%n", transition);
+        }
+        for (int s : index.getEntryStates(transition)) {
+            writer.printf("                enterState(%d, context);%n", s);
+        }
+        int target = index.getStateIndex(index.getTransition(transition).getMainTargetState());
+        if (index.getInitialTransition(target) != -1) {
+            writer.printf("                return initial%d(context);%n", target);
+        } else {
+            writer.printf("                return %d;%n", target);
+        }
+    }
+
+    private <T, U> void writeInitialTransitions(ChartIndex<T, U> index, int state, PrintWriter writer) {
+        int current = state;
+        int transition = index.getInitialTransition(current);
+        while (transition != -1) {
+            if (index.getTransition(transition).getAction().isPresent()) {
+                writer.printf("        executeAction(%d, context, Optional.absent());%n", transition);
+            }
+            current = index.getStateIndex(index.getTransition(transition).getMainTargetState());
+            writer.printf("        enterState(%d, context);%n", current);
+            transition = index.getInitialTransition(current);
+        }
+        writer.printf("        return %d;%n", current);
+    }
+
+    private <T, U> boolean hasGuardOrAction(ChartIndex<T, U> index, List<Integer> transitions) {
+        for (int t : transitions) {
+            if (hasGuardOrAction(index.getTransition(t))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T, U> boolean hasGuardOrAction(Transition<T, U> transition) {
+        return transition.getGuard().isPresent() || transition.getAction().isPresent();
+    }
+
+    /**
+     * Checks if the class can be referenced by name from the generated class, in any package.
+     */
+    private boolean isAccessible(Class<?> clazz) {
+        if (clazz.getCanonicalName() == null) {
+            return false;
+        }
+        for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private String comment(String s) {
+        return s.replaceAll("[\\r\\n]", " ").replace("\\u", "\\\\u");
+    }
+}
@@ -0,0 +1,383 @@
+package com.headstartech.scheelite.codegen;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.headstartech.scheelite.Action;
+import com.headstartech.scheelite.DeclarationOrderResolver;
+import com.headstartech.scheelite.FinalState;
+import com.headstartech.scheelite.Guard;
+import com.headstartech.scheelite.MultipleTransitionsTriggeredResolver;
+import com.headstartech.scheelite.PureGuard;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.Transition;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class StateMachineSourceGeneratorTest {
+
+    private static final String CLASS_NAME = "com.headstartech.scheelite.codegen.generated.GeneratedTestStateMachine";
+    private static final String PRIORITY_CLASS_NAME = "com.headstartech.scheelite.codegen.generated.GeneratedPriorityTestStateMachine";
+    private static final String PURE_GUARD_CLASS_NAME = "com.headstartech.scheelite.codegen.generated.GeneratedPureGuardTestStateMachine";
+
+    private Constructor<?> generatedConstructor;
+    private Constructor<?> generatedPriorityConstructor;
+    private Constructor<?> generatedPureGuardConstructor;
+
+    @BeforeClass
+    public void generateAndCompile() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new SkipException("no system java compiler available");
+        }
+        File directory = Files.createTempDir();
+        File source = new StateMachineSourceGenerator().generate(new TestDefinition(), CLASS_NAME, directory);
+        File prioritySource = new StateMachineSourceGenerator().generate(new PriorityTestDefinition(), PRIORITY_CLASS_NAME, directory);
+        File pureGuardSource = new StateMachineSourceGenerator().generate(new PureGuardTestDefinition(), PURE_GUARD_CLASS_NAME, directory);
+        int res = compiler.run(null, null, null, "-nowarn", "-cp", System.getProperty("java.class.path"), "-d", directory.getPath(),
+                source.getPath(), prioritySource.getPath(), pureGuardSource.getPath());
+        assertEquals(res, 0, "compiling generated source failed");
+        ClassLoader classLoader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass().getClassLoader());
+        generatedConstructor = classLoader.loadClass(CLASS_NAME).getConstructor(StateMachine.class);
+        generatedPriorityConstructor = classLoader.loadClass(PRIORITY_CLASS_NAME).getConstructor(StateMachine.class);
+        generatedPureGuardConstructor = classLoader.loadClass(PURE_GUARD_CLASS_NAME).getConstructor(StateMachine.class);
+    }
+
+    @Test
+    public void generatedStateMachineBehavesLikeInterpretedStateMachine() throws Exception {
+        // given
+        StateMachine<TestContext, String> interpreted = new TestDefinition().define().build();
+        StateMachine<TestContext, String> generated = createGenerated(new TestDefinition().define().build());
+        List<Object> events = createEvents(new Random(17), 2000);
+        TestContext interpretedContext = new TestContext();
+        TestContext generatedContext = new TestContext();
+
+        // when
+        String interpretedState = interpreted.start(interpretedContext);
+        String generatedState = generated.start(generatedContext);
+        List<String> interpretedStates = Lists.newArrayList(interpretedState);
+        List<String> generatedStates = Lists.newArrayList(generatedState);
+        for (Object event : events) {
+            interpretedState = interpreted.processEvent(interpretedContext, interpretedState, event);
+            generatedState = generated.processEvent(generatedContext, generatedState, event);
+            interpretedStates.add(interpretedState);
+            generatedStates.add(generatedState);
+        }
+
+        // then
+        assertEquals(generatedStates, interpretedStates);
+        assertEquals(generatedContext.log, interpretedContext.log);
+    }
+
+    @Test
+    public void generatedStateMachineCountsTransitionsLikeInterpretedStateMachine() throws Exception {
+        // given
+        StateMachine<TestContext, String> interpreted = new TestDefinition().define().build();
+        StateMachine<TestContext, String> generated = createGenerated(new TestDefinition().define().build());
+        List<Object> events = createEvents(new Random(42), 200);
+        int[] interpretedCounts = new int[events.size()];
+        int[] generatedCounts = new int[events.size()];
+        TestContext interpretedContext = new TestContext();
+        TestContext generatedContext = new TestContext();
+
+        // when
+        String interpretedState = interpreted.processEvents(interpretedContext, interpreted.start(interpretedContext), events, interpretedCounts);
+        String generatedState = generated.processEvents(generatedContext, generated.start(generatedContext), events, generatedCounts);
+
+        // then
+        assertEquals(generatedState, interpretedState);
+        assertEquals(generatedCounts, interpretedCounts);
+        assertEquals(generatedContext.log, interpretedContext.log);
+    }
+
+    @Test
+    public void generatedStateMachineTakesFirstMatchLikeInterpretedStateMachine() throws Exception {
+        // given
+        StateMachine<TestContext, String> interpreted = new PriorityTestDefinition().define().build();
+        StateMachine<TestContext, String> generated = createGenerated(generatedPriorityConstructor, new PriorityTestDefinition().define().build());
+        List<Object> events = createEvents(new Random(7), 2000);
+        TestContext interpretedContext = new TestContext();
+        TestContext generatedContext = new TestContext();
+
+        // when
+        String interpretedState = interpreted.processEvents(interpretedContext, interpreted.start(interpretedContext), events);
+        String generatedState = generated.processEvents(generatedContext, generated.start(generatedContext), events);
+
+        // then
+        assertEquals(generatedState, interpretedState);
+        assertEquals(generatedContext.log, interpretedContext.log);
+    }
+
+    @Test
+    public void generatedStateMachineMemoizesPureGuardsLikeInterpretedStateMachine() throws Exception {
+        // given
+        StateMachine<TestContext, String> interpreted = new PureGuardTestDefinition().define().build();
+        StateMachine<TestContext, String> generated = createGenerated(generatedPureGuardConstructor, new PureGuardTestDefinition().define().build());
+        List<Object> events = createEvents(new Random(3), 200);
+        TestContext interpretedContext = new TestContext();
+        TestContext generatedContext = new TestContext();
+
+        // when
+        String interpretedState = interpreted.processEvents(interpretedContext, interpreted.start(interpretedContext), events);
+        String generatedState = generated.processEvents(generatedContext, generated.start(generatedContext), events);
+
+        // then ... the pure guard shared by the transitions triggered by X is evaluated once per X
+        assertEquals(generatedState, interpretedState);
+        assertEquals(generatedContext.log, interpretedContext.log);
+        int pureGuardEvaluations = 0;
+        int resolutions = 0;
+        for (String entry : generatedContext.log) {
+            if (entry.startsWith("pure guard")) {
+                pureGuardEvaluations++;
+            } else if (entry.startsWith("resolve")) {
+                resolutions++;
+            }
+        }
+        assertEquals(pureGuardEvaluations, resolutions);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void createFromDifferentChartFails() throws Exception {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        StateMachineBuilder<TestContext, String> builder = StateMachineBuilder.newBuilder();
+        StateMachine<TestContext, String> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, X.class)
+                .build();
+
+        // when
+        createGenerated(stateMachine);
+    }
+
+    private StateMachine<TestContext, String> createGenerated(StateMachine<TestContext, String> stateMachine) throws Exception {
+        return createGenerated(generatedConstructor, stateMachine);
+    }
+
+    @SuppressWarnings("unchecked")
+    private StateMachine<TestContext, String> createGenerated(Constructor<?> constructor, StateMachine<TestContext, String> stateMachine) throws Exception {
+        try {
+            return (StateMachine<TestContext, String>) constructor.newInstance(stateMachine);
+        } catch (InvocationTargetException e) {
+            Throwables.propagateIfPossible(e.getCause(), Exception.class);
+            throw e;
+        }
+    }
+
+    private List<Object> createEvents(Random random, int count) {
+        List<Object> candidates = ImmutableList.of(new X(), new SubX(), new Y(), new Z(), new W());
+        List<Object> res = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            res.add(candidates.get(random.nextInt(candidates.size())));
+        }
+        return res;
+    }
+
+    /**
+     * A chart with nested composite states, guards, actions, local and self transitions, a triggerless transition,
+     * a completion transition and multiple transitions triggered by the same event.
+     */
+    public static class TestDefinition implements StateMachineDefinition<TestContext, String> {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public StateMachineBuilder<TestContext, String> define() {
+            TestState a = new TestState("A");
+            TestState a1 = new TestState("A1");
+            TestState a2 = new TestState("A2");
+            TestFinalState af = new TestFinalState("AF");
+            TestState b = new TestState("B");
+            TestState c = new TestState("C");
+            TestState d = new TestState("D");
+            TestState d1 = new TestState("D1");
+
+            StateMachineBuilder<TestContext, String> builder = StateMachineBuilder.newBuilder();
+            return builder
+                    .withInitialTransition(a, new LogAction("init"))
+                    .withCompositeState(a, new LogAction("initA"), a1, a2, af)
+                    .withCompositeState(d, d1)
+                    .withTransition(a1, a2, X.class, new LogAction("a1a2"))
+                    .withTransition(a2, af, X.class, new CountGuard(2))
+                    .withTransition(a2, a1, SubX.class)
+                    .withCompositeStateCompletedTransition(af, b, new LogAction("completed"))
+                    .withTransition(a, a, Y.class)
+                    .withLocalTransition(a, a2, Z.class)
+                    .withTransition(b, c, Y.class)
+                    .withTransition(c, d, new CountGuard(3), new LogAction("cd"))
+                    .withTransition(c, b, X.class)
+                    .withTransition(b, c, Z.class)
+                    .withTransition(b, d, Z.class, new LogAction("bd"))
+                    .withTransition(d1, a, Object.class, new CountGuard(4))
+                    .withTransition(d, b, W.class)
+                    .withMultipleTransitionsTriggerPolicy(new LastTransitionResolver());
+        }
+    }
+
+    /**
+     * The same chart, taking the first triggered transition in declaration order.
+     */
+    public static class PriorityTestDefinition extends TestDefinition {
+
+        @Override
+        public StateMachineBuilder<TestContext, String> define() {
+            return super.define().withMultipleTransitionsTriggerPolicy(new DeclarationOrderResolver<TestContext, String>());
+        }
+    }
+
+    /**
+     * A chart where two transitions triggered by the same event share a pure guard.
+     */
+    public static class PureGuardTestDefinition implements StateMachineDefinition<TestContext, String> {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public StateMachineBuilder<TestContext, String> define() {
+            TestState a = new TestState("A");
+            TestState b = new TestState("B");
+            TestState c = new TestState("C");
+            LogPureGuard guard = new LogPureGuard();
+
+            StateMachineBuilder<TestContext, String> builder = StateMachineBuilder.newBuilder();
+            return builder
+                    .withInitialTransition(a)
+                    .withTransition(a, b, X.class, guard)
+                    .withTransition(a, c, X.class, guard)
+                    .withTransition(b, a, Y.class)
+                    .withTransition(c, a, Y.class)
+                    .withMultipleTransitionsTriggerPolicy(new LastTransitionResolver());
+        }
+    }
+
+    public static class TestContext {
+        private final List<String> log = Lists.newArrayList();
+        private int counter;
+    }
+
+    public static class TestState extends StateAdapter<TestContext, String> {
+
+        private final String id;
+
+        public TestState(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public void onEntry(TestContext context) {
+            context.log.add("enter " + id);
+        }
+
+        @Override
+        public void onExit(TestContext context) {
+            context.log.add("exit " + id);
+        }
+
+        @Override
+        public boolean onEvent(TestContext context, Object event) {
+            context.log.add("event " + id + " " + event.getClass().getSimpleName());
+            return event instanceof Y && id.equals("A1");
+        }
+    }
+
+    public static class TestFinalState extends FinalState<TestContext, String> {
+
+        private final String id;
+
+        public TestFinalState(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+
+    public static class LogAction implements Action<TestContext> {
+
+        private final String name;
+
+        public LogAction(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(TestContext context, Optional<?> event) {
+            context.log.add("action " + name + " " + (event.isPresent() ? event.get().getClass().getSimpleName() : "-"));
+        }
+    }
+
+    /**
+     * Accepts every n:th evaluation.
+     */
+    public static class CountGuard implements Guard<TestContext> {
+
+        private final int n;
+
+        public CountGuard(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public boolean evaluate(TestContext context, Optional<?> event) {
+            context.log.add("guard " + n + " " + (event.isPresent() ? event.get().getClass().getSimpleName() : "-"));
+            return ++context.counter % n == 0;
+        }
+    }
+
+    public static class LogPureGuard implements PureGuard<TestContext> {
+
+        @Override
+        public boolean evaluate(TestContext context, Optional<?> event) {
+            context.log.add("pure guard " + (event.isPresent() ? event.get().getClass().getSimpleName() : "-"));
+            return true;
+        }
+    }
+
+    public static class LastTransitionResolver implements MultipleTransitionsTriggeredResolver<TestContext, String> {
+
+        @Override
+        public Transition<TestContext, String> resolve(String stateId, TestContext context, Optional<?> event, List<Transition<TestContext, String>> transitions) {
+            context.log.add("resolve " + stateId + " " + transitions.size());
+            return transitions.get(transitions.size() - 1);
+        }
+    }
+
+    public static class X {
+    }
+
+    public static class SubX extends X {
+    }
+
+    public static class Y {
+    }
+
+    public static class Z {
+    }
+
+    // not accessible from the generated class
+    static class W {
+    }
+}
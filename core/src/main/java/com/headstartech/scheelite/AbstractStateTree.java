@@ -61,16 +61,14 @@ abstract class AbstractStateTree<T, U> implements StateTree<T, U> {
     public boolean isAncestorOf(State<T, U> a, State<T, U> b) {
         checkNotNull(a);
         checkNotNull(b);
-        List<State<T, U>> ancestorsOfB = getAncestors(b);
-        return ancestorsOfB.contains(a);
+        return isOnPathToRoot(a, b);
     }
 
     @Override
     public boolean isDescendantOf(State<T, U> a, State<T, U> b) {
         checkNotNull(a);
         checkNotNull(b);
-        List<State<T, U>> ancestorsOfA = getAncestors(a);
-        return ancestorsOfA.contains(b);
+        return isOnPathToRoot(b, a);
     }
 
 
@@ -118,19 +116,19 @@ abstract class AbstractStateTree<T, U> implements StateTree<T, U> {
         }
     }
 
-    private List<State<T, U>> getAncestors(State<T, U> state) {
-        checkNotNull(state);
-        List<State<T, U>> res = Lists.newArrayList();
+    /**
+     * Checks if <code>a</code> is <code>state</code> or one of its ancestors.
+     */
+    private boolean isOnPathToRoot(State<T, U> a, State<T, U> state) {
+        Map<State<T, U>, State<T, U>> map = getMap();
         State<T, U> current = state;
-        do {
-            res.add(current);
-            Optional<State<T, U>> parent = getParent(current);
-            if(parent.isPresent()) {
-                current = parent.get();
-            } else {
-                return res;
+        while (current != null) {
+            if (current.equals(a)) {
+                return true;
             }
-        } while (true);
+            current = map.get(current);
+        }
+        return false;
     }
 
     @Override
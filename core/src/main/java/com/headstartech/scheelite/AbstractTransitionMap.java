@@ -1,8 +1,6 @@
 package com.headstartech.scheelite;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
@@ -36,22 +34,4 @@ abstract class AbstractTransitionMap<T, U> implements TransitionMap<T, U> {
     public Set<Transition<T, U>> getTransitions() {
         return Sets.newHashSet(getTransitionsFromMap().values());
     }
-
-    protected Multimap<State<T, U>, Transition<T, U>> createTransitionsFromMap(Set<Transition<T, U>> transitions) {
-        Multimap<State<T, U>, Transition<T, U>> map = ArrayListMultimap.create();
-        for (Transition<T, U> transition : transitions) {
-            map.put(transition.getMainSourceState(), transition);
-        }
-        return map;
-    }
-
-    protected Map<State<T, U>, Transition<T, U>> createInitialTransitionsFromMap(Set<Transition<T, U>> transitions) {
-        Map<State<T, U>, Transition<T, U>> map = Maps.newHashMap();
-        for (Transition<T, U> transition : transitions) {
-            if(TransitionType.INITIAL.equals(transition.getTransitionType())) {
-                map.put(transition.getMainSourceState(), transition);
-            }
-        }
-        return map;
-    }
 }
@@ -0,0 +1,28 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * An action completing asynchronously, e.g. an action doing remote I/O.
+ *
+ * When processing events asynchronously, the state machine calls {@link #executeAsync(Object, Optional)} and
+ * continues with the transition when the returned future completes, without blocking the calling thread. When
+ * processing events synchronously, {@link #execute(Object, Optional)} is called.
+ *
+ * @param <T> context type
+ *
+ * @see StateMachine#processEventAsync(Object, Object, Object)
+ * @see AsyncActionAdapter
+ */
+public interface AsyncAction<T> extends Action<T> {
+
+    /**
+     * Called when the action is executed asynchronously.
+     *
+     * @param context the context
+     * @param event the current event (if any)
+     * @return a future completing when the action is done, failing if the action fails
+     */
+    ListenableFuture<?> executeAsync(T context, Optional<?> event) throws Exception;
+}
@@ -0,0 +1,18 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+
+/**
+ * Async action adapter class, executing the action synchronously by waiting for the asynchronous execution to complete.
+ *
+ * @param <T> context type
+ *
+ * @see AsyncAction
+ */
+public abstract class AsyncActionAdapter<T> implements AsyncAction<T> {
+
+    @Override
+    public void execute(T context, Optional<?> event) throws Exception {
+        AsyncStateAdapter.await(executeAsync(context, event));
+    }
+}
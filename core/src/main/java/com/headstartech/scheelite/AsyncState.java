@@ -0,0 +1,36 @@
+package com.headstartech.scheelite;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A state with entry and exit callbacks completing asynchronously.
+ *
+ * When processing events asynchronously, the state machine calls {@link #onEntryAsync(Object)} and
+ * {@link #onExitAsync(Object)} and continues with the transition when the returned future completes, without blocking
+ * the calling thread. When processing events synchronously, {@link #onEntry(Object)} and {@link #onExit(Object)} are
+ * called. {@link #onEvent(Object, Object)} is always called synchronously.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachine#processEventAsync(Object, Object, Object)
+ * @see AsyncStateAdapter
+ */
+public interface AsyncState<T, U> extends State<T, U> {
+
+    /**
+     * Called by the state machine when the state is entered asynchronously.
+     *
+     * @param context the context
+     * @return a future completing when the callback is done, failing if the callback fails
+     */
+    ListenableFuture<?> onEntryAsync(T context) throws Exception;
+
+    /**
+     * Called by the state machine when the state is exited asynchronously.
+     *
+     * @param context the context
+     * @return a future completing when the callback is done, failing if the callback fails
+     */
+    ListenableFuture<?> onExitAsync(T context) throws Exception;
+}
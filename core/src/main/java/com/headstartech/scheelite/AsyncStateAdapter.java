@@ -0,0 +1,59 @@
+package com.headstartech.scheelite;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Async state adapter class. The synchronous entry and exit callbacks wait for the asynchronous callbacks to
+ * complete.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see AsyncState
+ */
+public abstract class AsyncStateAdapter<T, U> implements AsyncState<T, U> {
+
+    @Override
+    public ListenableFuture<?> onEntryAsync(T context) throws Exception {
+        // nothing done here
+        return Futures.immediateFuture(null);
+    }
+
+    @Override
+    public ListenableFuture<?> onExitAsync(T context) throws Exception {
+        // nothing done here
+        return Futures.immediateFuture(null);
+    }
+
+    @Override
+    public void onEntry(T context) throws Exception {
+        await(onEntryAsync(context));
+    }
+
+    @Override
+    public void onExit(T context) throws Exception {
+        await(onExitAsync(context));
+    }
+
+    @Override
+    public boolean onEvent(T context, Object event) throws Exception {
+        // event not handled here
+        return false;
+    }
+
+    /**
+     * Waits for the future, throwing the exception it failed with.
+     */
+    static void await(ListenableFuture<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+}
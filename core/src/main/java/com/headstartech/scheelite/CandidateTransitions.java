@@ -0,0 +1,119 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The candidate transitions for a state and an event class, specialized when the state machine is built.
+ *
+ * Whether the candidates need the event wrapped for guards and actions, and whether a single candidate is taken
+ * without evaluating any guard, is known up front, so the common cases don't iterate the candidates when
+ * processing an event.
+ *
+ * The candidates may also be evaluated by a {@link Dispatcher}, testing the trigger event classes of the candidates
+ * as well as their guards.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+final class CandidateTransitions<T, U> {
+
+    private static final CandidateTransitions<Object, Object> EMPTY = new CandidateTransitions<Object, Object>(ImmutableList.<CompiledTransition<Object, Object>>of(), null);
+
+    private final List<CompiledTransition<T, U>> transitions;
+    private final CompiledTransition<T, U> unconditionalTransition;
+    private final boolean eventRequired;
+    private final Dispatcher<T> dispatcher;
+
+    private CandidateTransitions(List<CompiledTransition<T, U>> transitions, Dispatcher<T> dispatcher) {
+        this.transitions = transitions;
+        this.dispatcher = dispatcher;
+        // the trigger event class of a dispatched candidate is only tested by the dispatcher
+        this.unconditionalTransition = transitions.size() == 1 && transitions.get(0).getGuard() == null &&
+                (dispatcher == null || !transitions.get(0).getTransition().getTriggerEventClass().isPresent()) ? transitions.get(0) : null;
+        boolean eventRequired = false;
+        for (CompiledTransition<T, U> t : transitions) {
+            eventRequired |= t.getGuard() != null || t.getAction() != null;
+        }
+        this.eventRequired = eventRequired;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T, U> CandidateTransitions<T, U> empty() {
+        return (CandidateTransitions<T, U>) EMPTY;
+    }
+
+    static <T, U> CandidateTransitions<T, U> of(List<CompiledTransition<T, U>> transitions) {
+        checkNotNull(transitions);
+        if (transitions.isEmpty()) {
+            return empty();
+        }
+        return new CandidateTransitions<T, U>(ImmutableList.copyOf(transitions), null);
+    }
+
+    /**
+     * Creates candidates evaluated by a dispatcher.
+     *
+     * @param transitions the candidates, at most {@link Dispatcher#MAX_CANDIDATES}
+     * @param dispatcherFactory the factory creating the dispatcher
+     * @param firstMatch <code>true</code> if only the first triggered candidate is selected
+     * @return the candidates
+     */
+    static <T, U> CandidateTransitions<T, U> dispatched(List<CompiledTransition<T, U>> transitions, DispatcherFactory dispatcherFactory,
+                                                        boolean firstMatch) {
+        checkNotNull(transitions);
+        checkNotNull(dispatcherFactory);
+        checkArgument(transitions.size() <= Dispatcher.MAX_CANDIDATES, "too many candidates: size=%s", transitions.size());
+        if (transitions.isEmpty()) {
+            return empty();
+        }
+        List<DispatchCandidate<T>> candidates = Lists.newArrayListWithCapacity(transitions.size());
+        for (CompiledTransition<T, U> t : transitions) {
+            candidates.add(new DispatchCandidate<T>(t.getTransition().getTriggerEventClass(), Optional.fromNullable(t.getGuard())));
+        }
+        Dispatcher<T> dispatcher = dispatcherFactory.createDispatcher(ImmutableList.copyOf(candidates), firstMatch);
+        return new CandidateTransitions<T, U>(ImmutableList.copyOf(transitions), checkNotNull(dispatcher));
+    }
+
+    /**
+     * Gets the candidates, ordered according to source state's distance from the root (furthest away first).
+     */
+    List<CompiledTransition<T, U>> getTransitions() {
+        return transitions;
+    }
+
+    boolean isEmpty() {
+        return transitions.isEmpty();
+    }
+
+    /**
+     * Gets the transition taken without evaluating any guard, i.e. the only candidate if it has no guard.
+     *
+     * @return the transition or <code>null</code> if guards must be evaluated to select the transition
+     */
+    CompiledTransition<T, U> getUnconditionalTransition() {
+        return unconditionalTransition;
+    }
+
+    /**
+     * Gets the dispatcher evaluating the candidates.
+     *
+     * @return the dispatcher or <code>null</code> if the candidates are evaluated one by one
+     */
+    Dispatcher<T> getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Checks if any of the candidates has a guard or an action, i.e. if the event must be passed on.
+     */
+    boolean isEventRequired() {
+        return eventRequired;
+    }
+}
@@ -0,0 +1,118 @@
+package com.headstartech.scheelite;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A transition together with the states exited and entered when it's taken from a specific state.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+final class CompiledTransition<T, U> {
+
+    private final Transition<T, U> transition;
+    private final List<State<T, U>> exitStates;
+    private final List<State<T, U>> entryStates;
+    private final Guard<T> guard;
+    private final Action<T> action;
+
+    private CompiledTransition(Transition<T, U> transition, List<State<T, U>> exitStates, List<State<T, U>> entryStates, Guard<T> guard) {
+        this.transition = transition;
+        this.exitStates = exitStates;
+        this.entryStates = entryStates;
+        this.guard = guard;
+        this.action = transition.getAction().orNull();
+    }
+
+    /**
+     * Compiles the transition for the specified current state.
+     *
+     * @param stateTree the state tree
+     * @param currentState the state the transition is taken from (the main source state or one of its descendants)
+     * @param transition the transition
+     * @return the compiled transition
+     */
+    static <T, U> CompiledTransition<T, U> compile(StateTree<T, U> stateTree, State<T, U> currentState, Transition<T, U> transition) {
+        return compile(stateTree, currentState, transition, transition.getGuard().orNull());
+    }
+
+    /**
+     * Compiles the transition for the specified current state, evaluating the specified guard instead of the guard
+     * of the transition (e.g. a guard consulting memoized results).
+     *
+     * @param stateTree the state tree
+     * @param currentState the state the transition is taken from (the main source state or one of its descendants)
+     * @param transition the transition
+     * @param guard the guard to evaluate or <code>null</code> if the transition has no guard
+     * @return the compiled transition
+     */
+    static <T, U> CompiledTransition<T, U> compile(StateTree<T, U> stateTree, State<T, U> currentState, Transition<T, U> transition,
+                                                   Guard<T> guard) {
+        checkNotNull(stateTree);
+        checkNotNull(currentState);
+        checkNotNull(transition);
+
+        State<T, U> mainSourceState = transition.getMainSourceState();
+        State<T, U> mainTargetState = transition.getMainTargetState();
+
+        // get lowest common ancestor (LCA) for main source state and main target state
+        State<T, U> lowestCommonAncestor = stateTree.getLowestCommonAncestor(mainSourceState, mainTargetState);
+        boolean exitAndEnterAncestor = TransitionType.EXTERNAL.equals(transition.getTransitionType()) &&
+                (mainSourceState.equals(lowestCommonAncestor) || mainTargetState.equals(lowestCommonAncestor));
+
+        // exit from the current state up to the LCA
+        List<State<T, U>> exitStates = stateTree.getPathToAncestor(currentState, lowestCommonAncestor, false);
+        if (exitAndEnterAncestor) {
+            exitStates.add(lowestCommonAncestor);
+        }
+
+        // enter from the LCA down to the main target state
+        List<State<T, U>> entryStates = stateTree.getPathToAncestor(mainTargetState, lowestCommonAncestor, false);
+        if (exitAndEnterAncestor) {
+            entryStates.add(lowestCommonAncestor);
+        }
+
+        return new CompiledTransition<T, U>(transition, ImmutableList.copyOf(exitStates), ImmutableList.copyOf(Lists.reverse(entryStates)), guard);
+    }
+
+    Transition<T, U> getTransition() {
+        return transition;
+    }
+
+    /**
+     * Gets the guard of the transition.
+     *
+     * @return the guard or <code>null</code> if the transition has no guard
+     */
+    Guard<T> getGuard() {
+        return guard;
+    }
+
+    /**
+     * Gets the action of the transition.
+     *
+     * @return the action or <code>null</code> if the transition has no action
+     */
+    Action<T> getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the states to exit, innermost state first.
+     */
+    List<State<T, U>> getExitStates() {
+        return exitStates;
+    }
+
+    /**
+     * Gets the states to enter, outermost state first.
+     */
+    List<State<T, U>> getEntryStates() {
+        return entryStates;
+    }
+}
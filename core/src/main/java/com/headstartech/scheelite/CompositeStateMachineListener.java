@@ -0,0 +1,98 @@
+package com.headstartech.scheelite;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Listener notifying a number of listeners in registration order.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+final class CompositeStateMachineListener<T, U> implements StateMachineListener<T, U> {
+
+    private final List<StateMachineListener<T, U>> listeners;
+
+    CompositeStateMachineListener(List<StateMachineListener<T, U>> listeners) {
+        this.listeners = ImmutableList.copyOf(listeners);
+    }
+
+    /**
+     * Gets a single listener notifying the specified listeners.
+     *
+     * @return the listener or <code>null</code> if no listeners are specified
+     */
+    static <T, U> StateMachineListener<T, U> of(List<StateMachineListener<T, U>> listeners) {
+        if (listeners.isEmpty()) {
+            return null;
+        }
+        if (listeners.size() == 1) {
+            return listeners.get(0);
+        }
+        return new CompositeStateMachineListener<T, U>(listeners);
+    }
+
+    @Override
+    public void eventReceived(T context, U stateId, Object event) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).eventReceived(context, stateId, event);
+        }
+    }
+
+    @Override
+    public void guardEvaluated(T context, Transition<T, U> transition, boolean result, long durationNanos) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).guardEvaluated(context, transition, result, durationNanos);
+        }
+    }
+
+    @Override
+    public void transitionSelected(T context, U stateId, Transition<T, U> transition) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).transitionSelected(context, stateId, transition);
+        }
+    }
+
+    @Override
+    public void stateExited(T context, U stateId, long durationNanos) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).stateExited(context, stateId, durationNanos);
+        }
+    }
+
+    @Override
+    public void stateEntered(T context, U stateId, long durationNanos) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).stateEntered(context, stateId, durationNanos);
+        }
+    }
+
+    @Override
+    public void actionExecuted(T context, Transition<T, U> transition, long durationNanos) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).actionExecuted(context, transition, durationNanos);
+        }
+    }
+
+    @Override
+    public void transitionExecuted(T context, U sourceStateId, Transition<T, U> transition, long durationNanos) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).transitionExecuted(context, sourceStateId, transition, durationNanos);
+        }
+    }
+
+    @Override
+    public void eventProcessed(T context, U sourceStateId, U targetStateId, Object event, int transitions, long durationNanos) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).eventProcessed(context, sourceStateId, targetStateId, event, transitions, durationNanos);
+        }
+    }
+
+    @Override
+    public void eventFailed(T context, U stateId, Object event, Exception exception, long durationNanos) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).eventFailed(context, stateId, event, exception, durationNanos);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.headstartech.scheelite;
+
+import com.google.common.collect.Maps;
+
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Resolves multiple triggered transitions by taking the transition added to the builder first, regardless of the
+ * source state.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachineBuilder#withMultipleTransitionsTriggerPolicy(MultipleTransitionsTriggeredResolver)
+ */
+public class DeclarationOrderResolver<T, U> extends PriorityResolver<T, U> {
+
+    @Override
+    public Comparator<Transition<T, U>> getPriorityOrder(StateMachineConfiguration<T, U> configuration) {
+        final Map<Transition<T, U>, Integer> indexes = Maps.newHashMap();
+        for (Transition<T, U> t : configuration.getTransitions()) {
+            indexes.put(t, indexes.size());
+        }
+        return new Comparator<Transition<T, U>>() {
+            @Override
+            public int compare(Transition<T, U> o1, Transition<T, U> o2) {
+                return indexes.get(o1).compareTo(indexes.get(o2));
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package com.headstartech.scheelite;
+
+import java.util.List;
+
+/**
+ * Handles the events still deferred when the state machine returns. The state machine doesn't keep any state between
+ * invocations, so the deferred events are handed back, e.g. to be stored with the context and processed again after
+ * the next event.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachineBuilder#withDeferredEvent(State, Class)
+ * @see StateMachineBuilder#withDeferredEventHandler(DeferredEventHandler)
+ */
+public interface DeferredEventHandler<T, U> {
+
+    /**
+     * Handles the events still deferred when processing completes, invoked before the processing method returns.
+     *
+     * @param context the context
+     * @param stateId id of the current state, deferring the events
+     * @param events the deferred events, in the order they were received
+     */
+    void handleDeferredEvents(T context, U stateId, List<Object> events);
+}
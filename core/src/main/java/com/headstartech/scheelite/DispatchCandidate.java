@@ -0,0 +1,40 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A candidate transition as evaluated by a {@link Dispatcher}.
+ *
+ * @param <T> context type
+ */
+public final class DispatchCandidate<T> {
+
+    private final Optional<Class<?>> triggerEventClass;
+    private final Optional<Guard<T>> guard;
+
+    DispatchCandidate(Optional<Class<?>> triggerEventClass, Optional<Guard<T>> guard) {
+        this.triggerEventClass = checkNotNull(triggerEventClass);
+        this.guard = checkNotNull(guard);
+    }
+
+    /**
+     * Gets the class of the events triggering the candidate.
+     *
+     * @return the trigger event class or {@code Optional.absent()} for a triggerless candidate
+     */
+    public Optional<Class<?>> getTriggerEventClass() {
+        return triggerEventClass;
+    }
+
+    /**
+     * Gets the guard to evaluate, which may differ from the guard of the transition (e.g. a guard consulting
+     * memoized results).
+     *
+     * @return the guard or {@code Optional.absent()} if the candidate has no guard
+     */
+    public Optional<Guard<T>> getGuard() {
+        return guard;
+    }
+}
@@ -0,0 +1,255 @@
+package com.headstartech.scheelite;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Precompiled lookup of the candidate transitions for a state and an event.
+ *
+ * For every state the non-initial transitions from the state and its ancestors are resolved when the state
+ * machine is built, ordered according to the source state's distance from the root (furthest away first), or
+ * in the priority order of a {@link PriorityResolver}. The candidates are further grouped by the event classes triggering them, so processing an event only requires
+ * a single lookup before the guards are evaluated. Each candidate is compiled for the state, i.e. the states exited
+ * and entered when taking the transition from the state are known up front.
+ *
+ * Event classes not declared as trigger (e.g. sub classes of a declared trigger event class) are matched against
+ * the candidates the first time they are seen and the result is cached per state, so subsequent events of the
+ * same runtime class also only require a single lookup. The cache holds the event classes weakly.
+ *
+ * If a {@link DispatcherFactory} is given, the candidates of each state are instead evaluated by dispatchers: one for
+ * the candidates with a trigger event class, testing the trigger event classes as well as the guards, and one for the
+ * triggerless candidates. Candidates of a state exceeding {@link Dispatcher#MAX_CANDIDATES} are looked up as above.
+ *
+ * If the state ids are enum constants, the entries are also indexed by the ordinal of the state ids, so only the
+ * event class is hashed when looking up the candidates.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+final class DispatchTable<T, U> {
+
+    private final Map<State<T, U>, Entry<T, U>> entries;
+    private final GuardMemoizer guardMemoizer;
+    private final Map<Transition<T, U>, Guard<T>> memoizedGuards;
+
+    private final Comparator<Transition<T, U>> priorityOrder;
+    private final DispatcherFactory dispatcherFactory;
+
+    private final Entry<T, U>[] entriesByIdOrdinal;  // null unless the state ids are enum constants
+
+    DispatchTable(StateTree<T, U> stateTree, TransitionMap<T, U> transitionMap) {
+        this(stateTree, transitionMap, null, null, null);
+    }
+
+    /**
+     * Creates a dispatch table.
+     *
+     * @param stateTree the state tree
+     * @param transitionMap the transition map
+     * @param priorityOrder the priority order (highest priority first), or <code>null</code> to keep the default order
+     * @param enumStateIdClass the enum class of the state ids to index the entries by the ordinal of the state ids,
+     *                         or <code>null</code>
+     * @param dispatcherFactory the factory of the dispatchers evaluating the candidates, or <code>null</code>
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    DispatchTable(StateTree<T, U> stateTree, TransitionMap<T, U> transitionMap, Comparator<Transition<T, U>> priorityOrder,
+                  Class<U> enumStateIdClass, DispatcherFactory dispatcherFactory) {
+        checkNotNull(stateTree);
+        checkNotNull(transitionMap);
+        this.priorityOrder = priorityOrder;
+        this.dispatcherFactory = dispatcherFactory;
+
+        this.guardMemoizer = GuardMemoizer.create(transitionMap.getTransitions());
+        this.memoizedGuards = Maps.newIdentityHashMap();
+        if (guardMemoizer != null) {
+            for (Transition<T, U> t : transitionMap.getTransitions()) {
+                if (t.getGuard().isPresent()) {
+                    memoizedGuards.put(t, guardMemoizer.memoize(t.getGuard().get()));
+                }
+            }
+        }
+
+        Map<State<T, U>, Entry<T, U>> map = Maps.newHashMap();
+        for (State<T, U> state : stateTree.getStates()) {
+            map.put(state, createEntry(stateTree, transitionMap, state));
+        }
+        this.entries = ImmutableMap.copyOf(map);
+
+        if (enumStateIdClass != null) {
+            this.entriesByIdOrdinal = new Entry[EnumStateIds.size(enumStateIdClass)];
+            for (Map.Entry<State<T, U>, Entry<T, U>> entry : entries.entrySet()) {
+                entriesByIdOrdinal[EnumStateIds.ordinal(entry.getKey())] = entry.getValue();
+            }
+        } else {
+            this.entriesByIdOrdinal = null;
+        }
+    }
+
+    /**
+     * Gets the memoizer of the pure guards evaluated by the candidates.
+     *
+     * @return the memoizer or <code>null</code> if no transition has a pure guard
+     */
+    GuardMemoizer getGuardMemoizer() {
+        return guardMemoizer;
+    }
+
+    /**
+     * Gets the candidate transitions for the specified state and event. The trigger event class of each candidate
+     * matches the event (or the candidate has no trigger event class if no event is present), unless the candidates
+     * are evaluated by a dispatcher.
+     *
+     * @param state the current state
+     * @param event the current event or <code>null</code> if no event is present
+     * @return the candidate transitions, ordered according to source state's distance from the root (furthest away first)
+     *         or in priority order
+     */
+    CandidateTransitions<T, U> getCandidates(State<T, U> state, Object event) {
+        Entry<T, U> entry = entriesByIdOrdinal != null ? entriesByIdOrdinal[EnumStateIds.ordinal(state)] : entries.get(state);
+        if (entry == null) {
+            return CandidateTransitions.empty();
+        }
+        if (event == null) {
+            return entry.triggerlessTransitions;
+        }
+        if (entry.dispatchedEventTransitions != null) {
+            return entry.dispatchedEventTransitions;
+        }
+        CandidateTransitions<T, U> candidates = entry.transitionsByEventClass.get(event.getClass());
+        if (candidates != null) {
+            return candidates;
+        }
+        return entry.getInheritedTransitions(event.getClass());
+    }
+
+    private Entry<T, U> createEntry(StateTree<T, U> stateTree, TransitionMap<T, U> transitionMap, State<T, U> state) {
+        List<CompiledTransition<T, U>> triggerless = Lists.newArrayList();
+        List<CompiledTransition<T, U>> eventTransitions = Lists.newArrayList();
+        for (State<T, U> s : stateTree.getPathToAncestor(state, stateTree.getRootState(), false)) {
+            for (Transition<T, U> t : transitionMap.getTransitionsFromState(s)) {
+                if (TransitionType.INITIAL.equals(t.getTransitionType())) {
+                    continue;
+                }
+                Guard<T> guard = memoizedGuards.containsKey(t) ? memoizedGuards.get(t) : t.getGuard().orNull();
+                CompiledTransition<T, U> compiled = CompiledTransition.compile(stateTree, state, t, guard);
+                if (t.getTriggerEventClass().isPresent()) {
+                    eventTransitions.add(compiled);
+                } else {
+                    triggerless.add(compiled);
+                }
+            }
+        }
+
+        if (priorityOrder != null) {
+            sortByPriority(triggerless);
+            sortByPriority(eventTransitions);
+        }
+
+        if (isDispatched(eventTransitions)) {
+            return new Entry<T, U>(getTriggerlessCandidates(triggerless), CandidateTransitions.dispatched(eventTransitions, dispatcherFactory,
+                    priorityOrder != null), ImmutableList.<CompiledTransition<T, U>>of(), ImmutableMap.<Class<?>, CandidateTransitions<T, U>>of());
+        }
+
+        Map<Class<?>, CandidateTransitions<T, U>> byEventClass = Maps.newHashMap();
+        for (CompiledTransition<T, U> t : eventTransitions) {
+            Class<?> eventClass = t.getTransition().getTriggerEventClass().get();
+            if (!byEventClass.containsKey(eventClass)) {
+                byEventClass.put(eventClass, getMatchingTransitions(eventTransitions, eventClass));
+            }
+        }
+
+        return new Entry<T, U>(getTriggerlessCandidates(triggerless), null, ImmutableList.copyOf(eventTransitions),
+                ImmutableMap.copyOf(byEventClass));
+    }
+
+    private boolean isDispatched(List<CompiledTransition<T, U>> transitions) {
+        return dispatcherFactory != null && transitions.size() <= Dispatcher.MAX_CANDIDATES;
+    }
+
+    private CandidateTransitions<T, U> getTriggerlessCandidates(List<CompiledTransition<T, U>> triggerless) {
+        if (isDispatched(triggerless)) {
+            return CandidateTransitions.dispatched(triggerless, dispatcherFactory, priorityOrder != null);
+        }
+        return CandidateTransitions.of(triggerless);
+    }
+
+    private void sortByPriority(List<CompiledTransition<T, U>> transitions) {
+        // stable sort, transitions of equal priority keep the default order
+        Collections.sort(transitions, new Comparator<CompiledTransition<T, U>>() {
+            @Override
+            public int compare(CompiledTransition<T, U> o1, CompiledTransition<T, U> o2) {
+                return priorityOrder.compare(o1.getTransition(), o2.getTransition());
+            }
+        });
+    }
+
+    private static <T, U> CandidateTransitions<T, U> getMatchingTransitions(List<CompiledTransition<T, U>> transitions, Class<?> eventClass) {
+        List<CompiledTransition<T, U>> res = Lists.newArrayList();
+        for (int i = 0; i < transitions.size(); i++) {
+            CompiledTransition<T, U> t = transitions.get(i);
+            if (t.getTransition().getTriggerEventClass().get().isAssignableFrom(eventClass)) {
+                res.add(t);
+            }
+        }
+        return CandidateTransitions.of(res);
+    }
+
+    private static final class Entry<T, U> {
+        private final CandidateTransitions<T, U> triggerlessTransitions;
+        private final CandidateTransitions<T, U> dispatchedEventTransitions;  // null unless evaluated by a dispatcher
+        private final List<CompiledTransition<T, U>> eventTransitions;
+        private final Map<Class<?>, CandidateTransitions<T, U>> transitionsByEventClass;
+        private volatile ConcurrentMap<Class<?>, CandidateTransitions<T, U>> inheritedTransitionsByEventClass;
+
+        private Entry(CandidateTransitions<T, U> triggerlessTransitions, CandidateTransitions<T, U> dispatchedEventTransitions,
+                      List<CompiledTransition<T, U>> eventTransitions, Map<Class<?>, CandidateTransitions<T, U>> transitionsByEventClass) {
+            this.triggerlessTransitions = triggerlessTransitions;
+            this.dispatchedEventTransitions = dispatchedEventTransitions;
+            this.eventTransitions = eventTransitions;
+            this.transitionsByEventClass = transitionsByEventClass;
+        }
+
+        /**
+         * Gets the candidates for an event class not declared as trigger, matching against the trigger event
+         * classes of the candidates the first time the event class is seen. The cache is created on first use
+         * since most states never see such event classes.
+         */
+        private CandidateTransitions<T, U> getInheritedTransitions(Class<?> eventClass) {
+            ConcurrentMap<Class<?>, CandidateTransitions<T, U>> cache = getInheritedTransitionsCache();
+            CandidateTransitions<T, U> res = cache.get(eventClass);
+            if (res == null) {
+                res = getMatchingTransitions(eventTransitions, eventClass);
+                CandidateTransitions<T, U> existing = cache.putIfAbsent(eventClass, res);
+                if (existing != null) {
+                    res = existing;
+                }
+            }
+            return res;
+        }
+
+        private ConcurrentMap<Class<?>, CandidateTransitions<T, U>> getInheritedTransitionsCache() {
+            ConcurrentMap<Class<?>, CandidateTransitions<T, U>> res = inheritedTransitionsByEventClass;
+            if (res == null) {
+                synchronized (this) {
+                    res = inheritedTransitionsByEventClass;
+                    if (res == null) {
+                        res = new MapMaker().weakKeys().makeMap();
+                        inheritedTransitionsByEventClass = res;
+                    }
+                }
+            }
+            return res;
+        }
+    }
+}
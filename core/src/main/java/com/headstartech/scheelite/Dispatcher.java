@@ -0,0 +1,30 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+
+/**
+ * Evaluates the candidate transitions of a state, created by a {@link DispatcherFactory}.
+ *
+ * @param <T> context type
+ */
+public interface Dispatcher<T> {
+
+    /**
+     * Maximum number of candidates of a dispatcher, i.e. the number of bits of the result of
+     * {@link #dispatch(Object, Object, Optional)}.
+     */
+    int MAX_CANDIDATES = Long.SIZE;
+
+    /**
+     * Evaluates the candidates in order. A candidate is triggered if the event is an instance of its trigger event
+     * class (if any) and its guard (if any) is satisfied.
+     *
+     * @param context the context
+     * @param event the current event or <code>null</code> if no event is present
+     * @param eventOpt the event as passed to the guards
+     * @return the triggered candidates, bit <i>i</i> being set if candidate <i>i</i> is triggered. Only the bit of
+     * the first triggered candidate is set if only the first triggered candidate is selected.
+     * @throws Exception if thrown by a guard
+     */
+    long dispatch(T context, Object event, Optional<?> eventOpt) throws Exception;
+}
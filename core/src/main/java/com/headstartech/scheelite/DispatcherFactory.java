@@ -0,0 +1,27 @@
+package com.headstartech.scheelite;
+
+import java.util.List;
+
+/**
+ * Creates the dispatchers evaluating the candidate transitions of the states of a state machine, e.g. specialized
+ * for the trigger event classes and guards of the candidates when the state machine is built.
+ *
+ * A dispatcher is created for the candidates of each state when the event is present, and for the triggerless
+ * candidates of each state, as long as there are at most {@link Dispatcher#MAX_CANDIDATES} candidates. The
+ * dispatchers aren't used if listeners are registered or metrics are enabled, since guards evaluated by a dispatcher
+ * aren't reported to listeners.
+ *
+ * @see StateMachineBuilder#withDispatcherFactory(DispatcherFactory)
+ */
+public interface DispatcherFactory {
+
+    /**
+     * Creates a dispatcher for the specified candidates.
+     *
+     * @param candidates the candidates, in the order they're evaluated
+     * @param firstMatch <code>true</code> if only the first triggered candidate is selected, i.e. the candidates
+     *                   after it must not be evaluated
+     * @return the dispatcher
+     */
+    <T> Dispatcher<T> createDispatcher(List<DispatchCandidate<T>> candidates, boolean firstMatch);
+}
@@ -0,0 +1,39 @@
+package com.headstartech.scheelite;
+
+/**
+ * Static utility methods for array-indexed lookups in state machines with enum state ids.
+ *
+ * @see StateMachineBuilder#forEnum(Class)
+ */
+final class EnumStateIds {
+
+    private EnumStateIds() {
+    }
+
+    /**
+     * Gets the number of constants of the enum class, i.e. the length of arrays indexed by state id ordinal.
+     */
+    static int size(Class<?> enumStateIdClass) {
+        return enumStateIdClass.getEnumConstants().length;
+    }
+
+    /**
+     * Gets the ordinal of the id of the specified state.
+     *
+     * @param state the state
+     * @return the ordinal or <code>-1</code> for the root state
+     */
+    static int ordinal(State<?, ?> state) {
+        return ordinal(state.getId());
+    }
+
+    /**
+     * Gets the ordinal of the specified state id.
+     *
+     * @param stateId the state id, an enum constant
+     * @return the ordinal or <code>-1</code> if the state id is <code>null</code> (the root state)
+     */
+    static int ordinal(Object stateId) {
+        return stateId == null ? -1 : ((Enum<?>) stateId).ordinal();
+    }
+}
@@ -0,0 +1,146 @@
+package com.headstartech.scheelite;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * The internal and deferred events of a synchronous processing invocation. The queue of the invocation running on
+ * a thread is kept in a thread local, reused by the following invocations on the thread so processing doesn't
+ * allocate. An invocation nested in another on the same thread (e.g. processing an event of another context from an
+ * action) gets its own queue. Asynchronous processing and state machines not supporting internal events suspend the
+ * invocation running on the thread, so events can only be posted to the invocation they're part of.
+ */
+final class EventQueue {
+
+    private static final ThreadLocal<EventQueue> CURRENT = new ThreadLocal<EventQueue>();
+
+    private final ArrayDeque<Object> internalEvents = new ArrayDeque<Object>();
+    private final List<Object> deferredEvents = Lists.newArrayList();
+    private EventQueue outer;
+    private boolean active;
+    private int transitionCount;
+
+    private EventQueue() {
+    }
+
+    /**
+     * Gets the queue of a new invocation on the current thread, to be released when the invocation completes.
+     */
+    static EventQueue acquire() {
+        EventQueue queue = CURRENT.get();
+        if (queue == null) {
+            queue = new EventQueue();
+            CURRENT.set(queue);
+        } else if (queue.active) {
+            EventQueue nested = new EventQueue();
+            nested.outer = queue;
+            CURRENT.set(nested);
+            queue = nested;
+        }
+        queue.active = true;
+        return queue;
+    }
+
+    /**
+     * Gets the queue of the invocation running on the current thread.
+     *
+     * @return the queue or <code>null</code> if no invocation is running
+     */
+    static EventQueue current() {
+        EventQueue queue = CURRENT.get();
+        return queue != null && queue.active ? queue : null;
+    }
+
+    /**
+     * Hides the invocation running on the current thread, so events posted by code not running as part of it (e.g.
+     * asynchronous processing continuing on the thread) aren't added to its queue.
+     *
+     * @return the queue of the hidden invocation, to pass to {@link #resume(EventQueue)}, or <code>null</code> if no
+     * invocation is running
+     */
+    static EventQueue suspend() {
+        EventQueue queue = CURRENT.get();
+        if (queue == null || !queue.active) {
+            return null;
+        }
+        CURRENT.set(null);
+        return queue;
+    }
+
+    /**
+     * Makes the invocation hidden by {@link #suspend()} the invocation running on the current thread again.
+     */
+    static void resume(EventQueue queue) {
+        if (queue != null) {
+            CURRENT.set(queue);
+        }
+    }
+
+    /**
+     * Releases the queue when the invocation completes, discarding any events left. The events still deferred have
+     * been handed over to the deferred event handler, the internal events are only left when processing failed.
+     */
+    void release() {
+        internalEvents.clear();
+        deferredEvents.clear();
+        active = false;
+        if (outer != null) {
+            CURRENT.set(outer);
+            outer = null;
+        }
+    }
+
+    /**
+     * Resets the number of transitions taken, when starting to process an event.
+     */
+    void resetTransitionCount() {
+        transitionCount = 0;
+    }
+
+    void addTransitionCount(int count) {
+        transitionCount += count;
+    }
+
+    /**
+     * Gets the number of transitions taken for the event and the internal events it caused.
+     */
+    int getTransitionCount() {
+        return transitionCount;
+    }
+
+    void post(Object event) {
+        internalEvents.addLast(event);
+    }
+
+    /**
+     * Gets the next internal event.
+     *
+     * @return the event or <code>null</code> if there are no more internal events
+     */
+    Object poll() {
+        return internalEvents.pollFirst();
+    }
+
+    void defer(Object event) {
+        deferredEvents.add(event);
+    }
+
+    boolean hasDeferredEvents() {
+        return !deferredEvents.isEmpty();
+    }
+
+    List<Object> getDeferredEvents() {
+        return deferredEvents;
+    }
+
+    /**
+     * Moves a deferred event ahead of the internal events, so it's dispatched next.
+     *
+     * @param index the index of the event in {@link #getDeferredEvents()}
+     */
+    void recall(int index) {
+        internalEvents.addFirst(deferredEvents.remove(index));
+    }
+}
@@ -0,0 +1,81 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+
+/**
+ * A transition recorded by the {@link FlightRecorder}.
+ *
+ * @param <U> state id type
+ */
+public final class FlightRecord<U> {
+
+    private final long sequence;
+    private final long timestamp;
+    private final U sourceStateId;
+    private final U targetStateId;
+    private final Optional<Class<?>> eventClass;
+    private final long durationNanos;
+
+    FlightRecord(long sequence, long timestamp, U sourceStateId, U targetStateId, Class<?> eventClass, long durationNanos) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.sourceStateId = sourceStateId;
+        this.targetStateId = targetStateId;
+        this.eventClass = Optional.<Class<?>>fromNullable(eventClass);
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Gets the sequence number of the record, increasing by one for each recorded transition.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the time the transition ended, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the id of the state the transition was taken from.
+     */
+    public U getSourceStateId() {
+        return sourceStateId;
+    }
+
+    /**
+     * Gets the id of the state after the transition (and any initial transitions that followed).
+     */
+    public U getTargetStateId() {
+        return targetStateId;
+    }
+
+    /**
+     * Gets the class of the event triggering the transition or {@code Optional.absent()} for triggerless transitions.
+     */
+    public Optional<Class<?>> getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * Gets the time spent executing the transition, capped at about 4.3 seconds.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRecord{" +
+                "sequence=" + sequence +
+                ", timestamp=" + timestamp +
+                ", sourceStateId=" + sourceStateId +
+                ", targetStateId=" + targetStateId +
+                ", eventClass=" + (eventClass.isPresent() ? eventClass.get().getName() : "-") +
+                ", durationNanos=" + durationNanos +
+                '}';
+    }
+}
@@ -0,0 +1,148 @@
+package com.headstartech.scheelite;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free ring buffer of the most recent transitions taken by a state machine.
+ *
+ * Each transition is recorded as a few packed longs (state ordinals, event class id, timestamp and duration), so
+ * recording neither locks nor allocates once an event class has been seen. The records of all contexts processed by
+ * the state machine are interleaved. Enabled using {@link StateMachineBuilder#withFlightRecorder(int)}.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+public final class FlightRecorder<T, U> {
+
+    // slot layout: sequence stamp, source/target ordinals, event class id/duration, timestamp
+    private static final int SLOT_SIZE = 4;
+    private static final long MAX_DURATION = 0xFFFFFFFFL;
+    private static final int NO_EVENT = 0;
+
+    private final ImmutableStateTree<T, U> stateTree;
+    private final int mask;
+    private final AtomicLongArray slots;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentMap<Class<?>, Integer> eventClassIds = new MapMaker().makeMap();
+    private final List<Class<?>> eventClasses = new CopyOnWriteArrayList<Class<?>>();
+    private final long epochOffsetNanos;
+
+    FlightRecorder(ImmutableStateTree<T, U> stateTree, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.format("capacity must be greater than zero: capacity=%d", capacity));
+        }
+        this.stateTree = stateTree;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.slots = new AtomicLongArray(size * SLOT_SIZE);
+        for (int i = 0; i < size; i++) {
+            slots.set(i * SLOT_SIZE, -1L);
+        }
+        this.eventClasses.add(null);  // id 0 is no event
+        this.epochOffsetNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+    }
+
+    /**
+     * Gets the number of records held by the buffer (rounded up to a power of two).
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the recorded transitions, oldest first. Taking the records doesn't block recording; records overwritten
+     * while being read are skipped.
+     *
+     * @return the records
+     */
+    public List<FlightRecord<U>> getRecords() {
+        long last = sequence.get();
+        long first = Math.max(0L, last - getCapacity());
+        List<FlightRecord<U>> res = Lists.newArrayListWithCapacity((int) (last - first));
+        for (long seq = first; seq < last; seq++) {
+            int base = (int) (seq & mask) * SLOT_SIZE;
+            if (slots.get(base) != seq) {
+                continue;
+            }
+            long states = slots.get(base + 1);
+            long eventAndDuration = slots.get(base + 2);
+            long timestamp = slots.get(base + 3);
+            if (slots.get(base) != seq) {
+                continue;
+            }
+            res.add(new FlightRecord<U>(seq,
+                    TimeUnit.NANOSECONDS.toMillis(timestamp + epochOffsetNanos),
+                    stateTree.getState((int) (states >>> 32)).getId(),
+                    stateTree.getState((int) states).getId(),
+                    eventClasses.get((int) (eventAndDuration >>> 32)),
+                    eventAndDuration & MAX_DURATION));
+        }
+        return res;
+    }
+
+    /**
+     * Writes the recorded transitions, oldest first, one per line.
+     *
+     * @param out the destination
+     * @throws IOException if writing fails
+     */
+    public void dump(Appendable out) throws IOException {
+        for (FlightRecord<U> record : getRecords()) {
+            out.append(record.toString()).append('\n');
+        }
+    }
+
+    /**
+     * Records a transition.
+     *
+     * @param startNanos {@link System#nanoTime()} when the transition started
+     * @param endNanos {@link System#nanoTime()} when the transition ended
+     */
+    void record(State<T, U> sourceState, State<T, U> targetState, Object event, long startNanos, long endNanos) {
+        long states = ((long) stateTree.getOrdinal(sourceState) << 32) | stateTree.getOrdinal(targetState);
+        long duration = Math.min(Math.max(0L, endNanos - startNanos), MAX_DURATION);
+        long eventAndDuration = ((long) getEventClassId(event) << 32) | duration;
+
+        long seq = sequence.getAndIncrement();
+        int base = (int) (seq & mask) * SLOT_SIZE;
+        slots.set(base, -1L);  // mark slot as being written
+        slots.lazySet(base + 1, states);
+        slots.lazySet(base + 2, eventAndDuration);
+        slots.lazySet(base + 3, endNanos);
+        slots.lazySet(base, seq);
+    }
+
+    private int getEventClassId(Object event) {
+        if (event == null) {
+            return NO_EVENT;
+        }
+        Class<?> eventClass = event.getClass();
+        Integer id = eventClassIds.get(eventClass);
+        if (id == null) {
+            id = registerEventClass(eventClass);
+        }
+        return id;
+    }
+
+    private synchronized Integer registerEventClass(Class<?> eventClass) {
+        Integer id = eventClassIds.get(eventClass);
+        if (id == null) {
+            id = eventClasses.size();
+            eventClasses.add(eventClass);
+            eventClassIds.put(eventClass, id);
+        }
+        return id;
+    }
+}
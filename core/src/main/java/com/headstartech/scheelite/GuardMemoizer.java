@@ -0,0 +1,184 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.headstartech.scheelite.guards.AdaptiveAndGuard;
+import com.headstartech.scheelite.guards.AdaptiveOrGuard;
+import com.headstartech.scheelite.guards.AndGuard;
+import com.headstartech.scheelite.guards.NotGuard;
+import com.headstartech.scheelite.guards.OrGuard;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Memoizes the results of the {@link PureGuard} instances of a state machine while selecting the transition
+ * triggered by an event.
+ *
+ * Every pure guard instance is assigned a slot when the state machine is built, and the guards of the transitions
+ * are rewritten to consult the slot (including pure guards combined using the guards in
+ * {@link com.headstartech.scheelite.guards}). Results are recorded per thread and tagged with the current selection,
+ * so starting a new selection invalidates all results without clearing or allocating anything.
+ *
+ * Public for the state machines generated by the codegen module, which select transitions themselves.
+ */
+public final class GuardMemoizer {
+
+    private final Map<Guard<?>, Integer> slots;
+    private final ThreadLocal<Memo> memos;
+
+    private GuardMemoizer(Map<Guard<?>, Integer> slots) {
+        this.slots = slots;
+        final int slotCount = slots.size();
+        this.memos = new ThreadLocal<Memo>() {
+            @Override
+            protected Memo initialValue() {
+                return new Memo(slotCount);
+            }
+        };
+    }
+
+    /**
+     * Creates a memoizer for the pure guards of the transitions.
+     *
+     * @return the memoizer or <code>null</code> if none of the transitions has a pure guard
+     */
+    public static <T, U> GuardMemoizer create(Collection<Transition<T, U>> transitions) {
+        Map<Guard<?>, Integer> slots = Maps.newIdentityHashMap();
+        for (Transition<T, U> t : transitions) {
+            if (t.getGuard().isPresent()) {
+                addSlots(t.getGuard().get(), slots);
+            }
+        }
+        return slots.isEmpty() ? null : new GuardMemoizer(slots);
+    }
+
+    private static void addSlots(Guard<?> guard, Map<Guard<?>, Integer> slots) {
+        if (guard instanceof PureGuard) {
+            if (!slots.containsKey(guard)) {
+                slots.put(guard, slots.size());
+            }
+        } else if (guard instanceof AdaptiveAndGuard) {
+            for (Guard<?> component : ((AdaptiveAndGuard<?>) guard).getComponents()) {
+                addSlots(component, slots);
+            }
+        } else if (guard instanceof AdaptiveOrGuard) {
+            for (Guard<?> component : ((AdaptiveOrGuard<?>) guard).getComponents()) {
+                addSlots(component, slots);
+            }
+        } else if (guard instanceof AndGuard) {
+            for (Guard<?> component : ((AndGuard<?>) guard).getComponents()) {
+                addSlots(component, slots);
+            }
+        } else if (guard instanceof OrGuard) {
+            for (Guard<?> component : ((OrGuard<?>) guard).getComponents()) {
+                addSlots(component, slots);
+            }
+        } else if (guard instanceof NotGuard) {
+            addSlots(((NotGuard<?>) guard).getComponent(), slots);
+        }
+    }
+
+    /**
+     * Gets a guard equivalent to the specified guard, consulting the memoized result of every pure guard.
+     */
+    public <T> Guard<T> memoize(Guard<T> guard) {
+        checkNotNull(guard);
+        Integer slot = slots.get(guard);
+        if (slot != null) {
+            return new MemoizedGuard<T>(guard, slot);
+        } else if (guard instanceof AdaptiveAndGuard) {
+            return new AdaptiveAndGuard<T>(memoizeComponents(((AdaptiveAndGuard<T>) guard).getComponents()));
+        } else if (guard instanceof AdaptiveOrGuard) {
+            return new AdaptiveOrGuard<T>(memoizeComponents(((AdaptiveOrGuard<T>) guard).getComponents()));
+        } else if (guard instanceof AndGuard) {
+            return new AndGuard<T>(memoizeComponents(((AndGuard<T>) guard).getComponents()));
+        } else if (guard instanceof OrGuard) {
+            return new OrGuard<T>(memoizeComponents(((OrGuard<T>) guard).getComponents()));
+        } else if (guard instanceof NotGuard) {
+            return new NotGuard<T>(memoize(((NotGuard<T>) guard).getComponent()));
+        }
+        return guard;
+    }
+
+    private <T> List<Guard<? super T>> memoizeComponents(List<? extends Guard<? super T>> components) {
+        List<Guard<? super T>> res = Lists.newArrayListWithCapacity(components.size());
+        for (Guard<? super T> component : components) {
+            res.add(memoizeComponent(component));
+        }
+        return res;
+    }
+
+    private <S> Guard<S> memoizeComponent(Guard<S> component) {
+        return memoize(component);
+    }
+
+    /**
+     * Starts selecting a transition on the current thread, invalidating the results recorded so far.
+     *
+     * @return the selection to restore when done
+     */
+    public long begin() {
+        Memo memo = memos.get();
+        long previous = memo.selection;
+        memo.selection = ++memo.selections;
+        return previous;
+    }
+
+    /**
+     * Ends selecting a transition on the current thread.
+     *
+     * @param previous the selection returned by {@link #begin()}, restored to support nested selections
+     */
+    public void end(long previous) {
+        memos.get().selection = previous;
+    }
+
+    private static final class Memo {
+        private long selections;
+        private long selection;
+        private final long[] recordedSelections;
+        private final boolean[] results;
+
+        private Memo(int slotCount) {
+            this.recordedSelections = new long[slotCount];
+            this.results = new boolean[slotCount];
+        }
+    }
+
+    private final class MemoizedGuard<T> implements Guard<T> {
+
+        private final Guard<T> guard;
+        private final int slot;
+
+        private MemoizedGuard(Guard<T> guard, int slot) {
+            this.guard = guard;
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean evaluate(T context, Optional<?> event) throws Exception {
+            Memo memo = memos.get();
+            if (memo.selection == 0) {
+                // not selecting a transition
+                return guard.evaluate(context, event);
+            }
+            if (memo.recordedSelections[slot] == memo.selection) {
+                return memo.results[slot];
+            }
+            boolean res = guard.evaluate(context, event);
+            memo.recordedSelections[slot] = memo.selection;
+            memo.results[slot] = res;
+            return res;
+        }
+
+        @Override
+        public String toString() {
+            return guard.toString();
+        }
+    }
+}
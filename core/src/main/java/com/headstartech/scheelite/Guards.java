@@ -1,5 +1,7 @@
 package com.headstartech.scheelite;
 
+import com.headstartech.scheelite.guards.AdaptiveAndGuard;
+import com.headstartech.scheelite.guards.AdaptiveOrGuard;
 import com.headstartech.scheelite.guards.AndGuard;
 import com.headstartech.scheelite.guards.NotGuard;
 import com.headstartech.scheelite.guards.OrGuard;
@@ -42,6 +44,34 @@ public class Guards {
         return new OrGuard<T>(defensiveCopy(components));
     }
 
+    /**
+     * Returns a guard that evaluates to {@code true} if each of its
+     * components evaluates to {@code true}. The components are evaluated in an
+     * order adapted to their observed cost and selectivity, cheap components
+     * likely to evaluate to {@code false} first. The components must be side-effect free and total.
+     *
+     * @param components
+     * @param <T>
+     * @return
+     */
+    public static <T> Guard<T> adaptiveAnd(final Guard<T>... components) {
+        return new AdaptiveAndGuard<T>(defensiveCopy(components));
+    }
+
+    /**
+     * Returns a guard that evaluates to {@code true} if any one of its
+     * components evaluates to {@code true}. The components are evaluated in an
+     * order adapted to their observed cost and selectivity, cheap components
+     * likely to evaluate to {@code true} first. The components must be side-effect free and total.
+     *
+     * @param components
+     * @param <T>
+     * @return
+     */
+    public static <T> Guard<T> adaptiveOr(final Guard<T>... components) {
+        return new AdaptiveOrGuard<T>(defensiveCopy(components));
+    }
+
     /**
      * Returns a predicate that evaluates to {@code true} if the given guard
      * evaluates to {@code false}.
@@ -1,23 +1,303 @@
 package com.headstartech.scheelite;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Immutable implementation of the {@link StateTree} interface.
+ *
+ * In addition to the parent relation, the tree keeps an index from state id to state and assigns every state a
+ * dense ordinal (the root state has ordinal 0), so state lookups don't allocate or scan the tree. The depth and
+ * the ancestors of every state are computed up front, making ancestor and lowest common ancestor queries array lookups.
+ *
+ * If the state ids are enum constants, the states and their ordinals are also indexed by the ordinal of the state ids,
+ * so looking up a state, its ordinal or its parent doesn't hash the state id or the state.
  */
 class ImmutableStateTree<T, U> extends AbstractStateTree<T, U> {
 
     private final Map<State<T, U>, State<T, U>> map;
+    private final Set<State<T, U>> states;
+    private final Set<State<T, U>> parents;
+    private final Map<U, State<T, U>> statesById;
+    private final Map<State<T, U>, Integer> ordinals;
+    private final List<State<T, U>> statesByOrdinal;
+    private final int[] depths;
+    private final int[][] ancestors; // ancestors[ordinal][i] is the ordinal of the ancestor i levels up (0 is the state itself)
+    private final State<T, U>[] statesByIdOrdinal;  // null unless the state ids are enum constants
+    private final int[] ordinalsByIdOrdinal;
+    private final State<T, U>[] parentsByIdOrdinal;
 
     public ImmutableStateTree(MutableStateTree<T, U> stateTree) {
-        // TODO: use Collections immutable map
-        this.map = Maps.newHashMap(stateTree.getMap());
+        this(stateTree, null);
+    }
+
+    /**
+     * Creates a state tree, indexing the states by the ordinal of their ids if the enum class is specified.
+     *
+     * @param stateTree the state tree to copy
+     * @param enumStateIdClass the enum class of the state ids or <code>null</code>
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ImmutableStateTree(MutableStateTree<T, U> stateTree, Class<U> enumStateIdClass) {
+        this.map = Collections.unmodifiableMap(Maps.newHashMap(stateTree.getMap()));
+        this.states = ImmutableSet.copyOf(stateTree.getStates());
+        ImmutableSet.Builder<State<T, U>> parentsBuilder = ImmutableSet.builder();
+        for (State<T, U> parent : map.values()) {
+            if (parent != null) {
+                parentsBuilder.add(parent);
+            }
+        }
+        this.parents = parentsBuilder.build();
+
+        Map<U, State<T, U>> byId = Maps.newHashMap();
+        for (State<T, U> state : states) {
+            byId.put(state.getId(), state);
+        }
+        this.statesById = Collections.unmodifiableMap(byId);
+
+        this.statesByOrdinal = ImmutableList.copyOf(getStatesDepthFirst(stateTree));
+        Map<State<T, U>, Integer> ordinalMap = Maps.newHashMap();
+        for (int i = 0; i < statesByOrdinal.size(); i++) {
+            ordinalMap.put(statesByOrdinal.get(i), i);
+        }
+        this.ordinals = Collections.unmodifiableMap(ordinalMap);
+
+        // parents always precede their children in depth first order
+        int stateCount = statesByOrdinal.size();
+        this.depths = new int[stateCount];
+        this.ancestors = new int[stateCount][];
+        ancestors[0] = new int[] { 0 };
+        for (int i = 1; i < stateCount; i++) {
+            int parent = ordinals.get(map.get(statesByOrdinal.get(i)));
+            depths[i] = depths[parent] + 1;
+            int[] stateAncestors = new int[depths[i] + 1];
+            stateAncestors[0] = i;
+            System.arraycopy(ancestors[parent], 0, stateAncestors, 1, ancestors[parent].length);
+            ancestors[i] = stateAncestors;
+        }
+
+        if (enumStateIdClass != null) {
+            int size = EnumStateIds.size(enumStateIdClass);
+            this.statesByIdOrdinal = new State[size];
+            this.ordinalsByIdOrdinal = new int[size];
+            this.parentsByIdOrdinal = new State[size];
+            for (int i = 1; i < stateCount; i++) {
+                State<T, U> state = statesByOrdinal.get(i);
+                int idOrdinal = EnumStateIds.ordinal(state);
+                statesByIdOrdinal[idOrdinal] = state;
+                ordinalsByIdOrdinal[idOrdinal] = i;
+                parentsByIdOrdinal[idOrdinal] = map.get(state);
+            }
+        } else {
+            this.statesByIdOrdinal = null;
+            this.ordinalsByIdOrdinal = null;
+            this.parentsByIdOrdinal = null;
+        }
     }
 
     @Override
     protected Map<State<T, U>, State<T, U>> getMap() {
         return map;
     }
+
+    @Override
+    public Set<State<T, U>> getStates() {
+        return states;
+    }
+
+    @Override
+    public boolean isParent(State<T, U> a) {
+        checkNotNull(a);
+        return parents.contains(a);
+    }
+
+    @Override
+    public Optional<State<T, U>> getState(U id) {
+        return Optional.fromNullable(findState(id));
+    }
+
+    /**
+     * Gets the state with the specified id.
+     *
+     * @param id the state id
+     * @return the state or <code>null</code> if no state with the id exists
+     */
+    State<T, U> findState(U id) {
+        if (statesByIdOrdinal != null) {
+            return statesByIdOrdinal[EnumStateIds.ordinal(id)];
+        }
+        return statesById.get(id);
+    }
+
+    /**
+     * Gets the parent of the specified state.
+     *
+     * @param state the state
+     * @return the parent or <code>null</code> if the state is the root state or not part of the tree
+     */
+    State<T, U> findParent(State<T, U> state) {
+        if (parentsByIdOrdinal != null) {
+            int idOrdinal = EnumStateIds.ordinal(state);
+            return idOrdinal >= 0 && isIndexed(state, idOrdinal) ? parentsByIdOrdinal[idOrdinal] : null;
+        }
+        return map.get(state);
+    }
+
+    /**
+     * Gets the ordinal of the specified state.
+     *
+     * @param state the state
+     * @return the ordinal, <code>0</code> for the root state
+     * @throws IllegalArgumentException if the state is not part of the tree
+     */
+    int getOrdinal(State<T, U> state) {
+        if (statesByIdOrdinal != null) {
+            int idOrdinal = EnumStateIds.ordinal(state);
+            if (idOrdinal < 0) {
+                return 0;
+            }
+            if (isIndexed(state, idOrdinal)) {
+                return ordinalsByIdOrdinal[idOrdinal];
+            }
+        }
+        Integer ordinal = ordinals.get(state);
+        if (ordinal == null) {
+            throw new IllegalArgumentException(String.format("state not part of tree: state=%s", state));
+        }
+        return ordinal;
+    }
+
+    private boolean isIndexed(State<T, U> state, int idOrdinal) {
+        State<T, U> indexed = statesByIdOrdinal[idOrdinal];
+        return state == indexed || state.equals(indexed);
+    }
+
+    /**
+     * Gets the state with the specified ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the state
+     */
+    State<T, U> getState(int ordinal) {
+        return statesByOrdinal.get(ordinal);
+    }
+
+    /**
+     * Gets the number of states, including the root state.
+     *
+     * @return the number of states
+     */
+    int getStateCount() {
+        return statesByOrdinal.size();
+    }
+
+    /**
+     * Gets the depth of the specified state.
+     *
+     * @param state the state
+     * @return the depth, <code>0</code> for the root state
+     */
+    int getDepth(State<T, U> state) {
+        return depths[getOrdinal(state)];
+    }
+
+    @Override
+    public boolean isAncestorOf(State<T, U> a, State<T, U> b) {
+        checkNotNull(a);
+        checkNotNull(b);
+        return isAncestorOf(getOrdinal(a), getOrdinal(b));
+    }
+
+    @Override
+    public boolean isDescendantOf(State<T, U> a, State<T, U> b) {
+        checkNotNull(a);
+        checkNotNull(b);
+        return isAncestorOf(getOrdinal(b), getOrdinal(a));
+    }
+
+    @Override
+    public State<T, U> getLowestCommonAncestor(State<T, U> a, State<T, U> b) {
+        checkNotNull(a);
+        checkNotNull(b);
+        int[] aAncestors = ancestors[getOrdinal(a)];
+        int[] bAncestors = ancestors[getOrdinal(b)];
+
+        // the ancestor chains have a common suffix (from the lowest common ancestor to the root), binary search its start
+        int low = 0;
+        int high = Math.min(aAncestors.length, bAncestors.length) - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (aAncestors[aAncestors.length - 1 - mid] == bAncestors[bAncestors.length - 1 - mid]) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return statesByOrdinal.get(aAncestors[aAncestors.length - 1 - low]);
+    }
+
+    @Override
+    public List<State<T, U>> getPathToAncestor(State<T, U> a, State<T, U> b, boolean includeAncestor) {
+        checkNotNull(a);
+        checkNotNull(b);
+
+        if(a.equals(b)) {
+            return Lists.newArrayList();
+        }
+
+        int aOrdinal = getOrdinal(a);
+        int bOrdinal = getOrdinal(b);
+        if (!isAncestorOf(bOrdinal, aOrdinal)) {
+            throw new IllegalArgumentException(String.format("b not an ancestor of a: a=%s, b=%s", a, b));
+        }
+
+        int[] aAncestors = ancestors[aOrdinal];
+        int length = depths[aOrdinal] - depths[bOrdinal] + (includeAncestor ? 1 : 0);
+        List<State<T, U>> res = Lists.newArrayListWithCapacity(length);
+        for (int i = 0; i < length; i++) {
+            res.add(statesByOrdinal.get(aAncestors[i]));
+        }
+        return res;
+    }
+
+    private boolean isAncestorOf(int a, int b) {
+        int distance = depths[b] - depths[a];
+        return distance >= 0 && ancestors[b][distance] == a;
+    }
+
+    private static <T, U> List<State<T, U>> getStatesDepthFirst(MutableStateTree<T, U> stateTree) {
+        ListMultimap<State<T, U>, State<T, U>> children = ArrayListMultimap.create();
+        for (Map.Entry<State<T, U>, State<T, U>> entry : stateTree.getMap().entrySet()) {
+            if (entry.getValue() != null) {
+                children.put(entry.getValue(), entry.getKey());
+            }
+        }
+
+        List<State<T, U>> res = Lists.newArrayListWithCapacity(stateTree.getMap().size());
+        Deque<State<T, U>> stack = new ArrayDeque<State<T, U>>();
+        stack.push(checkNotNull(stateTree.getRootState()));
+        while (!stack.isEmpty()) {
+            State<T, U> state = stack.pop();
+            res.add(state);
+            List<State<T, U>> stateChildren = children.get(state);
+            for (int i = stateChildren.size() - 1; i >= 0; i--) {
+                stack.push(stateChildren.get(i));
+            }
+        }
+        return res;
+    }
 }
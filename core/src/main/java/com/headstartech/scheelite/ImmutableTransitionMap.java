@@ -2,24 +2,83 @@ package com.headstartech.scheelite;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Immutable implementation of the {@link TransitionMap} interface.
+ *
+ * If the state ids are enum constants, the initial transitions are also indexed by the ordinal of the id of their
+ * main source state.
  */
 class ImmutableTransitionMap<T, U> extends AbstractTransitionMap<T, U> {
 
     private final ImmutableMultimap<State<T, U>, Transition<T, U>> transitions;
     private final ImmutableMap<State<T, U>, Transition<T, U>> initialTransitions;
+    private final ImmutableSet<Transition<T, U>> transitionSet;
+    private final Transition<T, U>[] initialTransitionsByIdOrdinal;  // null unless the state ids are enum constants
+    private final Transition<T, U> initialTransitionFromRoot;
 
     public ImmutableTransitionMap(MutableTransitionMap<T, U> transitionMap) {
+        this(transitionMap, null);
+    }
+
+    /**
+     * Creates a transition map, indexing the initial transitions by the ordinal of the state ids if the enum class
+     * is specified.
+     *
+     * @param transitionMap the transition map to copy
+     * @param enumStateIdClass the enum class of the state ids or <code>null</code>
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ImmutableTransitionMap(MutableTransitionMap<T, U> transitionMap, Class<U> enumStateIdClass) {
         this.transitions = ImmutableMultimap.copyOf(transitionMap.getTransitionsFromMap());
-        this.initialTransitions = ImmutableMap.copyOf(createInitialTransitionsFromMap(transitionMap.getTransitions()));
+        this.transitionSet = ImmutableSet.copyOf(transitionMap.getTransitions());
+        this.initialTransitions = ImmutableMap.copyOf(transitionMap.getInitialTransitionsFromMap());
+        if (enumStateIdClass != null) {
+            Transition<T, U> fromRoot = null;
+            this.initialTransitionsByIdOrdinal = new Transition[EnumStateIds.size(enumStateIdClass)];
+            for (Map.Entry<State<T, U>, Transition<T, U>> entry : initialTransitions.entrySet()) {
+                int idOrdinal = EnumStateIds.ordinal(entry.getKey());
+                if (idOrdinal < 0) {
+                    fromRoot = entry.getValue();
+                } else {
+                    initialTransitionsByIdOrdinal[idOrdinal] = entry.getValue();
+                }
+            }
+            this.initialTransitionFromRoot = fromRoot;
+        } else {
+            this.initialTransitionsByIdOrdinal = null;
+            this.initialTransitionFromRoot = null;
+        }
     }
 
 
+    /**
+     * Gets the initial transition from the specified state.
+     *
+     * @param state the state
+     * @return the initial transition or <code>null</code> if the state has no initial transition
+     */
+    Transition<T, U> findInitialTransitionFromState(State<T, U> state) {
+        if (initialTransitionsByIdOrdinal != null) {
+            int idOrdinal = EnumStateIds.ordinal(state);
+            Transition<T, U> res = idOrdinal < 0 ? initialTransitionFromRoot : initialTransitionsByIdOrdinal[idOrdinal];
+            if (res == null || res.getMainSourceState() == state || res.getMainSourceState().equals(state)) {
+                return res;
+            }
+        }
+        return initialTransitions.get(state);
+    }
+
+    @Override
+    public Set<Transition<T, U>> getTransitions() {
+        return transitionSet;
+    }
+
     @Override
     protected Multimap<State<T, U>, Transition<T, U>> getTransitionsFromMap() {
         return transitions;
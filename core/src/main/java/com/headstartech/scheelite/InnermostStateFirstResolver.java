@@ -0,0 +1,26 @@
+package com.headstartech.scheelite;
+
+import java.util.Comparator;
+
+/**
+ * Resolves multiple triggered transitions by taking the transition from the innermost source state. Transitions from
+ * the same source state are prioritized in the order they were added to the builder.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachineBuilder#withMultipleTransitionsTriggerPolicy(MultipleTransitionsTriggeredResolver)
+ */
+public class InnermostStateFirstResolver<T, U> extends PriorityResolver<T, U> {
+
+    @Override
+    public Comparator<Transition<T, U>> getPriorityOrder(StateMachineConfiguration<T, U> configuration) {
+        // the candidates are already evaluated innermost source state first
+        return new Comparator<Transition<T, U>>() {
+            @Override
+            public int compare(Transition<T, U> o1, Transition<T, U> o2) {
+                return 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.headstartech.scheelite;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Static methods for posting internal events while the state machine processes an event.
+ *
+ * An internal event posted from a state callback, action or guard is dispatched after the current event (including
+ * its completion and initial transitions) has been processed, in posting order, before the processing method returns.
+ * So an action can raise a follow-up event without calling {@link StateMachine#processEvent(Object, Object, Object)}
+ * re-entrantly. Internal events are processed like other events, in the same context, counting towards the
+ * transitions of the event causing them.
+ *
+ * Internal events are only supported by the synchronous processing methods ({@link StateMachine#start(Object)},
+ * {@link StateMachine#processEvent(Object, Object, Object)} and {@link StateMachine#processEvents(Object, Object, Iterable)}).
+ *
+ * @see StateMachineBuilder#withDeferredEvent(State, Class)
+ */
+public final class InternalEvents {
+
+    private InternalEvents() {
+    }
+
+    /**
+     * Posts an internal event to the state machine processing an event on the current thread.
+     *
+     * @param event the event
+     * @throws IllegalStateException if no event is being processed synchronously on the current thread
+     */
+    public static void post(Object event) {
+        checkNotNull(event);
+        EventQueue queue = EventQueue.current();
+        if (queue == null) {
+            throw new IllegalStateException("no event being processed synchronously on the current thread");
+        }
+        queue.post(event);
+    }
+
+    /**
+     * Hides the synchronous processing running on the current thread from {@link #post(Object)}. Used by state
+     * machines not supporting internal events (e.g. generated state machines), so an event posted from one of their
+     * callbacks fails instead of being posted to another state machine processing an event further up the stack.
+     *
+     * @return the token to pass to {@link #resumePosting(Object)}
+     */
+    public static Object suspendPosting() {
+        return EventQueue.suspend();
+    }
+
+    /**
+     * Undoes {@link #suspendPosting()}.
+     *
+     * @param token the token returned by {@link #suspendPosting()}
+     */
+    public static void resumePosting(Object token) {
+        EventQueue.resume((EventQueue) token);
+    }
+}
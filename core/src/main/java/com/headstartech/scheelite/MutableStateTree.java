@@ -1,20 +1,25 @@
 package com.headstartech.scheelite;
 
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
 
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Mutable implementation of the {@link StateTree} interface.
+ * Mutable implementation of the {@link StateTree} interface. The number of sub states of each state is maintained
+ * as states are added.
  */
 class MutableStateTree<T, U> extends AbstractStateTree<T,U> {
 
     private final Map<State<T, U>, State<T, U>> map;
+    private final Multiset<State<T, U>> subStateCounts;
 
     public MutableStateTree() {
-        this.map = Maps.newHashMap();
+        this.map = Maps.newLinkedHashMap();
+        this.subStateCounts = HashMultiset.create();
         map.put(rootState, null);
     }
 
@@ -28,10 +33,20 @@ class MutableStateTree<T, U> extends AbstractStateTree<T,U> {
     public void addState(State<T, U> state, State<T, U> superState) {
         checkNotNull(state);
         checkNotNull(superState);
-        map.put(state, superState);
+        State<T, U> previousSuperState = map.put(state, superState);
+        if (previousSuperState != null) {
+            subStateCounts.remove(previousSuperState);
+        }
+        subStateCounts.add(superState);
         addState(superState);
     }
 
+    @Override
+    public boolean isParent(State<T, U> a) {
+        checkNotNull(a);
+        return subStateCounts.contains(a);
+    }
+
 
     @Override
     protected Map<State<T, U>, State<T, U>> getMap() {
@@ -1,37 +1,56 @@
 package com.headstartech.scheelite;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Mutable implementation of the {@link TransitionMap} interface.
+ * Mutable implementation of the {@link TransitionMap} interface. The transitions by source state are maintained
+ * as transitions are added.
  */
 class MutableTransitionMap <T, U> extends AbstractTransitionMap<T, U> {
 
     private final Set<Transition<T, U>> transitions;
+    private final Multimap<State<T, U>, Transition<T, U>> transitionsFromMap;
+    private final Map<State<T, U>, Transition<T, U>> initialTransitionsFromMap;
 
     MutableTransitionMap() {
-        transitions = Sets.newHashSet();
+        transitions = Sets.newLinkedHashSet();
+        transitionsFromMap = ArrayListMultimap.create();
+        initialTransitionsFromMap = Maps.newHashMap();
     }
 
     void addTransition(Transition<T, U> transition) {
         checkNotNull(transition);
-        transitions.add(transition);
+        if (transitions.add(transition)) {
+            transitionsFromMap.put(transition.getMainSourceState(), transition);
+            if (TransitionType.INITIAL.equals(transition.getTransitionType())) {
+                initialTransitionsFromMap.put(transition.getMainSourceState(), transition);
+            }
+        }
+    }
+
+    @Override
+    public Set<Transition<T, U>> getTransitions() {
+        return Collections.unmodifiableSet(transitions);
     }
 
     @Override
     protected Multimap<State<T, U>, Transition<T, U>> getTransitionsFromMap() {
-        return createTransitionsFromMap(transitions);
+        return Multimaps.unmodifiableMultimap(transitionsFromMap);
     }
 
     @Override
     protected Map<State<T, U>, Transition<T, U>> getInitialTransitionsFromMap() {
-        return createInitialTransitionsFromMap(transitions);
+        return Collections.unmodifiableMap(initialTransitionsFromMap);
     }
 
 }
@@ -0,0 +1,39 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Resolves multiple triggered transitions by a fixed priority order.
+ *
+ * The state machine evaluates the candidate transitions in priority order and takes the first triggered transition,
+ * i.e. guards of lower priority transitions aren't evaluated once a transition has triggered.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see InnermostStateFirstResolver
+ * @see DeclarationOrderResolver
+ */
+public abstract class PriorityResolver<T, U> implements MultipleTransitionsTriggeredResolver<T, U> {
+
+    /**
+     * Gets the priority order of the transitions, highest priority first. Transitions of equal priority keep
+     * the order they're evaluated in by default, i.e. according to source state's distance from the root (furthest
+     * away first) and then in the order they were added to the builder.
+     *
+     * @param configuration the configuration of the state machine
+     * @return the priority order
+     */
+    public abstract Comparator<Transition<T, U>> getPriorityOrder(StateMachineConfiguration<T, U> configuration);
+
+    /**
+     * Gets the first transition, the triggered transitions being passed in priority order.
+     */
+    @Override
+    public final Transition<T, U> resolve(U stateId, T context, Optional<?> event, List<Transition<T, U>> transitions) {
+        return transitions.get(0);
+    }
+}
@@ -0,0 +1,15 @@
+package com.headstartech.scheelite;
+
+/**
+ * Marker interface for a guard without side effects, whose result only depends on the context and the event.
+ *
+ * The state machine evaluates a pure guard instance at most once when selecting the transition triggered by an
+ * event, even if the guard is shared by several candidate transitions. This also applies to pure guards combined
+ * using {@link Guards#and(Guard[])}, {@link Guards#or(Guard[])} and {@link Guards#not(Guard)}.
+ *
+ * @param <T> context type
+ *
+ * @see Guard
+ */
+public interface PureGuard<T> extends Guard<T> {
+}
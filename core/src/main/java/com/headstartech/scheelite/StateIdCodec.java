@@ -0,0 +1,228 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Encodes state ids as compact binary values, e.g. for persisting the current state of entities.
+ *
+ * Every state is assigned an ordinal, encoded as a varint (a single byte for charts with less than 128 states).
+ * The ordinals are assigned walking the state tree depth first (super states before sub states), the sub states of
+ * a state ordered by id (the enum ordinal for enum ids, otherwise the string form). Building the same chart again
+ * gives the same ordinals, whatever the order the states and transitions are declared in. The fingerprint identifies the states and
+ * their ordinals, computed from the string form of the state ids and the state tree. Store it alongside the encoded
+ * state ids, or encode a position (the fingerprint followed by the ordinal) to have decoding fail fast when the state
+ * machine has changed.
+ *
+ * Instances are immutable and thread safe.
+ *
+ * @param <U> state id type
+ *
+ * @see StateMachine#getConfiguration()
+ */
+public final class StateIdCodec<U> {
+
+    private static final int FINGERPRINT_LENGTH = 8;
+
+    private final List<U> stateIds;
+    private final Map<U, Integer> ordinals;
+    private final long fingerprint;
+
+    public <T> StateIdCodec(StateMachineConfiguration<T, U> configuration) {
+        checkNotNull(configuration);
+
+        List<State<T, U>> states = getStatesInOrder(configuration);
+        List<U> ids = Lists.newArrayListWithCapacity(states.size());
+        Map<U, Integer> ordinalMap = Maps.newHashMapWithExpectedSize(states.size());
+        Map<State<T, U>, Integer> stateOrdinals = Maps.newHashMapWithExpectedSize(states.size());
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (State<T, U> state : states) {
+            int ordinal = ids.size();
+            ids.add(state.getId());
+            ordinalMap.put(state.getId(), ordinal);
+            stateOrdinals.put(state, ordinal);
+            Integer parent = stateOrdinals.get(configuration.getSuperState(state));
+            hasher.putString(state.getId().toString(), Charsets.UTF_8).putInt(parent == null ? -1 : parent);
+        }
+        this.stateIds = ImmutableList.copyOf(ids);
+        this.ordinals = ordinalMap;
+        this.fingerprint = hasher.hash().asLong();
+    }
+
+    /**
+     * Gets the fingerprint of the states and their ordinals.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the ordinal of the state id.
+     *
+     * @throws UnknownStateIdException if the state machine has no state with the id
+     */
+    public int getOrdinal(U stateId) {
+        checkNotNull(stateId);
+        Integer ordinal = ordinals.get(stateId);
+        if (ordinal == null) {
+            throw new UnknownStateIdException(String.format("no state found for stateId: stateId=%s", stateId));
+        }
+        return ordinal;
+    }
+
+    /**
+     * Gets the state id with the ordinal.
+     *
+     * @throws IllegalArgumentException if the state machine has no state with the ordinal
+     */
+    public U getStateId(int ordinal) {
+        checkArgument(ordinal >= 0 && ordinal < stateIds.size(), "invalid ordinal: ordinal=%s, states=%s", ordinal, stateIds.size());
+        return stateIds.get(ordinal);
+    }
+
+    /**
+     * Writes the ordinal of the state id as a varint.
+     */
+    public void write(U stateId, ByteBuffer buffer) {
+        checkNotNull(buffer);
+        int value = getOrdinal(stateId);
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads a state id written by {@link #write(Object, ByteBuffer)}.
+     *
+     * @throws IllegalArgumentException if the buffer doesn't hold a valid ordinal
+     */
+    public U read(ByteBuffer buffer) {
+        checkNotNull(buffer);
+        int value = 0;
+        try {
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return getStateId(value);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated ordinal", e);
+        }
+        throw new IllegalArgumentException("malformed ordinal");
+    }
+
+    /**
+     * Encodes the state id as a varint ordinal.
+     */
+    public byte[] encode(U stateId) {
+        ByteBuffer buffer = ByteBuffer.allocate(getVarintLength(getOrdinal(stateId)));
+        write(stateId, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a state id encoded by {@link #encode(Object)}.
+     *
+     * @throws IllegalArgumentException if the bytes don't hold a valid ordinal
+     */
+    public U decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(checkNotNull(bytes));
+        U res = read(buffer);
+        checkArgument(!buffer.hasRemaining(), "trailing bytes: length=%s", bytes.length);
+        return res;
+    }
+
+    /**
+     * Encodes the state id as a position, i.e. the fingerprint followed by the varint ordinal.
+     */
+    public byte[] encodePosition(U stateId) {
+        ByteBuffer buffer = ByteBuffer.allocate(FINGERPRINT_LENGTH + getVarintLength(getOrdinal(stateId)));
+        buffer.putLong(fingerprint);
+        write(stateId, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a position encoded by {@link #encodePosition(Object)}.
+     *
+     * @throws IllegalArgumentException if the position was encoded for a different state machine or the bytes don't
+     *                                  hold a valid position
+     */
+    public U decodePosition(byte[] bytes) {
+        checkNotNull(bytes);
+        checkArgument(bytes.length > FINGERPRINT_LENGTH, "truncated position: length=%s", bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long positionFingerprint = buffer.getLong();
+        if (positionFingerprint != fingerprint) {
+            throw new IllegalArgumentException(String.format("position fingerprint doesn't match state machine: fingerprint=%016x, expected=%016x",
+                    positionFingerprint, fingerprint));
+        }
+        U res = read(buffer);
+        checkArgument(!buffer.hasRemaining(), "trailing bytes: length=%s", bytes.length);
+        return res;
+    }
+
+    private static int getVarintLength(int value) {
+        int res = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            res++;
+        }
+        return res;
+    }
+
+    private static <T, U> List<State<T, U>> getStatesInOrder(StateMachineConfiguration<T, U> configuration) {
+        Set<State<T, U>> states = configuration.getStates();
+        ListMultimap<State<T, U>, State<T, U>> subStates = ArrayListMultimap.create();
+        for (State<T, U> state : states) {
+            subStates.put(configuration.getSuperState(state), state);
+        }
+        List<State<T, U>> res = Lists.newArrayListWithCapacity(states.size());
+        addStates(configuration.getRootState(), subStates, res);
+        return res;
+    }
+
+    private static <T, U> void addStates(State<T, U> superState, ListMultimap<State<T, U>, State<T, U>> subStates, List<State<T, U>> res) {
+        List<State<T, U>> children = subStates.get(superState);
+        Collections.sort(children, new IdComparator<T, U>());
+        for (State<T, U> child : children) {
+            res.add(child);
+            addStates(child, subStates, res);
+        }
+    }
+
+    private static final class IdComparator<T, U> implements Comparator<State<T, U>> {
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        @Override
+        public int compare(State<T, U> o1, State<T, U> o2) {
+            U id1 = o1.getId();
+            U id2 = o2.getId();
+            if (id1 instanceof Enum && id2 instanceof Enum && id1.getClass().equals(id2.getClass())) {
+                return ((Enum) id1).compareTo((Enum) id2);
+            }
+            return id1.toString().compareTo(id2.toString());
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.headstartech.scheelite;
 
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.headstartech.scheelite.metrics.StateMachineMetrics;
+
 /**
  * Interface for a state machine. A state machine is created using the {@linkplain com.headstartech.scheelite.StateMachineBuilder}.
  *
@@ -27,7 +31,8 @@ public interface StateMachine<T, U> {
     U start(T context) throws ExecutionException;
 
     /**
-     * Processes the given event.
+     * Processes the given event, followed by any internal events posted while processing it (see
+     * {@link InternalEvents}).
      *
      * @param context the context
      * @param stateId id of the current state
@@ -41,10 +46,111 @@ public interface StateMachine<T, U> {
      */
     U processEvent(T context, U stateId, Object event) throws ExecutionException;
 
+    /**
+     * Processes the given events in order. Equivalent to calling {@link #processEvent(Object, Object, Object)} for
+     * each event, passing the id of the state returned for the previous event, but the current state is only looked
+     * up once and an event deferred by a state may be dispatched after a later event.
+     *
+     * @param context the context
+     * @param stateId id of the current state
+     * @param events the events
+     * @return id of the state after the last event
+     * @throws ExecutionException if an exception is thrown from a state, action or guard. The events before the
+     * failing event have been processed.
+     */
+    U processEvents(T context, U stateId, Iterable<?> events) throws ExecutionException;
+
+    /**
+     * Processes the given events in order, recording the number of transitions taken for each event
+     * (<code>0</code> if the event didn't trigger a transition), including those taken for the internal events it
+     * caused.
+     *
+     * @param context the context
+     * @param stateId id of the current state
+     * @param events the events
+     * @param transitionCounts array receiving the number of transitions taken for each event, in event order.
+     *                         Must hold at least as many elements as there are events.
+     * @return id of the state after the last event
+     * @throws ExecutionException if an exception is thrown from a state, action or guard. The events before the
+     * failing event have been processed.
+     * @throws IllegalArgumentException if there are more events than elements in <code>transitionCounts</code>
+     *
+     * @see #processEvents(Object, Object, Iterable)
+     */
+    U processEvents(T context, U stateId, Iterable<?> events, int[] transitionCounts) throws ExecutionException;
+
+    /**
+     * Starts the state machine asynchronously. Like {@link #start(Object)}, but entry callbacks of {@link AsyncState}s
+     * and {@link AsyncAction}s are chained on the futures they return instead of blocking the calling thread.
+     *
+     * @param context the context
+     * @return a future completing with the id of the state after the initial transition, or failing with an
+     * {@link ExecutionException} if an exception is thrown from a state or action.
+     *
+     * @see #processEventAsync(Object, Object, Object)
+     */
+    ListenableFuture<U> startAsync(T context);
+
+    /**
+     * Processes the given event asynchronously. Like {@link #processEvent(Object, Object, Object)}, but exit and
+     * entry callbacks of {@link AsyncState}s and {@link AsyncAction}s are chained on the futures they return instead of
+     * blocking the calling thread. Guards and {@link State#onEvent(Object, Object)} are called synchronously.
+     *
+     * The event is processed until completion (including completion and initial transitions) before the future
+     * completes. Each step runs on the calling thread or on the thread completing the future of the previous step.
+     * To keep run-to-completion semantics, don't process another event for the same context before the future has
+     * completed.
+     *
+     * Internal events can't be posted (see {@link InternalEvents}) and an event deferred by the current state is
+     * passed to the {@link DeferredEventHandler} right away.
+     *
+     * @param context the context
+     * @param stateId id of the current state
+     * @param event the current event
+     * @return a future completing with the id of the next state, or failing with an {@link ExecutionException} if an
+     * exception is thrown from a state, action or guard.
+     *
+     * @see com.headstartech.scheelite.concurrent.AsyncStateMachineExecutor
+     */
+    ListenableFuture<U> processEventAsync(T context, U stateId, Object event);
+
     /**
      * Gets the configuration of the state machine.
      *
      * @return the configuration
      */
     StateMachineConfiguration<T, U> getConfiguration();
+
+    /**
+     * Gets a snapshot of the metrics recorded so far. Taking the snapshot doesn't block event processing.
+     *
+     * @return the metrics or {@code Optional.absent()} if metrics are not enabled
+     *
+     * @see StateMachineBuilder#withMetrics()
+     */
+    Optional<StateMachineMetrics<T, U>> getMetrics();
+
+    /**
+     * Gets the flight recorder holding the most recent transitions.
+     *
+     * @return the flight recorder or {@code Optional.absent()} if the flight recorder is not enabled
+     *
+     * @see StateMachineBuilder#withFlightRecorder(int)
+     */
+    Optional<FlightRecorder<T, U>> getFlightRecorder();
+
+    /**
+     * Gets the replay mode of the state machine, e.g. for rebuilding the current state of an entity from its
+     * event history.
+     *
+     * The replay mode selects transitions like the state machine, evaluating triggers and guards and following
+     * completion and initial transitions, but doesn't call {@link State#onEvent(Object, Object)},
+     * {@link State#onEntry(Object)}, {@link State#onExit(Object)} or {@link Action#execute(Object, Optional)}.
+     * Listeners aren't notified and no metrics or flight recorder entries are recorded.
+     * Since actions and state callbacks aren't called, no internal events are posted, while deferred events are
+     * deferred as when processing.
+     *
+     * @return the replay mode (the replay mode of the replay mode is itself)
+     */
+    StateMachine<T, U> getReplayMode();
 }
\ No newline at end of file
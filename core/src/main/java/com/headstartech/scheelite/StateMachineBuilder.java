@@ -5,11 +5,16 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
 import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -43,12 +48,34 @@ public class StateMachineBuilder<T, U> {
     private final MutableTransitionMap<T, U> transitionMap;
     private MultipleTransitionsTriggeredResolver<T, U> multipleTransitionsTriggeredResolver;
     private int maxTransitionsPerEvent = MAX_TRANSITIONS_PER_EVENT_DEFAULT;
+    private final Multimap<State<T, U>, Class<?>> deferredEventClasses = LinkedHashMultimap.create();
+    private DeferredEventHandler<T, U> deferredEventHandler;
+    private final List<StateMachineListener<T, U>> listeners = Lists.newArrayList();
+    private boolean metricsEnabled;
+    private int flightRecorderCapacity;
+    private DispatcherFactory dispatcherFactory;
+    private final Class<U> enumStateIdClass;
 
     public static <T, U> StateMachineBuilder<T, U> newBuilder() {
-        return new StateMachineBuilder<T, U>();
+        return new StateMachineBuilder<T, U>(null);
     }
 
-    private StateMachineBuilder() {
+    /**
+     * Creates a builder of a state machine with enum state ids. The state tree, initial transitions and candidate
+     * transitions of the built state machine are indexed by the ordinal of the state ids, so looking up a state,
+     * its super state or its transitions are array lookups instead of hash lookups.
+     *
+     * @param stateIdClass the enum class of the state ids
+     * @return the builder
+     */
+    public static <T, U extends Enum<U>> StateMachineBuilder<T, U> forEnum(Class<U> stateIdClass) {
+        Preconditions.checkNotNull(stateIdClass);
+        checkArgument(stateIdClass.isEnum(), "not an enum class: stateIdClass=%s", stateIdClass);
+        return new StateMachineBuilder<T, U>(stateIdClass);
+    }
+
+    private StateMachineBuilder(Class<U> enumStateIdClass) {
+        this.enumStateIdClass = enumStateIdClass;
         stateTree = new MutableStateTree<T, U>();
         transitionMap = new MutableTransitionMap<T, U>();
         multipleTransitionsTriggeredResolver = new ThrowExceptionResolver<T, U>();
@@ -214,6 +241,37 @@ public class StateMachineBuilder<T, U> {
         return this;
     }
 
+    /**
+     * Defers events of the specified class while the state (or any of its sub states) is active. A deferred event
+     * isn't handled or dispatched, it's kept and dispatched again after a transition to a state not deferring it.
+     * Events still deferred when processing completes are passed to the {@link DeferredEventHandler}, or logged at
+     * WARN level and discarded if no handler is registered.
+     *
+     * @param state the state
+     * @param eventClass the class of the events to defer
+     * @return this builder
+     *
+     * @see InternalEvents
+     */
+    public StateMachineBuilder<T, U> withDeferredEvent(State<T, U> state, Class<?> eventClass) {
+        Preconditions.checkNotNull(state);
+        Preconditions.checkNotNull(eventClass);
+        deferredEventClasses.put(state, eventClass);
+        return this;
+    }
+
+    /**
+     * Registers the handler of the events still deferred when processing completes.
+     *
+     * @param deferredEventHandler the handler
+     * @return this builder
+     */
+    public StateMachineBuilder<T, U> withDeferredEventHandler(DeferredEventHandler<T, U> deferredEventHandler) {
+        Preconditions.checkNotNull(deferredEventHandler);
+        this.deferredEventHandler = deferredEventHandler;
+        return this;
+    }
+
     public StateMachineBuilder<T, U> withMultipleTransitionsTriggerPolicy(
             MultipleTransitionsTriggeredResolver<T, U> multipleTransitionsTriggeredResolver) {
         Preconditions.checkNotNull(multipleTransitionsTriggeredResolver);
@@ -221,6 +279,61 @@ public class StateMachineBuilder<T, U> {
         return this;
     }
 
+    /**
+     * Registers a listener notified while processing events. Listeners are notified in registration order.
+     *
+     * @param listener the listener
+     * @return this builder
+     */
+    public StateMachineBuilder<T, U> withListener(StateMachineListener<T, U> listener) {
+        Preconditions.checkNotNull(listener);
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Enables recording of per-transition and per-state latency metrics.
+     *
+     * @return this builder
+     *
+     * @see StateMachine#getMetrics()
+     */
+    public StateMachineBuilder<T, U> withMetrics() {
+        this.metricsEnabled = true;
+        return this;
+    }
+
+    /**
+     * Enables the flight recorder, keeping the most recent transitions in a ring buffer. When processing an event
+     * fails, the failure is logged at WARN level and the recorded transitions at DEBUG level; otherwise they're
+     * dumped on demand with {@link FlightRecorder#dump(Appendable)}.
+     *
+     * @param capacity number of transitions to keep, rounded up to a power of two
+     * @return this builder
+     *
+     * @see StateMachine#getFlightRecorder()
+     */
+    public StateMachineBuilder<T, U> withFlightRecorder(int capacity) {
+        checkArgument(capacity > 0, "capacity must be greater than zero");
+        this.flightRecorderCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * Registers the factory of the dispatchers evaluating the candidate transitions of each state, replacing the
+     * generic evaluation of trigger event classes and guards.
+     *
+     * @param dispatcherFactory the factory
+     * @return this builder
+     *
+     * @see DispatcherFactory
+     */
+    public StateMachineBuilder<T, U> withDispatcherFactory(DispatcherFactory dispatcherFactory) {
+        Preconditions.checkNotNull(dispatcherFactory);
+        this.dispatcherFactory = dispatcherFactory;
+        return this;
+    }
+
     public StateMachine<T, U> build() {
 
         // check we have a top level initial transition state
@@ -234,14 +347,18 @@ public class StateMachineBuilder<T, U> {
             throw new IllegalStateException(String.format("super state of initial transition mainTargetState must be root state: mainTargetState=%s", initialTransitionFromRoot.getMainTargetState()));
         }
 
-        Set<State<T, U>> states = stateTree.getStates();
-
         // check state id equals and state equals relation
         checkStateEquals();
 
+        // check state ids are constants of the enum class (if any)
+        checkEnumStateIds();
+
         // check local transitions are valid
         checkLocalTransitions();
 
+        // check states deferring events are in the state machine
+        checkDeferringStates();
+
         // check all states are reachable from the start state
         checkAllStatesAreReachableFromRootState();
 
@@ -256,6 +373,39 @@ public class StateMachineBuilder<T, U> {
         return multipleTransitionsTriggeredResolver;
     }
 
+    Multimap<State<T, U>, Class<?>> getDeferredEventClasses() {
+        return deferredEventClasses;
+    }
+
+    DeferredEventHandler<T, U> getDeferredEventHandler() {
+        return deferredEventHandler;
+    }
+
+    List<StateMachineListener<T, U>> getListeners() {
+        return listeners;
+    }
+
+    boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    int getFlightRecorderCapacity() {
+        return flightRecorderCapacity;
+    }
+
+    DispatcherFactory getDispatcherFactory() {
+        return dispatcherFactory;
+    }
+
+    /**
+     * Gets the enum class of the state ids.
+     *
+     * @return the enum class or <code>null</code> if the builder wasn't created by {@link #forEnum(Class)}
+     */
+    Class<U> getEnumStateIdClass() {
+        return enumStateIdClass;
+    }
+
     private void validateState(State<T, U> state) {
         if (state.getId() == null) {
             throw new IllegalArgumentException(String.format("state identifier cannot be null: state=[%s]", state));
@@ -263,12 +413,24 @@ public class StateMachineBuilder<T, U> {
     }
 
     private void checkStateEquals() {
+        // states are unique, so two states with equal ids are never equal
         Set<State<T, U>> states = stateTree.getStates();
-        for (State<T, U> outer : states) {
-            for (State<T, U> inner : states) {
-                if (!(outer.getId().equals(inner.getId()) == outer.equals(inner))) {
-                    throw new IllegalStateException(String.format("states equals not valid: states=[%s]", states));
-                }
+        Map<U, State<T, U>> statesById = Maps.newHashMapWithExpectedSize(states.size());
+        for (State<T, U> state : states) {
+            State<T, U> existing = statesById.put(state.getId(), state);
+            if (existing != null || !state.equals(state)) {
+                throw new IllegalStateException(String.format("states equals not valid: states=[%s]", states));
+            }
+        }
+    }
+
+    private void checkEnumStateIds() {
+        if (enumStateIdClass == null) {
+            return;
+        }
+        for (State<T, U> state : stateTree.getStates()) {
+            if (!enumStateIdClass.isInstance(state.getId())) {
+                throw new IllegalStateException(String.format("state id not a constant of %s: state=[%s]", enumStateIdClass.getName(), state));
             }
         }
     }
@@ -283,6 +445,15 @@ public class StateMachineBuilder<T, U> {
         }
     }
 
+    private void checkDeferringStates() {
+        Set<State<T, U>> states = stateTree.getStates();
+        for (State<T, U> state : deferredEventClasses.keySet()) {
+            if (!states.contains(state)) {
+                throw new IllegalStateException(String.format("state deferring events not in state machine: state=[%s]", state));
+            }
+        }
+    }
+
     private boolean isRelated(State<T, U> a, State<T, U> b) {
         return a.equals(b) || stateTree.isDescendantOf(a, b) || stateTree.isDescendantOf(b, a);
     }
@@ -1,6 +1,7 @@
 package com.headstartech.scheelite;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSetMultimap;
 
 import java.util.Set;
 
@@ -13,10 +14,18 @@ public class StateMachineConfiguration<T, U> {
 
     private final StateTree<T, U> stateTree;
     private final TransitionMap<T, U> transitionMap;
+    private final MultipleTransitionsTriggeredResolver<T, U> multipleTransitionsTriggeredResolver;
+    private final int maxTransitionsPerEvent;
+    private final ImmutableSetMultimap<State<T, U>, Class<?>> deferredEventClasses;
 
-    StateMachineConfiguration(StateTree<T, U> stateTree, TransitionMap<T, U> transitionMap) {
+    StateMachineConfiguration(StateTree<T, U> stateTree, TransitionMap<T, U> transitionMap,
+                              MultipleTransitionsTriggeredResolver<T, U> multipleTransitionsTriggeredResolver, int maxTransitionsPerEvent,
+                              ImmutableSetMultimap<State<T, U>, Class<?>> deferredEventClasses) {
         this.stateTree = stateTree;
         this.transitionMap = transitionMap;
+        this.multipleTransitionsTriggeredResolver = multipleTransitionsTriggeredResolver;
+        this.maxTransitionsPerEvent = maxTransitionsPerEvent;
+        this.deferredEventClasses = deferredEventClasses;
     }
 
     /**
@@ -29,7 +38,7 @@ public class StateMachineConfiguration<T, U> {
     public Set<State<T, U>> getStates() { return stateTree.getStates(); }
 
     /**
-     * Gets the transitions in the state machine.
+     * Gets the transitions in the state machine, in the order they were added to the builder.
      *
      * @return the transitions
      *
@@ -61,4 +70,47 @@ public class StateMachineConfiguration<T, U> {
      */
     public State<T, U> getRootState() { return stateTree.getRootState(); }
 
+    /**
+     * Gets the resolver used when multiple transitions are triggered.
+     *
+     * @return the resolver
+     *
+     * @see StateMachineBuilder#withMultipleTransitionsTriggerPolicy(MultipleTransitionsTriggeredResolver)
+     */
+    public MultipleTransitionsTriggeredResolver<T, U> getMultipleTransitionsTriggeredResolver() {
+        return multipleTransitionsTriggeredResolver;
+    }
+
+    /**
+     * Gets the maximum number of transitions taken when processing a single event.
+     *
+     * @return the maximum number of transitions
+     *
+     * @see StateMachineBuilder#withMaxTransitions(int)
+     */
+    public int getMaxTransitionsPerEvent() {
+        return maxTransitionsPerEvent;
+    }
+
+    /**
+     * Gets the classes of the events deferred by the specified state (not including those deferred by its super
+     * states).
+     *
+     * @param state the state
+     * @return the event classes, empty if the state doesn't defer events
+     *
+     * @see StateMachineBuilder#withDeferredEvent(State, Class)
+     */
+    public Set<Class<?>> getDeferredEventClasses(State<T, U> state) {
+        return deferredEventClasses.get(state);
+    }
+
+    /**
+     * Checks if any state defers events.
+     *
+     * @return <code>true</code> if events are deferred by some state
+     */
+    public boolean hasDeferredEvents() {
+        return !deferredEventClasses.isEmpty();
+    }
 }
@@ -1,13 +1,23 @@
 package com.headstartech.scheelite;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.headstartech.scheelite.metrics.MetricsRecorder;
+import com.headstartech.scheelite.metrics.StateMachineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -15,18 +25,96 @@ class StateMachineImpl<T, U> implements StateMachine<T, U> {
 
     private static final Logger logger = LoggerFactory.getLogger(StateMachineImpl.class);
 
-    private final StateTree<T, U> stateTree;
-    private final TransitionMap<T, U> transitionMap;
+    private final ImmutableStateTree<T, U> stateTree;
+    private final ImmutableTransitionMap<T, U> transitionMap;
+    private final DispatchTable<T, U> dispatchTable;
     private final MultipleTransitionsTriggeredResolver<T, U> multipleTransitionsTriggeredResolver;
     private final StateMachineConfiguration<T, U> configuration;
     private final int maxTransitionsPerEvent;
+    private final boolean firstMatch;
+    private final MetricsRecorder<T, U> metricsRecorder;
+    private final FlightRecorder<T, U> flightRecorder;
+    private final StateMachineListener<T, U> listener;
+    private final ImmutableMap<State<T, U>, Class<?>[]> deferredEventClasses;
+    private final DeferredEventHandler<T, U> deferredEventHandler;
+    private final boolean replay;
+    private final StateMachineImpl<T, U> replayMode;
 
     protected StateMachineImpl(StateMachineBuilder<T, U> builder) {
-        this.stateTree = new ImmutableStateTree<T, U>(builder.getStateTree());
-        this.transitionMap = new ImmutableTransitionMap<T, U>(builder.getTransitionMap());
+        Class<U> enumStateIdClass = builder.getEnumStateIdClass();
+        this.stateTree = new ImmutableStateTree<T, U>(builder.getStateTree(), enumStateIdClass);
+        this.transitionMap = new ImmutableTransitionMap<T, U>(builder.getTransitionMap(), enumStateIdClass);
         this.multipleTransitionsTriggeredResolver = builder.getMultipleTransitionsTriggeredResolver();
         this.maxTransitionsPerEvent = builder.getMaxTransitionsPerEvent();
-        this.configuration = new StateMachineConfiguration<T, U>(stateTree, transitionMap);
+        ImmutableSetMultimap<State<T, U>, Class<?>> deferred = ImmutableSetMultimap.copyOf(builder.getDeferredEventClasses());
+        this.configuration = new StateMachineConfiguration<T, U>(stateTree, transitionMap, multipleTransitionsTriggeredResolver,
+                maxTransitionsPerEvent, deferred);
+        this.deferredEventClasses = deferred.isEmpty() ? null : getDeferredEventClasses(stateTree, deferred);
+        this.deferredEventHandler = builder.getDeferredEventHandler();
+        // guards evaluated by a dispatcher aren't reported to listeners
+        DispatcherFactory dispatcherFactory = builder.isMetricsEnabled() || !builder.getListeners().isEmpty() ?
+                null : builder.getDispatcherFactory();
+        if (multipleTransitionsTriggeredResolver instanceof PriorityResolver) {
+            // evaluate candidates in priority order, taking the first triggered transition
+            this.dispatchTable = new DispatchTable<T, U>(stateTree, transitionMap,
+                    ((PriorityResolver<T, U>) multipleTransitionsTriggeredResolver).getPriorityOrder(configuration), enumStateIdClass,
+                    dispatcherFactory);
+            this.firstMatch = true;
+        } else {
+            this.dispatchTable = new DispatchTable<T, U>(stateTree, transitionMap, null, enumStateIdClass, dispatcherFactory);
+            this.firstMatch = false;
+        }
+        List<StateMachineListener<T, U>> listeners = Lists.newArrayList();
+        if (builder.isMetricsEnabled()) {
+            this.metricsRecorder = new MetricsRecorder<T, U>(configuration);
+            listeners.add(metricsRecorder);
+        } else {
+            this.metricsRecorder = null;
+        }
+        listeners.addAll(builder.getListeners());
+        this.flightRecorder = builder.getFlightRecorderCapacity() > 0 ?
+                new FlightRecorder<T, U>(stateTree, builder.getFlightRecorderCapacity()) : null;
+        this.listener = CompositeStateMachineListener.of(listeners);
+        this.replay = false;
+        this.replayMode = new StateMachineImpl<T, U>(this);
+    }
+
+    /**
+     * Creates the replay mode of a state machine, sharing its immutable state.
+     */
+    private StateMachineImpl(StateMachineImpl<T, U> stateMachine) {
+        this.stateTree = stateMachine.stateTree;
+        this.transitionMap = stateMachine.transitionMap;
+        this.dispatchTable = stateMachine.dispatchTable;
+        this.multipleTransitionsTriggeredResolver = stateMachine.multipleTransitionsTriggeredResolver;
+        this.configuration = stateMachine.configuration;
+        this.maxTransitionsPerEvent = stateMachine.maxTransitionsPerEvent;
+        this.firstMatch = stateMachine.firstMatch;
+        this.metricsRecorder = stateMachine.metricsRecorder;
+        this.flightRecorder = stateMachine.flightRecorder;
+        this.listener = null;
+        this.deferredEventClasses = stateMachine.deferredEventClasses;
+        this.deferredEventHandler = null;
+        this.replay = true;
+        this.replayMode = this;
+    }
+
+    /**
+     * Gets the classes of the events deferred in each state, i.e. deferred by the state or any of its super states.
+     */
+    private static <T, U> ImmutableMap<State<T, U>, Class<?>[]> getDeferredEventClasses(ImmutableStateTree<T, U> stateTree,
+                                                                                     ImmutableSetMultimap<State<T, U>, Class<?>> deferred) {
+        ImmutableMap.Builder<State<T, U>, Class<?>[]> res = ImmutableMap.builder();
+        for (State<T, U> state : stateTree.getStates()) {
+            List<Class<?>> classes = Lists.newArrayList();
+            for (State<T, U> s = state; s != null; s = stateTree.findParent(s)) {
+                classes.addAll(deferred.get(s));
+            }
+            if (!classes.isEmpty()) {
+                res.put(state, classes.toArray(new Class<?>[classes.size()]));
+            }
+        }
+        return res.build();
     }
 
     @Override
@@ -34,9 +122,35 @@ class StateMachineImpl<T, U> implements StateMachine<T, U> {
         return configuration;
     }
 
+    @Override
+    public Optional<StateMachineMetrics<T, U>> getMetrics() {
+        if (metricsRecorder == null) {
+            return Optional.absent();
+        }
+        return Optional.of(metricsRecorder.getMetrics());
+    }
+
+    @Override
+    public Optional<FlightRecorder<T, U>> getFlightRecorder() {
+        return Optional.fromNullable(flightRecorder);
+    }
+
+    @Override
+    public StateMachine<T, U> getReplayMode() {
+        return replayMode;
+    }
+
     @Override
     public U start(T context) throws ExecutionException {
-        return handleInitialTransition(context);
+        EventQueue queue = EventQueue.acquire();
+        try {
+            // events posted when entering the initial states
+            State<T, U> currentState = handleInitialTransition(context);
+            currentState = processInternalEvents(context, currentState, queue);
+            return handOverDeferredEvents(context, currentState, queue).getId();
+        } finally {
+            queue.release();
+        }
     }
 
     @Override
@@ -45,255 +159,821 @@ class StateMachineImpl<T, U> implements StateMachine<T, U> {
         checkNotNull(stateId);
         checkNotNull(event);
 
-        int transitionCount = 0;
-        ProcessEventResult<U> res = process(context, stateId, Optional.of(event), transitionCount++);
-        while (res.isContinueProcessing()) {
-            Optional<Object> nextEvent = Optional.absent();
-            U nextStateId = res.getNextStateId();
-            State<T, U> nextState = stateTree.getState(nextStateId).get();
-            Optional<State<T, U>> nextStateParentOpt = stateTree.getParent(nextState);
-            if(nextState instanceof FinalState && nextStateParentOpt.isPresent()) {
-                nextEvent = Optional.<Object>of(new CompositeStateCompleted<U>(nextState.getId()));
-            }
-            res = process(context, res.getNextStateId(), nextEvent, transitionCount++);
-        }
-        return res.getNextStateId();
-    }
-
-    private void handleEvent(State<T, U> sourceState, T context, Optional<?> eventOpt) throws ExecutionException {
-        if (eventOpt.isPresent()) {
-            Object event = eventOpt.get();
-            boolean eventHandled = false;
-            Optional<State<T, U>> stateOpt = Optional.of(sourceState);
-            do {
-                State<T, U> state = stateOpt.get();
-                logger.debug("handling event: context={}, state={}, event={}", context, state.getId(), event);
-                try {
-                    eventHandled = state.onEvent(context, event);
-                } catch(Exception e) {
-                    throw new ExecutionException(e);
-                }
-                stateOpt = stateTree.getParent(state);
-            } while (!eventHandled && stateOpt.isPresent() && !stateOpt.get().equals(stateTree.getRootState()));
+        EventQueue queue = EventQueue.acquire();
+        try {
+            State<T, U> currentState = processEvent(context, getState(stateId), event, queue, null, 0);
+            return handOverDeferredEvents(context, currentState, queue).getId();
+        } finally {
+            queue.release();
         }
     }
 
-    private ProcessEventResult<U> process(T context, U stateId, Optional<?> eventOpt, int transitionCount) throws ExecutionException {
+    @Override
+    public U processEvents(T context, U stateId, Iterable<?> events) throws ExecutionException {
         checkNotNull(context);
         checkNotNull(stateId);
-        checkNotNull(eventOpt);
+        checkNotNull(events);
 
-        if (transitionCount >= maxTransitionsPerEvent) {
-            throw new MaxTransitionsPerEventException();
-        }
+        return processEvents(context, getState(stateId), events, null).getId();
+    }
+
+    @Override
+    public U processEvents(T context, U stateId, Iterable<?> events, int[] transitionCounts) throws ExecutionException {
+        checkNotNull(context);
+        checkNotNull(stateId);
+        checkNotNull(events);
+        checkNotNull(transitionCounts);
+
+        return processEvents(context, getState(stateId), events, transitionCounts).getId();
+    }
 
-        Optional<State<T, U>> currentStateOpt = stateTree.getState(stateId);
-        if (!currentStateOpt.isPresent()) {
+    @Override
+    public ListenableFuture<U> startAsync(T context) {
+        checkNotNull(context);
+
+        AsyncProcessing processing = new AsyncProcessing(context, stateTree.getRootState(), null);
+        processing.run();
+        return processing.result;
+    }
+
+    @Override
+    public ListenableFuture<U> processEventAsync(T context, U stateId, Object event) {
+        checkNotNull(context);
+        checkNotNull(stateId);
+        checkNotNull(event);
+
+        AsyncProcessing processing = new AsyncProcessing(context, getState(stateId), event);
+        processing.run();
+        return processing.result;
+    }
+
+    private State<T, U> getState(U stateId) {
+        State<T, U> state = stateTree.findState(stateId);
+        if (state == null) {
             throw new UnknownStateIdException(String.format("no state found for stateId: stateId=%s", stateId));
         }
-        State<T, U> currentState = currentStateOpt.get();
-
-        // handle event
-        handleEvent(currentState, context, eventOpt);
+        return state;
+    }
 
-        // processEvent triggered transition (if any)
-        Optional<Transition<T, U>> triggeredTransitionOpt = getTriggeredTransition(currentState, context, eventOpt);
-        if (triggeredTransitionOpt.isPresent()) {
-            Transition<T, U> triggeredTransition = triggeredTransitionOpt.get();
-            logger.debug("transition triggered: context={}, state={}, transition={}, transitionType={}", context, currentState.getId(), triggeredTransition, triggeredTransition.getTransitionType().name());
-
-            State<T, U> mainSourceState = triggeredTransition.getMainSourceState();
-            State<T, U> mainTargetState = triggeredTransition.getMainTargetState();
-
-            // get lowest common ancestor (LCA) for main source state and main target state
-            State<T, U> lowestCommonAncestor = stateTree.getLowestCommonAncestor(mainSourceState, mainTargetState);
-
-            // exit sources states
-            List<State<T, U>> sourceStates = getSourceStates(currentState, mainSourceState, mainTargetState, lowestCommonAncestor, triggeredTransition.getTransitionType());
-            for (State<T, U> state : sourceStates) {
-                logger.debug("exiting state: context={}, state={}", context, state.getId());
-                try {
-                    state.onExit(context);
-                } catch(Exception e) {
-                    throw new ExecutionException(e);
+    private State<T, U> processEvents(T context, State<T, U> currentState, Iterable<?> events, int[] transitionCounts) throws ExecutionException {
+        // events deferred by one event may be dispatched after a later event
+        EventQueue queue = EventQueue.acquire();
+        try {
+            int index = 0;
+            for (Object event : events) {
+                checkNotNull(event);
+                if (transitionCounts != null && index >= transitionCounts.length) {
+                    throw new IllegalArgumentException(String.format("more events than transition counts: length=%d", transitionCounts.length));
                 }
+                currentState = processEvent(context, currentState, event, queue, transitionCounts, index++);
             }
+            return handOverDeferredEvents(context, currentState, queue);
+        } finally {
+            queue.release();
+        }
+    }
 
-            // execute transition action (if any)
-            Optional<? extends Action<T>> actionOpt = triggeredTransition.getAction();
-            if (actionOpt.isPresent()) {
-                Action<T> action = actionOpt.get();
-                if(logger.isDebugEnabled()) {
-                    logger.debug("executing action: context={}, action={}", context, getActionName(action));
-                }
-                try {
-                    action.execute(context, eventOpt);
-                } catch(Exception e) {
-                    throw new ExecutionException(e);
+    /**
+     * Processes a single event followed by the internal events it causes (and the deferred events recalled).
+     *
+     * @param transitionCounts array receiving the number of transitions taken at <code>index</code> or <code>null</code>
+     * @return the state after processing the events
+     */
+    private State<T, U> processEvent(T context, State<T, U> sourceState, Object event, EventQueue queue, int[] transitionCounts, int index) throws ExecutionException {
+        queue.resetTransitionCount();
+        State<T, U> currentState = dispatchEvent(context, sourceState, event, queue);
+        currentState = processInternalEvents(context, currentState, queue);
+
+        if (transitionCounts != null) {
+            transitionCounts[index] = queue.getTransitionCount();
+        }
+        return currentState;
+    }
+
+    /**
+     * Dispatches the internal events in the queue, including those posted while dispatching.
+     *
+     * @return the state after dispatching the events
+     */
+    private State<T, U> processInternalEvents(T context, State<T, U> currentState, EventQueue queue) throws ExecutionException {
+        int dispatched = 0;
+        Object event;
+        while ((event = queue.poll()) != null) {
+            if (++dispatched > maxTransitionsPerEvent) {
+                throw new MaxTransitionsPerEventException();
+            }
+            currentState = dispatchEvent(context, currentState, event, queue);
+        }
+        return currentState;
+    }
+
+    /**
+     * Dispatches a single event (unless deferred), taking the triggered transition and any completion transitions
+     * that follow. After a transition, the deferred events no longer deferred are recalled.
+     *
+     * @return the state after dispatching the event
+     */
+    private State<T, U> dispatchEvent(T context, State<T, U> sourceState, Object event, EventQueue queue) throws ExecutionException {
+        if (deferredEventClasses != null && isDeferred(sourceState, event)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("event deferred: context={}, state={}, event={}", context, sourceState.getId(), event);
+            }
+            queue.defer(event);
+            return sourceState;
+        }
+
+        long start = 0;
+        if (listener != null) {
+            listener.eventReceived(context, sourceState.getId(), event);
+            start = System.nanoTime();
+        }
+
+        State<T, U> currentState = sourceState;
+        int transitionCount = 0;
+        try {
+            State<T, U> nextState = process(context, currentState, event, transitionCount);
+            while (nextState != null) {
+                transitionCount++;
+                currentState = nextState;
+                Object nextEvent = null;
+                if (currentState instanceof FinalState && stateTree.findParent(currentState) != null) {
+                    nextEvent = new CompositeStateCompleted<U>(currentState.getId());
                 }
+                nextState = process(context, currentState, nextEvent, transitionCount);
             }
+        } catch (ExecutionException e) {
+            handleEventFailed(context, sourceState, event, e, start);
+            throw e;
+        } catch (RuntimeException e) {
+            handleEventFailed(context, sourceState, event, e, start);
+            throw e;
+        }
 
-            // enter target states
-            List<State<T, U>> targetStates = getTargetStates(mainSourceState, mainTargetState, lowestCommonAncestor, triggeredTransition.getTransitionType());
-            for (State<T, U> state : targetStates) {
-                logger.debug("entering state: context={}, state={}", context, state.getId());
-                try {
-                    state.onEntry(context);
-                } catch(Exception e) {
-                    throw new ExecutionException(e);
+        queue.addTransitionCount(transitionCount);
+        if (listener != null) {
+            listener.eventProcessed(context, sourceState.getId(), currentState.getId(), event, transitionCount, System.nanoTime() - start);
+        }
+        if (transitionCount > 0 && queue.hasDeferredEvents()) {
+            recallDeferredEvents(currentState, queue);
+        }
+        return currentState;
+    }
+
+    /**
+     * Hands the events still deferred when processing completes to the deferred event handler, as the queue is
+     * released when returning.
+     *
+     * @return the current state
+     */
+    private State<T, U> handOverDeferredEvents(T context, State<T, U> currentState, EventQueue queue) {
+        if (queue.hasDeferredEvents()) {
+            handleDeferredEvents(context, currentState, queue.getDeferredEvents());
+        }
+        return currentState;
+    }
+
+    private void handleDeferredEvents(T context, State<T, U> currentState, List<Object> events) {
+        if (replay) {
+            // handled when the events were processed
+            return;
+        }
+        if (deferredEventHandler != null) {
+            deferredEventHandler.handleDeferredEvents(context, currentState.getId(), ImmutableList.copyOf(events));
+        } else if (logger.isWarnEnabled()) {
+            logger.warn("deferred events discarded, no deferred event handler: state={}, events={}", currentState.getId(), events);
+        }
+    }
+
+    private boolean isDeferred(State<T, U> state, Object event) {
+        Class<?>[] classes = deferredEventClasses.get(state);
+        if (classes != null) {
+            for (int i = 0; i < classes.length; i++) {
+                if (classes[i].isInstance(event)) {
+                    return true;
                 }
             }
+        }
+        return false;
+    }
 
-            // handle initial transitions
-            U nextStateId = handleInitialTransitions(mainTargetState, context);
+    /**
+     * Recalls the deferred events not deferred in the current state, keeping their order, ahead of the internal
+     * events.
+     */
+    private void recallDeferredEvents(State<T, U> currentState, EventQueue queue) {
+        List<Object> deferredEvents = queue.getDeferredEvents();
+        for (int i = deferredEvents.size() - 1; i >= 0; i--) {
+            if (!isDeferred(currentState, deferredEvents.get(i))) {
+                queue.recall(i);
+            }
+        }
+    }
 
-            return new ProcessEventResult<U>(true, nextStateId);
-        } else {
-            return new ProcessEventResult<U>(false, currentState.getId());
+    private void handleEventFailed(T context, State<T, U> sourceState, Object event, Exception exception, long start) {
+        if (listener != null) {
+            listener.eventFailed(context, sourceState.getId(), event, exception, System.nanoTime() - start);
+        }
+        if (flightRecorder == null) {
+            return;
+        }
+        // the recorded transitions are only formatted when debugging, so a burst of failures stays cheap
+        if (logger.isDebugEnabled()) {
+            StringBuilder sb = new StringBuilder();
+            try {
+                flightRecorder.dump(sb);
+            } catch (IOException e) {
+                // not thrown by StringBuilder
+            }
+            logger.debug("processing event failed, recent transitions: context={}, state={}, event={}, exception={}\n{}",
+                    context, sourceState.getId(), event, exception, sb);
+        } else if (logger.isWarnEnabled()) {
+            logger.warn("processing event failed: state={}, event={}, exception={}", sourceState.getId(), event, exception);
+        }
+    }
+
+    private void handleEvent(State<T, U> sourceState, T context, Object event) throws ExecutionException {
+        boolean eventHandled;
+        State<T, U> state = sourceState;
+        do {
+            if(logger.isDebugEnabled()) {
+                logger.debug("handling event: context={}, state={}, event={}", context, state.getId(), event);
+            }
+            try {
+                eventHandled = state.onEvent(context, event);
+            } catch(Exception e) {
+                throw new ExecutionException(e);
+            }
+            state = stateTree.findParent(state);
+        } while (!eventHandled && state != null && !state.equals(stateTree.getRootState()));
+    }
+
+    /**
+     * Processes a single step, i.e. handles the event (if any) and takes the triggered transition (if any).
+     *
+     * @return the state after the transition or <code>null</code> if no transition was triggered
+     */
+    private State<T, U> process(T context, State<T, U> currentState, Object event, int transitionCount) throws ExecutionException {
+        if (transitionCount >= maxTransitionsPerEvent) {
+            throw new MaxTransitionsPerEventException();
+        }
+
+        // handle event (not in replay mode)
+        if (event != null && !replay) {
+            handleEvent(currentState, context, event);
+        }
+
+        // processEvent triggered transition (if any)
+        CandidateTransitions<T, U> candidates = dispatchTable.getCandidates(currentState, event);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Optional<?> eventOpt = getEventOptional(event, candidates);
+        CompiledTransition<T, U> triggeredTransition = candidates.getUnconditionalTransition();
+        if (triggeredTransition == null) {
+            triggeredTransition = getTriggeredTransition(currentState, context, event, eventOpt, candidates);
+            if (triggeredTransition == null) {
+                return null;
+            }
+        }
+
+        Transition<T, U> transition = triggeredTransition.getTransition();
+        if (replay) {
+            return handleInitialTransitions(transition.getMainTargetState(), context);
+        }
+        if(logger.isDebugEnabled()) {
+            logger.debug("transition triggered: context={}, state={}, transition={}, transitionType={}", context, currentState.getId(), transition, transition.getTransitionType().name());
+        }
+        if (listener != null) {
+            listener.transitionSelected(context, currentState.getId(), transition);
+        }
+        long start = (listener != null || flightRecorder != null) ? System.nanoTime() : 0;
+
+        // exit sources states
+        List<State<T, U>> sourceStates = triggeredTransition.getExitStates();
+        for (int i = 0; i < sourceStates.size(); i++) {
+            exitState(sourceStates.get(i), context);
+        }
+
+        // execute transition action (if any)
+        Action<T> action = triggeredTransition.getAction();
+        if (action != null) {
+            executeAction(transition, action, context, eventOpt);
+        }
+
+        // enter target states
+        List<State<T, U>> targetStates = triggeredTransition.getEntryStates();
+        for (int i = 0; i < targetStates.size(); i++) {
+            enterState(targetStates.get(i), context);
+        }
+
+        if (listener != null) {
+            listener.transitionExecuted(context, currentState.getId(), transition, System.nanoTime() - start);
+        }
+
+        // handle initial transitions
+        State<T, U> nextState = handleInitialTransitions(transition.getMainTargetState(), context);
+
+        if (flightRecorder != null) {
+            flightRecorder.record(currentState, nextState, event, start, System.nanoTime());
         }
+        return nextState;
     }
-    
-    private U handleInitialTransition(T context) throws ExecutionException {
+
+    private State<T, U> handleInitialTransition(T context) throws ExecutionException {
         return handleInitialTransitions(stateTree.getRootState(), context);
     }
 
-    private U handleInitialTransitions(State<T, U> startState, T context) throws ExecutionException {
+    private State<T, U> handleInitialTransitions(State<T, U> startState, T context) throws ExecutionException {
         State<T, U> currentState = startState;
-        Optional<Transition<T, U>> initialTransitionOpt = transitionMap.getInitialTransitionFromState(currentState);
-        while (initialTransitionOpt.isPresent()) {
-            Transition<T, U> it = initialTransitionOpt.get();
-            logger.debug("initial transition: transition={}", it);
-            if (it.getAction().isPresent()) {
-                Action<T> action = it.getAction().get();
-                if(logger.isDebugEnabled()) {
-                    logger.debug("executing action for initial transition: context={}, action={}", context, getActionName(action));
+        Transition<T, U> it = transitionMap.findInitialTransitionFromState(currentState);
+        while (it != null) {
+            currentState = it.getMainTargetState();
+            if (!replay) {
+                logger.debug("initial transition: transition={}", it);
+                if (it.getAction().isPresent()) {
+                    executeAction(it, it.getAction().get(), context, Optional.absent());
                 }
-                try {
-                    action.execute(context, Optional.absent());
-                } catch(Exception e) {
-                    throw new ExecutionException(e);
+                enterState(currentState, context);
+            }
+            it = transitionMap.findInitialTransitionFromState(currentState);
+        }
+
+        return currentState;
+    }
+
+    private void exitState(State<T, U> state, T context) throws ExecutionException {
+        logger.debug("exiting state: context={}, state={}", context, state.getId());
+        long start = listener != null ? System.nanoTime() : 0;
+        try {
+            state.onExit(context);
+        } catch(Exception e) {
+            throw new ExecutionException(e);
+        }
+        if (listener != null) {
+            listener.stateExited(context, state.getId(), System.nanoTime() - start);
+        }
+    }
+
+    private void enterState(State<T, U> state, T context) throws ExecutionException {
+        logger.debug("entering state: context={}, state={}", context, state.getId());
+        long start = listener != null ? System.nanoTime() : 0;
+        try {
+            state.onEntry(context);
+        } catch(Exception e) {
+            throw new ExecutionException(e);
+        }
+        if (listener != null) {
+            listener.stateEntered(context, state.getId(), System.nanoTime() - start);
+        }
+    }
+
+    private void executeAction(Transition<T, U> transition, Action<T> action, T context, Optional<?> eventOpt) throws ExecutionException {
+        if(logger.isDebugEnabled()) {
+            logger.debug("executing action: context={}, action={}", context, getActionName(action));
+        }
+        long start = listener != null ? System.nanoTime() : 0;
+        try {
+            action.execute(context, eventOpt);
+        } catch(Exception e) {
+            throw new ExecutionException(e);
+        }
+        if (listener != null) {
+            listener.actionExecuted(context, transition, System.nanoTime() - start);
+        }
+    }
+
+    private CompiledTransition<T, U> getTriggeredTransition(State<T, U> currentState, T context, Object event, Optional<?> eventOpt,
+                                                            CandidateTransitions<T, U> candidateTransitions) throws ExecutionException {
+        if (candidateTransitions.getDispatcher() != null) {
+            return getDispatchedTransition(currentState, context, event, eventOpt, candidateTransitions);
+        }
+        List<CompiledTransition<T, U>> candidates = candidateTransitions.getTransitions();
+        CompiledTransition<T, U> firstTriggered = null;
+        List<CompiledTransition<T, U>> triggeredTransitions = null;
+        GuardMemoizer guardMemoizer = dispatchTable.getGuardMemoizer();
+        long previousSelection = guardMemoizer != null ? guardMemoizer.begin() : 0;
+        try {
+            for(int i = 0; i < candidates.size(); i++) {
+                CompiledTransition<T, U> t = candidates.get(i);
+                if(isGuardSatisfied(t, context, eventOpt)) {
+                    if (firstMatch) {
+                        return t;
+                    }
+                    if (firstTriggered == null) {
+                        firstTriggered = t;
+                    } else {
+                        if (triggeredTransitions == null) {
+                            triggeredTransitions = Lists.newArrayList();
+                            triggeredTransitions.add(firstTriggered);
+                        }
+                        triggeredTransitions.add(t);
+                    }
                 }
             }
-            currentState = it.getMainTargetState();
-            logger.debug("entering state: context={}, state={}", context, currentState.getId());
-            try {
-                currentState.onEntry(context);
-            } catch(Exception e) {
-                throw new ExecutionException(e);
+        } finally {
+            if (guardMemoizer != null) {
+                guardMemoizer.end(previousSelection);
             }
-            initialTransitionOpt = transitionMap.getInitialTransitionFromState(currentState);
         }
 
+        if (triggeredTransitions == null) {
+            return firstTriggered;
+        }
+        return resolve(currentState, context, event, triggeredTransitions);
+    }
+
+    /**
+     * Gets the triggered transition among candidates evaluated by a dispatcher.
+     */
+    private CompiledTransition<T, U> getDispatchedTransition(State<T, U> currentState, T context, Object event, Optional<?> eventOpt,
+                                                             CandidateTransitions<T, U> candidateTransitions) throws ExecutionException {
+        long triggered;
+        GuardMemoizer guardMemoizer = dispatchTable.getGuardMemoizer();
+        long previousSelection = guardMemoizer != null ? guardMemoizer.begin() : 0;
+        try {
+            triggered = candidateTransitions.getDispatcher().dispatch(context, event, eventOpt);
+        } catch(Exception e) {
+            throw new ExecutionException(e);
+        } finally {
+            if (guardMemoizer != null) {
+                guardMemoizer.end(previousSelection);
+            }
+        }
 
-        return currentState.getId();
+        List<CompiledTransition<T, U>> candidates = candidateTransitions.getTransitions();
+        if (triggered == 0) {
+            return null;
+        }
+        if ((triggered & (triggered - 1)) == 0) {
+            return candidates.get(Long.numberOfTrailingZeros(triggered));
+        }
+        List<CompiledTransition<T, U>> triggeredTransitions = Lists.newArrayListWithCapacity(Long.bitCount(triggered));
+        for (long bits = triggered; bits != 0; bits &= bits - 1) {
+            triggeredTransitions.add(candidates.get(Long.numberOfTrailingZeros(bits)));
+        }
+        return resolve(currentState, context, event, triggeredTransitions);
     }
 
-    private List<State<T, U>> getSourceStates(State<T, U> currentState, State<T, U> mainSourceState, State<T, U> mainTargetState,
-                                              State<T, U> lowestCommonAncestor, TransitionType transitionType) {
-        List<State<T, U>> res = stateTree.getPathToAncestor(currentState, lowestCommonAncestor, false);
-        if (TransitionType.EXTERNAL.equals(transitionType) &&
-                (mainSourceState.equals(lowestCommonAncestor) || mainTargetState.equals(lowestCommonAncestor))) {
-            res.add(lowestCommonAncestor);
+    private CompiledTransition<T, U> resolve(State<T, U> currentState, T context, Object event,
+                                             List<CompiledTransition<T, U>> triggeredTransitions) throws ExecutionException {
+        Transition<T, U> resolved;
+        try {
+            resolved = multipleTransitionsTriggeredResolver.resolve(currentState.getId(), context, Optional.fromNullable(event), getTransitions(triggeredTransitions));
+        } catch(Exception e) {
+            throw new ExecutionException(e);
+        }
+        for (CompiledTransition<T, U> t : triggeredTransitions) {
+            if (t.getTransition().equals(resolved)) {
+                return t;
+            }
+        }
+        return CompiledTransition.compile(stateTree, currentState, resolved);
+    }
+
+    /**
+     * Gets the event wrapped in an <code>Optional</code> as passed to guards and actions. The <code>Optional</code> is
+     * only created if any of the candidates has a guard or an action, keeping the common case allocation free.
+     */
+    private Optional<?> getEventOptional(Object event, CandidateTransitions<T, U> candidates) {
+        if (event != null && candidates.isEventRequired()) {
+            return Optional.of(event);
+        }
+        return Optional.absent();
+    }
+
+    private List<Transition<T, U>> getTransitions(List<CompiledTransition<T, U>> compiledTransitions) {
+        List<Transition<T, U>> res = Lists.newArrayListWithCapacity(compiledTransitions.size());
+        for (CompiledTransition<T, U> t : compiledTransitions) {
+            res.add(t.getTransition());
         }
         return res;
     }
 
-    private List<State<T, U>> getTargetStates(State<T, U> mainSourceState, State<T, U> mainTargetState,
-                                              State<T, U> lowestCommonAncestor, TransitionType transitionType) {
-        List<State<T, U>> res = stateTree.getPathToAncestor(mainTargetState, lowestCommonAncestor, false);
-        if (TransitionType.EXTERNAL.equals(transitionType) &&
-                (mainSourceState.equals(lowestCommonAncestor) || mainTargetState.equals(lowestCommonAncestor))) {
-            res.add(lowestCommonAncestor);
+    private boolean isGuardSatisfied(CompiledTransition<T, U> t, T context, Optional<?> event) throws ExecutionException {
+        Guard<T> guard = t.getGuard();
+        if (guard == null) {
+            // no guard present
+            return true;
+        }
+        long start = listener != null ? System.nanoTime() : 0;
+        boolean res;
+        try {
+            res = guard.evaluate(context, event);
+        } catch(Exception e) {
+            throw new ExecutionException(e);
+        }
+        if (listener != null) {
+            listener.guardEvaluated(context, t.getTransition(), res, System.nanoTime() - start);
         }
-        Collections.reverse(res);
         return res;
     }
 
-    private Optional<Transition<T, U>> getTriggeredTransition(State<T, U> currentState, T context, Optional<?> event) throws ExecutionException {
-        List<State<T, U>> fromCurrentStateToRoot = stateTree.getPathToAncestor(currentState, stateTree.getRootState(), false);
-        List<Transition<T, U>> transitions = Lists.newArrayList();
-        for (State<T, U> state : fromCurrentStateToRoot) {
-            for(Transition<T, U> t : transitionMap.getTransitionsFromState(state)) {
-                if(!t.getTransitionType().equals(TransitionType.INITIAL)) {
-                    transitions.add(t);
-                }
+    private String getActionName(Action<T> action) {
+        return action.getClass().getName();
+    }
+
+    /**
+     * Processes an event (or starts the state machine) asynchronously, one step at a time. The steps are the same as
+     * when processing synchronously. A step returning a future that isn't done suspends processing, which continues
+     * on the thread completing the future.
+     */
+    private final class AsyncProcessing implements Runnable {
+
+        private static final int SELECT = 0;
+        private static final int EXIT = 1;
+        private static final int ACTION = 2;
+        private static final int ENTRY = 3;
+        private static final int INITIAL_ACTION = 4;
+        private static final int INITIAL_ENTRY = 5;
+        private static final int DONE = 6;
+
+        private static final int STATE_EXITED = 0;
+        private static final int STATE_ENTERED = 1;
+        private static final int ACTION_EXECUTED = 2;
+
+        private final SettableFuture<U> result = SettableFuture.create();
+        private final T context;
+        private final State<T, U> sourceState;
+        private final Object sourceEvent;
+        private final boolean starting;
+        private final boolean deferred;
+        private final long start;
+
+        private State<T, U> currentState;
+        private Object event;
+        private int transitionCount;
+        private int phase;
+        private int index;
+        private CompiledTransition<T, U> triggeredTransition;
+        private Optional<?> eventOpt;
+        private Transition<T, U> initialTransition;
+        private State<T, U> targetState;
+        private long transitionStart;
+
+        // the step waiting for its future
+        private ListenableFuture<?> pending;
+        private int pendingType;
+        private State<T, U> pendingState;
+        private Transition<T, U> pendingTransition;
+        private long pendingStart;
+
+        private AsyncProcessing(T context, State<T, U> sourceState, Object event) {
+            this.context = context;
+            this.sourceState = sourceState;
+            this.sourceEvent = event;
+            this.starting = event == null;
+            this.currentState = sourceState;
+            this.event = event;
+            // without internal events, a deferred event is never recalled
+            this.deferred = !starting && deferredEventClasses != null && isDeferred(sourceState, event);
+            if (starting) {
+                this.targetState = sourceState;
+                this.phase = INITIAL_ACTION;
+            } else {
+                this.phase = deferred ? DONE : SELECT;
             }
+            long now = 0;
+            if (listener != null && !starting && !deferred) {
+                listener.eventReceived(context, sourceState.getId(), event);
+                now = System.nanoTime();
+            }
+            this.start = now;
         }
 
-        List<Transition<T, U>> triggeredTransitions = filterTransitions(transitions, context, event);
-        if (triggeredTransitions.isEmpty()) {
-            return Optional.absent();
-        } else if (triggeredTransitions.size() == 1) {
-            return Optional.of(triggeredTransitions.get(0));
-        } else {
+        @Override
+        public void run() {
+            // a step may run within synchronous processing on the thread, which must not get the events it posts
+            EventQueue suspended = EventQueue.suspend();
             try {
-                return Optional.of(multipleTransitionsTriggeredResolver.resolve(currentState.getId(), context, event, triggeredTransitions));
-            } catch(Exception e) {
-                throw new ExecutionException(e);
+                runSteps();
+            } finally {
+                EventQueue.resume(suspended);
             }
         }
-    }
 
-    List<Transition<T, U>> filterTransitions(Collection<Transition<T, U>> transitions, T context, Optional<?> event) throws ExecutionException {
-        List<Transition<T, U>> res = Lists.newArrayList();
+        private void runSteps() {
+            try {
+                if (pending != null) {
+                    ListenableFuture<?> future = pending;
+                    pending = null;
+                    stepCompleted(future);
+                }
+                while (phase != DONE) {
+                    ListenableFuture<?> future = step();
+                    if (future != null) {
+                        if (!future.isDone()) {
+                            pending = future;
+                            future.addListener(this, MoreExecutors.directExecutor());
+                            return;
+                        }
+                        stepCompleted(future);
+                    }
+                }
+                if (deferred) {
+                    handleDeferredEvents(context, sourceState, Collections.singletonList(sourceEvent));
+                }
+            } catch (ExecutionException e) {
+                failed(e);
+                return;
+            } catch (RuntimeException e) {
+                failed(e);
+                return;
+            }
 
-        for(Transition<T, U> t : transitions) {
-            if(isTransitionTriggered(t, context, event)) {
-                res.add(t);
+            if (listener != null && !starting && !deferred) {
+                listener.eventProcessed(context, sourceState.getId(), currentState.getId(), sourceEvent, transitionCount, System.nanoTime() - start);
             }
+            result.set(currentState.getId());
         }
 
-        return res;
-    }
+        /**
+         * Takes the next step.
+         *
+         * @return the future of an asynchronous step or <code>null</code> if the step is done
+         */
+        private ListenableFuture<?> step() throws ExecutionException {
+            switch (phase) {
+                case SELECT:
+                    select();
+                    return null;
+                case EXIT: {
+                    List<State<T, U>> exitStates = triggeredTransition.getExitStates();
+                    if (index < exitStates.size()) {
+                        return exit(exitStates.get(index++));
+                    }
+                    phase = ACTION;
+                    return null;
+                }
+                case ACTION: {
+                    phase = ENTRY;
+                    index = 0;
+                    Action<T> action = triggeredTransition.getAction();
+                    return action != null ? execute(triggeredTransition.getTransition(), action, eventOpt) : null;
+                }
+                case ENTRY: {
+                    List<State<T, U>> entryStates = triggeredTransition.getEntryStates();
+                    if (index < entryStates.size()) {
+                        return enter(entryStates.get(index++));
+                    }
+                    if (listener != null) {
+                        listener.transitionExecuted(context, currentState.getId(), triggeredTransition.getTransition(), System.nanoTime() - transitionStart);
+                    }
+                    targetState = triggeredTransition.getTransition().getMainTargetState();
+                    phase = INITIAL_ACTION;
+                    return null;
+                }
+                case INITIAL_ACTION:
+                    initialTransition = transitionMap.findInitialTransitionFromState(targetState);
+                    if (initialTransition == null) {
+                        transitionTaken();
+                        return null;
+                    }
+                    phase = INITIAL_ENTRY;
+                    if (!replay && initialTransition.getAction().isPresent()) {
+                        return execute(initialTransition, initialTransition.getAction().get(), Optional.absent());
+                    }
+                    return null;
+                case INITIAL_ENTRY:
+                    targetState = initialTransition.getMainTargetState();
+                    phase = INITIAL_ACTION;
+                    return replay ? null : enter(targetState);
+                default:
+                    throw new IllegalStateException(String.format("invalid phase: phase=%d", phase));
+            }
+        }
 
-    private boolean isTransitionTriggered(Transition<T, U> t, T context, Optional<?> event) throws ExecutionException {
-        if (t.getTriggerEventClass().isPresent()) {
-            Class<?> triggerEventClass = t.getTriggerEventClass().get();
-            if (event.isPresent()) {
-                if (!triggerEventClass.isInstance(event.get())) {
-                    return false;
+        private void select() throws ExecutionException {
+            if (transitionCount >= maxTransitionsPerEvent) {
+                throw new MaxTransitionsPerEventException();
+            }
+            if (event != null && !replay) {
+                handleEvent(currentState, context, event);
+            }
+
+            CandidateTransitions<T, U> candidates = dispatchTable.getCandidates(currentState, event);
+            CompiledTransition<T, U> t = null;
+            if (!candidates.isEmpty()) {
+                eventOpt = getEventOptional(event, candidates);
+                t = candidates.getUnconditionalTransition();
+                if (t == null) {
+                    t = getTriggeredTransition(currentState, context, event, eventOpt, candidates);
                 }
+            }
+            if (t == null) {
+                phase = DONE;
+                return;
+            }
+
+            triggeredTransition = t;
+            Transition<T, U> transition = t.getTransition();
+            if (listener != null) {
+                listener.transitionSelected(context, currentState.getId(), transition);
+            }
+            transitionStart = (listener != null || flightRecorder != null) ? System.nanoTime() : 0;
+            index = 0;
+            if (replay) {
+                targetState = transition.getMainTargetState();
+                phase = INITIAL_ACTION;
             } else {
-                return false;
+                phase = EXIT;
             }
-        } else {
-            if(event.isPresent()) {
-                return false;
+        }
+
+        private void transitionTaken() {
+            if (starting) {
+                currentState = targetState;
+                phase = DONE;
+                return;
+            }
+            if (flightRecorder != null && !replay) {
+                flightRecorder.record(currentState, targetState, event, transitionStart, System.nanoTime());
             }
+            transitionCount++;
+            currentState = targetState;
+            event = null;
+            if (currentState instanceof FinalState && stateTree.findParent(currentState) != null) {
+                event = new CompositeStateCompleted<U>(currentState.getId());
+            }
+            phase = SELECT;
         }
-        if (t.getGuard().isPresent()) {
+
+        private ListenableFuture<?> exit(State<T, U> state) throws ExecutionException {
+            if (!(state instanceof AsyncState)) {
+                exitState(state, context);
+                return null;
+            }
+            logger.debug("exiting state: context={}, state={}", context, state.getId());
+            setPending(STATE_EXITED, state, null);
             try {
-                return t.getGuard().get().evaluate(context, event);
-            } catch(Exception e) {
+                return checkNotNull(((AsyncState<T, U>) state).onExitAsync(context));
+            } catch (Exception e) {
                 throw new ExecutionException(e);
             }
-        } else {
-            // no guard present
-            return true;
         }
-    }
 
+        private ListenableFuture<?> enter(State<T, U> state) throws ExecutionException {
+            if (!(state instanceof AsyncState)) {
+                enterState(state, context);
+                return null;
+            }
+            logger.debug("entering state: context={}, state={}", context, state.getId());
+            setPending(STATE_ENTERED, state, null);
+            try {
+                return checkNotNull(((AsyncState<T, U>) state).onEntryAsync(context));
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }
 
-    private static class ProcessEventResult<U> {
-        private final boolean continueProcessing;
-        private final U nextStateId;
-
-        private ProcessEventResult(boolean continueProcessing, U nextStateId) {
-            this.continueProcessing = continueProcessing;
-            this.nextStateId = nextStateId;
+        private ListenableFuture<?> execute(Transition<T, U> transition, Action<T> action, Optional<?> eventOpt) throws ExecutionException {
+            if (!(action instanceof AsyncAction)) {
+                executeAction(transition, action, context, eventOpt);
+                return null;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("executing action: context={}, action={}", context, getActionName(action));
+            }
+            setPending(ACTION_EXECUTED, null, transition);
+            try {
+                return checkNotNull(((AsyncAction<T>) action).executeAsync(context, eventOpt));
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
         }
 
-        public boolean isContinueProcessing() {
-            return continueProcessing;
+        private void setPending(int type, State<T, U> state, Transition<T, U> transition) {
+            pendingType = type;
+            pendingState = state;
+            pendingTransition = transition;
+            pendingStart = listener != null ? System.nanoTime() : 0;
         }
 
-        public U getNextStateId() {
-            return nextStateId;
+        private void stepCompleted(ListenableFuture<?> future) throws ExecutionException {
+            try {
+                Uninterruptibles.getUninterruptibly(future);
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new ExecutionException(e.getCause());
+            } catch (CancellationException e) {
+                throw new ExecutionException(e);
+            }
+            if (listener != null) {
+                long elapsed = System.nanoTime() - pendingStart;
+                if (pendingType == STATE_EXITED) {
+                    listener.stateExited(context, pendingState.getId(), elapsed);
+                } else if (pendingType == STATE_ENTERED) {
+                    listener.stateEntered(context, pendingState.getId(), elapsed);
+                } else {
+                    listener.actionExecuted(context, pendingTransition, elapsed);
+                }
+            }
         }
-    }
 
-    private String getActionName(Action<T> action) {
-        return action.getClass().getName();
+        private void failed(Exception exception) {
+            if (!starting) {
+                handleEventFailed(context, sourceState, sourceEvent, exception, start);
+            }
+            result.setException(exception);
+        }
     }
 
 }
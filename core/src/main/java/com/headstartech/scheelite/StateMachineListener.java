@@ -0,0 +1,109 @@
+package com.headstartech.scheelite;
+
+/**
+ * Listener notified while the state machine processes events. Listeners are registered using
+ * {@link StateMachineBuilder#withListener(StateMachineListener)}.
+ *
+ * The callbacks are invoked synchronously from the thread processing the event, so they should return quickly.
+ * Durations are measured with {@link System#nanoTime()} and only when a listener is registered.
+ *
+ * When processing asynchronously, processing continues on the thread completing a pending future, so the callbacks
+ * for an event may be invoked from different threads. A listener must therefore not correlate the callbacks using
+ * thread locals, the time spent processing is passed to {@link #eventProcessed} and {@link #eventFailed}.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachineListenerAdapter
+ */
+public interface StateMachineListener<T, U> {
+
+    /**
+     * Invoked when an event is received, before it's processed.
+     *
+     * @param context the context
+     * @param stateId id of the current state
+     * @param event the event
+     */
+    void eventReceived(T context, U stateId, Object event);
+
+    /**
+     * Invoked after the guard of a candidate transition has been evaluated.
+     *
+     * @param context the context
+     * @param transition the candidate transition
+     * @param result the result of the guard
+     * @param durationNanos time spent evaluating the guard
+     */
+    void guardEvaluated(T context, Transition<T, U> transition, boolean result, long durationNanos);
+
+    /**
+     * Invoked when a transition has been selected, before any state is exited.
+     *
+     * @param context the context
+     * @param stateId id of the current state
+     * @param transition the selected transition
+     */
+    void transitionSelected(T context, U stateId, Transition<T, U> transition);
+
+    /**
+     * Invoked after a state has been exited.
+     *
+     * @param context the context
+     * @param stateId id of the exited state
+     * @param durationNanos time spent in {@link State#onExit(Object)}
+     */
+    void stateExited(T context, U stateId, long durationNanos);
+
+    /**
+     * Invoked after a state has been entered.
+     *
+     * @param context the context
+     * @param stateId id of the entered state
+     * @param durationNanos time spent in {@link State#onEntry(Object)}
+     */
+    void stateEntered(T context, U stateId, long durationNanos);
+
+    /**
+     * Invoked after the action of a transition (including initial transitions) has been executed.
+     *
+     * @param context the context
+     * @param transition the transition
+     * @param durationNanos time spent in {@link Action#execute}
+     */
+    void actionExecuted(T context, Transition<T, U> transition, long durationNanos);
+
+    /**
+     * Invoked after a selected transition has been executed, i.e. the states have been exited, the action executed
+     * and the states entered (excluding any initial transitions that follow).
+     *
+     * @param context the context
+     * @param sourceStateId id of the state the transition was taken from
+     * @param transition the transition
+     * @param durationNanos time spent executing the transition
+     */
+    void transitionExecuted(T context, U sourceStateId, Transition<T, U> transition, long durationNanos);
+
+    /**
+     * Invoked after an event has been processed.
+     *
+     * @param context the context
+     * @param sourceStateId id of the state before the event
+     * @param targetStateId id of the state after the event
+     * @param event the event
+     * @param transitions number of transitions taken
+     * @param durationNanos time spent processing the event
+     */
+    void eventProcessed(T context, U sourceStateId, U targetStateId, Object event, int transitions, long durationNanos);
+
+    /**
+     * Invoked when processing an event failed, before the exception is thrown to the caller.
+     *
+     * @param context the context
+     * @param stateId id of the state before the event
+     * @param event the event
+     * @param exception the exception thrown to the caller
+     * @param durationNanos time spent processing the event until it failed
+     */
+    void eventFailed(T context, U stateId, Object event, Exception exception, long durationNanos);
+}
@@ -0,0 +1,57 @@
+package com.headstartech.scheelite;
+
+/**
+ * State machine listener adapter class.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachineListener
+ */
+public abstract class StateMachineListenerAdapter<T, U> implements StateMachineListener<T, U> {
+
+    @Override
+    public void eventReceived(T context, U stateId, Object event) {
+        // nothing done here
+    }
+
+    @Override
+    public void guardEvaluated(T context, Transition<T, U> transition, boolean result, long durationNanos) {
+        // nothing done here
+    }
+
+    @Override
+    public void transitionSelected(T context, U stateId, Transition<T, U> transition) {
+        // nothing done here
+    }
+
+    @Override
+    public void stateExited(T context, U stateId, long durationNanos) {
+        // nothing done here
+    }
+
+    @Override
+    public void stateEntered(T context, U stateId, long durationNanos) {
+        // nothing done here
+    }
+
+    @Override
+    public void actionExecuted(T context, Transition<T, U> transition, long durationNanos) {
+        // nothing done here
+    }
+
+    @Override
+    public void transitionExecuted(T context, U sourceStateId, Transition<T, U> transition, long durationNanos) {
+        // nothing done here
+    }
+
+    @Override
+    public void eventProcessed(T context, U sourceStateId, U targetStateId, Object event, int transitions, long durationNanos) {
+        // nothing done here
+    }
+
+    @Override
+    public void eventFailed(T context, U stateId, Object event, Exception exception, long durationNanos) {
+        // nothing done here
+    }
+}
@@ -0,0 +1,254 @@
+package com.headstartech.scheelite.concurrent;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.headstartech.scheelite.AsyncAction;
+import com.headstartech.scheelite.AsyncState;
+import com.headstartech.scheelite.StateMachine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Processes events for many entities asynchronously using a single {@link StateMachine}, without a thread per entity
+ * or per event.
+ *
+ * Events are processed with {@link StateMachine#processEventAsync(Object, Object, Object)}, so an entity waiting
+ * for an {@link AsyncAction} or {@link AsyncState} to complete doesn't hold a thread. Events for the same entity are
+ * processed one at a time in submission order, the next event being processed when the previous has been processed
+ * to completion, while events for different entities are processed concurrently. Only entities with events in flight
+ * are kept in memory: the context and state id are loaded when an entity gets its first event and the state id is
+ * saved after each event.
+ *
+ * If processing an event fails, its future fails and processing continues with the next event, the state of the
+ * entity being the state before the failing event.
+ *
+ * @param <K> entity key type
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see StateMachineExecutor
+ */
+public class AsyncStateMachineExecutor<K, T, U> {
+
+    private final StateMachine<T, U> stateMachine;
+    private final EntityStore<K, T, U> entityStore;
+    private final Executor executor;
+    private final ConcurrentMap<K, Entity> entities;
+
+    private AsyncStateMachineExecutor(Builder<K, T, U> builder) {
+        this.stateMachine = builder.stateMachine;
+        this.entityStore = builder.entityStore;
+        this.executor = builder.executor;
+        this.entities = Maps.newConcurrentMap();
+    }
+
+    public static <K, T, U> Builder<K, T, U> newBuilder(StateMachine<T, U> stateMachine, EntityStore<K, T, U> entityStore) {
+        return new Builder<K, T, U>(stateMachine, entityStore);
+    }
+
+    /**
+     * Submits an event for an entity.
+     *
+     * @param key the entity key
+     * @param event the event
+     * @return a future completing with the state id of the entity after the event has been processed, or failing
+     * with the exception thrown processing the event (or loading or saving the entity)
+     */
+    public ListenableFuture<U> submit(K key, Object event) {
+        checkNotNull(key);
+        checkNotNull(event);
+
+        Task<U> task = new Task<U>(event);
+        while (true) {
+            Entity entity = entities.get(key);
+            if (entity == null) {
+                entity = new Entity(key);
+                Entity existing = entities.putIfAbsent(key, entity);
+                if (existing != null) {
+                    entity = existing;
+                }
+            }
+            synchronized (entity) {
+                if (entity.removed) {
+                    // went idle after being looked up
+                    continue;
+                }
+                entity.tasks.add(task);
+                if (entity.tasks.size() > 1) {
+                    // processed when the events before it have been processed
+                    return task.future;
+                }
+            }
+            executor.execute(entity);
+            return task.future;
+        }
+    }
+
+    /**
+     * Gets the number of entities with events submitted but not yet processed.
+     */
+    public int getActiveEntityCount() {
+        return entities.size();
+    }
+
+    /**
+     * An entity with events in flight. The context and state id are only accessed when processing the task at the
+     * head of the queue, i.e. by one thread at a time.
+     */
+    private final class Entity implements Runnable {
+
+        private final K key;
+        private final Queue<Task<U>> tasks = Queues.newArrayDeque();  // guarded by this
+        private boolean removed;  // guarded by this
+        private T context;
+        private U stateId;
+
+        private Entity(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            // loop while events are processed synchronously, suspend when waiting for an asynchronous step
+            while (true) {
+                final Task<U> task;
+                synchronized (this) {
+                    task = tasks.peek();
+                }
+                final ListenableFuture<U> future = process(task);
+                if (future != null && !future.isDone()) {
+                    future.addListener(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (processed(task, future)) {
+                                executor.execute(Entity.this);
+                            }
+                        }
+                    }, MoreExecutors.directExecutor());
+                    return;
+                }
+                if (!processed(task, future)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Starts processing the event of the task.
+         *
+         * @return the future of the processing or <code>null</code> if the task has already failed
+         */
+        private ListenableFuture<U> process(Task<U> task) {
+            try {
+                if (context == null) {
+                    context = entityStore.getContext(key);
+                    stateId = entityStore.getStateId(key, context);
+                }
+                return stateMachine.processEventAsync(context, stateId, task.event);
+            } catch (Exception e) {
+                context = null;
+                task.exception = e;
+                return null;
+            }
+        }
+
+        /**
+         * Saves the state id after the event of the task has been processed and completes the task.
+         *
+         * @param future the future of the processing or <code>null</code> if the task has already failed
+         * @return <code>true</code> if there is another task to process
+         */
+        private boolean processed(Task<U> task, ListenableFuture<U> future) {
+            if (future != null) {
+                try {
+                    U nextStateId = Uninterruptibles.getUninterruptibly(future);
+                    entityStore.saveStateId(key, context, nextStateId);
+                    stateId = nextStateId;
+                    task.stateId = nextStateId;
+                } catch (java.util.concurrent.ExecutionException e) {
+                    task.exception = e.getCause();
+                } catch (Exception e) {
+                    task.exception = e;
+                }
+            }
+            // remove an idle entity before completing, so it's gone when the last future completes
+            boolean more = next();
+            task.complete();
+            return more;
+        }
+
+        /**
+         * Removes the processed task.
+         *
+         * @return <code>true</code> if there is another task to process, <code>false</code> if the entity is idle and
+         * has been removed
+         */
+        private boolean next() {
+            synchronized (this) {
+                tasks.poll();
+                if (!tasks.isEmpty()) {
+                    return true;
+                }
+                removed = true;
+            }
+            entities.remove(key, this);
+            return false;
+        }
+    }
+
+    private static final class Task<U> {
+        private final Object event;
+        private final SettableFuture<U> future = SettableFuture.create();
+        private U stateId;
+        private Throwable exception;
+
+        private Task(Object event) {
+            this.event = event;
+        }
+
+        private void complete() {
+            if (exception != null) {
+                future.setException(exception);
+            } else {
+                future.set(stateId);
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link AsyncStateMachineExecutor}.
+     */
+    public static final class Builder<K, T, U> {
+
+        private final StateMachine<T, U> stateMachine;
+        private final EntityStore<K, T, U> entityStore;
+        private Executor executor = MoreExecutors.directExecutor();
+
+        private Builder(StateMachine<T, U> stateMachine, EntityStore<K, T, U> entityStore) {
+            this.stateMachine = checkNotNull(stateMachine);
+            this.entityStore = checkNotNull(entityStore);
+        }
+
+        /**
+         * Sets the executor processing the events of an entity, when an event is submitted for an idle entity and when
+         * the entity has more events after waiting for an asynchronous step. Defaults to processing on the submitting
+         * thread and on the thread completing the asynchronous step.
+         */
+        public Builder<K, T, U> withExecutor(Executor executor) {
+            this.executor = checkNotNull(executor);
+            return this;
+        }
+
+        public AsyncStateMachineExecutor<K, T, U> build() {
+            return new AsyncStateMachineExecutor<K, T, U>(this);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.headstartech.scheelite.concurrent;
+
+/**
+ * Provides the context and state id of the entities processed by a {@link StateMachineExecutor}.
+ *
+ * The methods are called from the lane thread the entity is assigned to, i.e. never concurrently for the same key.
+ *
+ * @param <K> entity key type
+ * @param <T> context type
+ * @param <U> state id type
+ */
+public interface EntityStore<K, T, U> {
+
+    /**
+     * Gets the context of the entity.
+     *
+     * @param key the entity key
+     * @return the context
+     * @throws Exception if the context can't be loaded
+     */
+    T getContext(K key) throws Exception;
+
+    /**
+     * Gets the current state id of the entity.
+     *
+     * @param key the entity key
+     * @param context the context of the entity
+     * @return the current state id
+     * @throws Exception if the state id can't be loaded
+     */
+    U getStateId(K key, T context) throws Exception;
+
+    /**
+     * Saves the state id of the entity after a batch of events has been processed.
+     *
+     * @param key the entity key
+     * @param context the context of the entity
+     * @param stateId the new state id
+     * @throws Exception if the state id can't be saved
+     */
+    void saveStateId(K key, T context, U stateId) throws Exception;
+}
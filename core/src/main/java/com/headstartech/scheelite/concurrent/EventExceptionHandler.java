@@ -0,0 +1,18 @@
+package com.headstartech.scheelite.concurrent;
+
+/**
+ * Handles exceptions thrown when a {@link StateMachineExecutor} processes an event.
+ *
+ * @param <K> entity key type
+ */
+public interface EventExceptionHandler<K> {
+
+    /**
+     * Handles an exception thrown processing an event (or loading or saving the entity).
+     *
+     * @param key the entity key
+     * @param event the event being processed or <code>null</code> if the exception was thrown loading or saving the entity
+     * @param exception the exception
+     */
+    void handleException(K key, Object event, Exception exception);
+}
@@ -0,0 +1,326 @@
+package com.headstartech.scheelite.concurrent;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Processes events for many entities concurrently using a single {@link StateMachine}.
+ *
+ * Each entity key is hashed to one of a fixed number of lanes, each lane having a bounded queue and a single thread.
+ * Events for the same entity are therefore processed strictly in submission order while events for entities in
+ * different lanes are processed in parallel. A lane drains its queue in batches, loading and saving each entity once
+ * per batch using the {@link EntityStore}.
+ *
+ * An exception processing an event is passed to the {@link EventExceptionHandler} and processing continues with the
+ * next event, the state of the entity being the state before the failing event. An {@link Error} is passed wrapped in
+ * an {@link ExecutionException}, so a lane never dies while events are submitted to it.
+ *
+ * @param <K> entity key type
+ * @param <T> context type
+ * @param <U> state id type
+ */
+public class StateMachineExecutor<K, T, U> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StateMachineExecutor.class);
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final StateMachine<T, U> stateMachine;
+    private final EntityStore<K, T, U> entityStore;
+    private final EventExceptionHandler<? super K> exceptionHandler;
+    private final int maxBatchSize;
+    private final Lane[] lanes;
+    private final CountDownLatch terminated;
+    private volatile boolean shutdown;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private StateMachineExecutor(Builder<K, T, U> builder) {
+        this.stateMachine = builder.stateMachine;
+        this.entityStore = builder.entityStore;
+        this.exceptionHandler = builder.exceptionHandler;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.lanes = new StateMachineExecutor.Lane[builder.lanes];
+        this.terminated = new CountDownLatch(builder.lanes);
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(new ArrayBlockingQueue<Task<K>>(builder.queueCapacity));
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            builder.threadFactory.newThread(lanes[i]).start();
+        }
+    }
+
+    public static <K, T, U> Builder<K, T, U> newBuilder(StateMachine<T, U> stateMachine, EntityStore<K, T, U> entityStore) {
+        return new Builder<K, T, U>(stateMachine, entityStore);
+    }
+
+    /**
+     * Submits an event for an entity, waiting for space in the lane's queue if necessary.
+     *
+     * @param key the entity key
+     * @param event the event
+     * @throws InterruptedException if interrupted while waiting
+     * @throws RejectedExecutionException if the executor has been shut down
+     */
+    public void submit(K key, Object event) throws InterruptedException {
+        checkNotNull(key);
+        checkNotNull(event);
+        rejectIfShutdown();
+
+        Task<K> task = new Task<K>(key, event);
+        BlockingQueue<Task<K>> queue = getLane(key).queue;
+        queue.put(task);
+        revokeIfShutdown(queue, task);
+    }
+
+    /**
+     * Submits an event for an entity if there is space in the lane's queue.
+     *
+     * @param key the entity key
+     * @param event the event
+     * @return <code>true</code> if the event was submitted, <code>false</code> if the lane's queue is full
+     * @throws RejectedExecutionException if the executor has been shut down
+     */
+    public boolean trySubmit(K key, Object event) {
+        checkNotNull(key);
+        checkNotNull(event);
+        rejectIfShutdown();
+
+        Task<K> task = new Task<K>(key, event);
+        BlockingQueue<Task<K>> queue = getLane(key).queue;
+        if (!queue.offer(task)) {
+            return false;
+        }
+        revokeIfShutdown(queue, task);
+        return true;
+    }
+
+    /**
+     * Initiates an orderly shutdown, the events already submitted are processed but no new events are accepted.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Waits for all lanes to terminate after a shutdown.
+     *
+     * @return <code>true</code> if terminated, <code>false</code> if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    private Lane getLane(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return lanes[(h & Integer.MAX_VALUE) % lanes.length];
+    }
+
+    private void rejectIfShutdown() {
+        if (shutdown) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+    }
+
+    // a lane only terminates when shut down and its queue is empty, so if the task can still be removed it won't be processed
+    private void revokeIfShutdown(BlockingQueue<Task<K>> queue, Task<K> task) {
+        if (shutdown && queue.remove(task)) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        private static final long POLL_TIMEOUT_MILLIS = 100;
+
+        private final BlockingQueue<Task<K>> queue;
+        private final List<Task<K>> batch;
+        private final Map<K, List<Object>> eventsByKey;
+
+        private Lane(BlockingQueue<Task<K>> queue) {
+            this.queue = queue;
+            this.batch = Lists.newArrayListWithCapacity(maxBatchSize);
+            this.eventsByKey = Maps.newLinkedHashMap();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Task<K> first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (shutdown && queue.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    processBatch();
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                logger.warn("lane interrupted, remaining events not processed: events={}", queue.size());
+                Thread.currentThread().interrupt();
+            } finally {
+                terminated.countDown();
+            }
+        }
+
+        private void processBatch() {
+            // group by entity, keeping the order of the events for each entity
+            for (int i = 0; i < batch.size(); i++) {
+                Task<K> task = batch.get(i);
+                List<Object> events = eventsByKey.get(task.key);
+                if (events == null) {
+                    events = Lists.newArrayList();
+                    eventsByKey.put(task.key, events);
+                }
+                events.add(task.event);
+            }
+            for (Map.Entry<K, List<Object>> entry : eventsByKey.entrySet()) {
+                processEvents(entry.getKey(), entry.getValue());
+            }
+            eventsByKey.clear();
+        }
+
+        private void processEvents(K key, List<Object> events) {
+            T context;
+            U stateId;
+            try {
+                context = entityStore.getContext(key);
+                stateId = entityStore.getStateId(key, context);
+            } catch (Exception e) {
+                handleException(key, null, e);
+                return;
+            } catch (Error e) {
+                handleException(key, null, new ExecutionException(e));
+                return;
+            }
+            for (int i = 0; i < events.size(); i++) {
+                Object event = events.get(i);
+                try {
+                    stateId = stateMachine.processEvent(context, stateId, event);
+                } catch (Exception e) {
+                    handleException(key, event, e);
+                } catch (Error e) {
+                    handleException(key, event, new ExecutionException(e));
+                }
+            }
+            try {
+                entityStore.saveStateId(key, context, stateId);
+            } catch (Exception e) {
+                handleException(key, null, e);
+            } catch (Error e) {
+                handleException(key, null, new ExecutionException(e));
+            }
+        }
+
+        private void handleException(K key, Object event, Exception exception) {
+            try {
+                exceptionHandler.handleException(key, event, exception);
+            } catch (Throwable t) {
+                logger.error("exception handler failed: key={}", key, t);
+            }
+        }
+    }
+
+    private static final class Task<K> {
+        private final K key;
+        private final Object event;
+
+        private Task(K key, Object event) {
+            this.key = key;
+            this.event = event;
+        }
+    }
+
+    private static final class LoggingExceptionHandler implements EventExceptionHandler<Object> {
+
+        @Override
+        public void handleException(Object key, Object event, Exception exception) {
+            logger.error("exception processing event: key={}, event={}", key, event, exception);
+        }
+    }
+
+    /**
+     * Builder for {@link StateMachineExecutor}.
+     */
+    public static final class Builder<K, T, U> {
+
+        private final StateMachine<T, U> stateMachine;
+        private final EntityStore<K, T, U> entityStore;
+        private EventExceptionHandler<? super K> exceptionHandler = new LoggingExceptionHandler();
+        private int lanes = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private ThreadFactory threadFactory;
+
+        private Builder(StateMachine<T, U> stateMachine, EntityStore<K, T, U> entityStore) {
+            this.stateMachine = checkNotNull(stateMachine);
+            this.entityStore = checkNotNull(entityStore);
+        }
+
+        public Builder<K, T, U> withLanes(int lanes) {
+            checkArgument(lanes > 0, "lanes must be greater than zero");
+            this.lanes = lanes;
+            return this;
+        }
+
+        public Builder<K, T, U> withQueueCapacity(int queueCapacity) {
+            checkArgument(queueCapacity > 0, "queueCapacity must be greater than zero");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder<K, T, U> withMaxBatchSize(int maxBatchSize) {
+            checkArgument(maxBatchSize > 0, "maxBatchSize must be greater than zero");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public Builder<K, T, U> withExceptionHandler(EventExceptionHandler<? super K> exceptionHandler) {
+            this.exceptionHandler = checkNotNull(exceptionHandler);
+            return this;
+        }
+
+        public Builder<K, T, U> withThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = checkNotNull(threadFactory);
+            return this;
+        }
+
+        public StateMachineExecutor<K, T, U> build() {
+            if (threadFactory == null) {
+                threadFactory = new ThreadFactoryBuilder().setNameFormat("scheelite-lane-%d").setDaemon(true).build();
+            }
+            return new StateMachineExecutor<K, T, U>(this);
+        }
+    }
+}
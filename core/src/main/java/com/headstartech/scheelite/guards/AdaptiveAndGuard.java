@@ -0,0 +1,63 @@
+package com.headstartech.scheelite.guards;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.headstartech.scheelite.Guard;
+
+import java.util.List;
+
+/**
+ * Logical AND guard evaluating its components in an order adapted to their observed cost and selectivity.
+ *
+ * The components must be side-effect free and total (not throwing or relying on another component having been
+ * evaluated first), the result is then the same as for {@link AndGuard}.
+ */
+public class AdaptiveAndGuard<T> implements Guard<T> {
+
+    private static final Joiner COMMA_JOINER = Joiner.on(',');
+
+    private final List<? extends Guard<? super T>> components;
+    private final AdaptiveOrdering<T> ordering;
+
+    public AdaptiveAndGuard(List<? extends Guard<? super T>> components) {
+        this.components = components;
+        this.ordering = new AdaptiveOrdering<T>(components, false);
+    }
+
+    @Override
+    public boolean evaluate(T context, Optional<?> event) throws Exception {
+        return !ordering.evaluate(context, event);
+    }
+
+    public List<? extends Guard<? super T>> getComponents() {
+        return Lists.newArrayList(components);  // defensive copy
+    }
+
+    /**
+     * Gets the current evaluation order, as indexes of the components.
+     */
+    int[] getOrder() {
+        return ordering.getOrder();
+    }
+
+    @Override
+    public int hashCode() {
+        // add a random number to avoid collisions with AndGuard and the other adaptive guard
+        return components.hashCode() + 0x6e1f5a93;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof AdaptiveAndGuard) {
+            AdaptiveAndGuard<?> that = (AdaptiveAndGuard<?>) obj;
+            return components.equals(that.components);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Guards.adaptiveAnd(" + COMMA_JOINER.join(components) + ")";
+    }
+}
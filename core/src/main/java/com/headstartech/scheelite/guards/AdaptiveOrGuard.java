@@ -0,0 +1,63 @@
+package com.headstartech.scheelite.guards;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.headstartech.scheelite.Guard;
+
+import java.util.List;
+
+/**
+ * Logical OR guard evaluating its components in an order adapted to their observed cost and selectivity.
+ *
+ * The components must be side-effect free and total (not throwing or relying on another component having been
+ * evaluated first), the result is then the same as for {@link OrGuard}.
+ */
+public class AdaptiveOrGuard<T> implements Guard<T> {
+
+    private static final Joiner COMMA_JOINER = Joiner.on(',');
+
+    private final List<? extends Guard<? super T>> components;
+    private final AdaptiveOrdering<T> ordering;
+
+    public AdaptiveOrGuard(List<? extends Guard<? super T>> components) {
+        this.components = components;
+        this.ordering = new AdaptiveOrdering<T>(components, true);
+    }
+
+    @Override
+    public boolean evaluate(T context, Optional<?> event) throws Exception {
+        return ordering.evaluate(context, event);
+    }
+
+    public List<? extends Guard<? super T>> getComponents() {
+        return Lists.newArrayList(components);  // defensive copy
+    }
+
+    /**
+     * Gets the current evaluation order, as indexes of the components.
+     */
+    int[] getOrder() {
+        return ordering.getOrder();
+    }
+
+    @Override
+    public int hashCode() {
+        // add a random number to avoid collisions with OrGuard and the other adaptive guard
+        return components.hashCode() + 0x2d8b47e1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof AdaptiveOrGuard) {
+            AdaptiveOrGuard<?> that = (AdaptiveOrGuard<?>) obj;
+            return components.equals(that.components);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Guards.adaptiveOr(" + COMMA_JOINER.join(components) + ")";
+    }
+}
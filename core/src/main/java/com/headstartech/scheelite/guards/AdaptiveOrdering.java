@@ -0,0 +1,148 @@
+package com.headstartech.scheelite.guards;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.Guard;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Evaluates the components of a logical guard in an order adapted to their observed cost and selectivity.
+ *
+ * A component is decisive when its result decides the result of the logical guard (<code>false</code> for AND,
+ * <code>true</code> for OR). The first evaluations and then every {@value #SAMPLE_INTERVAL}:th evaluation are
+ * sampled: the components are timed while evaluated in the current order, stopping at the first decisive component
+ * like any other evaluation. The components are reordered by their average cost divided by the probability of being
+ * decisive, i.e. cheap, decisive components first, a component not sampled yet being tried first. The statistics
+ * decay, so the order follows changes in the workload.
+ *
+ * The result is the same as in declaration order as long as the components are side-effect free and total, i.e. a
+ * component must not throw or rely on another component having been evaluated before it.
+ */
+final class AdaptiveOrdering<T> {
+
+    static final int SAMPLE_INTERVAL = 1024;
+    private static final int WARMUP_EVALUATIONS = 32;
+    private static final long MAX_SAMPLES = 1024;
+
+    private final Guard<? super T>[] components;
+    private final boolean decisiveResult;
+    private final long[] samples;
+    private final long[] decisiveSamples;
+    private final long[] nanos;
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private volatile int[] order;
+    private int evaluations;  // updated racily, only used to pick the evaluations to sample
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    AdaptiveOrdering(List<? extends Guard<? super T>> components, boolean decisiveResult) {
+        this.components = components.toArray(new Guard[components.size()]);
+        this.decisiveResult = decisiveResult;
+        this.samples = new long[this.components.length];
+        this.decisiveSamples = new long[this.components.length];
+        this.nanos = new long[this.components.length];
+        int[] initialOrder = new int[this.components.length];
+        for (int i = 0; i < initialOrder.length; i++) {
+            initialOrder[i] = i;
+        }
+        this.order = initialOrder;
+    }
+
+    /**
+     * Evaluates the components until a decisive result is found.
+     *
+     * @return <code>true</code> if a component was decisive
+     */
+    boolean evaluate(T context, Optional<?> event) throws Exception {
+        int n = ++evaluations;
+        if ((n > 0 && n <= WARMUP_EVALUATIONS) || (n & (SAMPLE_INTERVAL - 1)) == 0) {
+            return evaluateSampled(context, event);
+        }
+        int[] currentOrder = order;
+        for (int i = 0; i < currentOrder.length; i++) {
+            if (components[currentOrder[i]].evaluate(context, event) == decisiveResult) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the current evaluation order, as indexes of the components.
+     */
+    int[] getOrder() {
+        return order.clone();
+    }
+
+    private boolean evaluateSampled(T context, Optional<?> event) throws Exception {
+        int[] currentOrder = order;
+        boolean[] results = new boolean[components.length];
+        long[] elapsed = new long[components.length];
+        int evaluated = 0;
+        boolean decisive = false;
+        while (evaluated < currentOrder.length && !decisive) {
+            int c = currentOrder[evaluated++];
+            long start = System.nanoTime();
+            results[c] = components[c].evaluate(context, event);
+            elapsed[c] = System.nanoTime() - start;
+            decisive = results[c] == decisiveResult;
+        }
+        update(currentOrder, evaluated, results, elapsed);
+        return decisive;
+    }
+
+    // a sample is dropped rather than waiting for another thread updating, so evaluating never blocks
+    private void update(int[] sampledOrder, int evaluated, boolean[] results, long[] elapsed) {
+        if (!updateLock.tryLock()) {
+            return;
+        }
+        try {
+            updateStatistics(sampledOrder, evaluated, results, elapsed);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void updateStatistics(int[] sampledOrder, int evaluated, boolean[] results, long[] elapsed) {
+        for (int i = 0; i < evaluated; i++) {
+            int c = sampledOrder[i];
+            if (samples[c] >= MAX_SAMPLES) {
+                samples[c] /= 2;
+                decisiveSamples[c] /= 2;
+                nanos[c] /= 2;
+            }
+            ++samples[c];
+            if (results[c] == decisiveResult) {
+                ++decisiveSamples[c];
+            }
+            nanos[c] += elapsed[c];
+        }
+
+        final double[] rank = new double[components.length];
+        Integer[] newOrder = new Integer[components.length];
+        for (int c = 0; c < components.length; c++) {
+            newOrder[c] = c;
+            if (samples[c] == 0) {
+                // not reached by a sample yet, try it first
+                continue;
+            }
+            // average cost over the (smoothed) probability of being decisive
+            double averageNanos = (double) nanos[c] / samples[c];
+            double decisiveProbability = (decisiveSamples[c] + 1.0) / (samples[c] + 2.0);
+            rank[c] = averageNanos / decisiveProbability;
+        }
+        Arrays.sort(newOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(rank[o1], rank[o2]);
+            }
+        });
+        int[] res = new int[components.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = newOrder[i];
+        }
+        order = res;
+    }
+}
@@ -0,0 +1,87 @@
+package com.headstartech.scheelite.metrics;
+
+/**
+ * Immutable snapshot of a {@link LatencyHistogram}. All values are in nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long total;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long total, long max) {
+        this.counts = counts;
+        long sum = 0;
+        for (long c : counts) {
+            sum += c;
+        }
+        this.count = sum;
+        this.total = total;
+        this.max = max;
+    }
+
+    /**
+     * Gets the number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of the recorded values.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the mean of the recorded values or <code>0</code> if no values are recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) total / count;
+    }
+
+    /**
+     * Gets the value at the specified percentile, i.e. the upper bound of the bucket holding the value (but not
+     * larger than the largest recorded value).
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value or <code>0</code> if no values are recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException(String.format("percentile must be between 0 and 100: percentile=%s", percentile));
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.getUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{" +
+                "count=" + count +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50.0) +
+                ", p99=" + getValueAtPercentile(99.0) +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,119 @@
+package com.headstartech.scheelite.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.headstartech.scheelite.State;
+import com.headstartech.scheelite.StateMachineConfiguration;
+import com.headstartech.scheelite.StateMachineListenerAdapter;
+import com.headstartech.scheelite.Transition;
+import com.headstartech.scheelite.TransitionType;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Listener recording per-transition and per-state latencies in lock-free histograms.
+ *
+ * The histograms are created up front for all states and transitions of the configuration, so recording never
+ * allocates or locks. Registered by {@link com.headstartech.scheelite.StateMachineBuilder#withMetrics()}.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+public final class MetricsRecorder<T, U> extends StateMachineListenerAdapter<T, U> {
+
+    private final ImmutableMap<Transition<T, U>, TransitionRecorder> transitionRecorders;
+    private final ImmutableMap<U, StateRecorder> stateRecorders;
+
+    public MetricsRecorder(StateMachineConfiguration<T, U> configuration) {
+        checkNotNull(configuration);
+
+        ImmutableMap.Builder<Transition<T, U>, TransitionRecorder> transitions = ImmutableMap.builder();
+        for (Transition<T, U> transition : configuration.getTransitions()) {
+            if (!TransitionType.INITIAL.equals(transition.getTransitionType())) {
+                transitions.put(transition, new TransitionRecorder());
+            }
+        }
+        this.transitionRecorders = transitions.build();
+
+        ImmutableMap.Builder<U, StateRecorder> states = ImmutableMap.builder();
+        for (State<T, U> state : configuration.getStates()) {
+            if (!state.equals(configuration.getRootState())) {
+                states.put(state.getId(), new StateRecorder());
+            }
+        }
+        this.stateRecorders = states.build();
+    }
+
+    /**
+     * Gets a snapshot of the metrics recorded so far, without blocking recording.
+     *
+     * @return the snapshot
+     */
+    public StateMachineMetrics<T, U> getMetrics() {
+        Map<Transition<T, U>, TransitionMetrics> transitions = Maps.newLinkedHashMap();
+        for (Map.Entry<Transition<T, U>, TransitionRecorder> entry : transitionRecorders.entrySet()) {
+            TransitionRecorder recorder = entry.getValue();
+            transitions.put(entry.getKey(), new TransitionMetrics(recorder.execution.getSnapshot(),
+                    recorder.guard.getSnapshot(), recorder.action.getSnapshot()));
+        }
+        Map<U, StateMetrics> states = Maps.newLinkedHashMap();
+        for (Map.Entry<U, StateRecorder> entry : stateRecorders.entrySet()) {
+            StateRecorder recorder = entry.getValue();
+            states.put(entry.getKey(), new StateMetrics(recorder.entry.getSnapshot(), recorder.exit.getSnapshot()));
+        }
+        return new StateMachineMetrics<T, U>(transitions, states);
+    }
+
+    @Override
+    public void guardEvaluated(T context, Transition<T, U> transition, boolean result, long durationNanos) {
+        TransitionRecorder recorder = transitionRecorders.get(transition);
+        if (recorder != null) {
+            recorder.guard.record(durationNanos);
+        }
+    }
+
+    @Override
+    public void actionExecuted(T context, Transition<T, U> transition, long durationNanos) {
+        TransitionRecorder recorder = transitionRecorders.get(transition);
+        if (recorder != null) {
+            recorder.action.record(durationNanos);
+        }
+    }
+
+    @Override
+    public void transitionExecuted(T context, U sourceStateId, Transition<T, U> transition, long durationNanos) {
+        TransitionRecorder recorder = transitionRecorders.get(transition);
+        if (recorder != null) {
+            recorder.execution.record(durationNanos);
+        }
+    }
+
+    @Override
+    public void stateExited(T context, U stateId, long durationNanos) {
+        StateRecorder recorder = stateRecorders.get(stateId);
+        if (recorder != null) {
+            recorder.exit.record(durationNanos);
+        }
+    }
+
+    @Override
+    public void stateEntered(T context, U stateId, long durationNanos) {
+        StateRecorder recorder = stateRecorders.get(stateId);
+        if (recorder != null) {
+            recorder.entry.record(durationNanos);
+        }
+    }
+
+    private static final class TransitionRecorder {
+        private final LatencyHistogram execution = new LatencyHistogram();
+        private final LatencyHistogram guard = new LatencyHistogram();
+        private final LatencyHistogram action = new LatencyHistogram();
+    }
+
+    private static final class StateRecorder {
+        private final LatencyHistogram entry = new LatencyHistogram();
+        private final LatencyHistogram exit = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,47 @@
+package com.headstartech.scheelite.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import com.headstartech.scheelite.Transition;
+
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the metrics of a state machine.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ *
+ * @see com.headstartech.scheelite.StateMachineBuilder#withMetrics()
+ */
+public final class StateMachineMetrics<T, U> {
+
+    private final ImmutableMap<Transition<T, U>, TransitionMetrics> transitionMetrics;
+    private final ImmutableMap<U, StateMetrics> stateMetrics;
+
+    StateMachineMetrics(Map<Transition<T, U>, TransitionMetrics> transitionMetrics, Map<U, StateMetrics> stateMetrics) {
+        this.transitionMetrics = ImmutableMap.copyOf(transitionMetrics);
+        this.stateMetrics = ImmutableMap.copyOf(stateMetrics);
+    }
+
+    /**
+     * Gets the metrics of each transition (excluding initial transitions).
+     */
+    public Map<Transition<T, U>, TransitionMetrics> getTransitionMetrics() {
+        return transitionMetrics;
+    }
+
+    /**
+     * Gets the metrics of each state, keyed by state id.
+     */
+    public Map<U, StateMetrics> getStateMetrics() {
+        return stateMetrics;
+    }
+
+    @Override
+    public String toString() {
+        return "StateMachineMetrics{" +
+                "transitionMetrics=" + transitionMetrics +
+                ", stateMetrics=" + stateMetrics +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.headstartech.scheelite.metrics;
+
+/**
+ * Immutable metrics of a state.
+ */
+public final class StateMetrics {
+
+    private final HistogramSnapshot entryLatency;
+    private final HistogramSnapshot exitLatency;
+
+    StateMetrics(HistogramSnapshot entryLatency, HistogramSnapshot exitLatency) {
+        this.entryLatency = entryLatency;
+        this.exitLatency = exitLatency;
+    }
+
+    /**
+     * Gets the latency of {@link com.headstartech.scheelite.State#onEntry(Object)}.
+     */
+    public HistogramSnapshot getEntryLatency() {
+        return entryLatency;
+    }
+
+    /**
+     * Gets the latency of {@link com.headstartech.scheelite.State#onExit(Object)}.
+     */
+    public HistogramSnapshot getExitLatency() {
+        return exitLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "StateMetrics{" +
+                "entryLatency=" + entryLatency +
+                ", exitLatency=" + exitLatency +
+                '}';
+    }
+}
@@ -0,0 +1,54 @@
+package com.headstartech.scheelite.metrics;
+
+/**
+ * Immutable metrics of a transition.
+ */
+public final class TransitionMetrics {
+
+    private final HistogramSnapshot executionLatency;
+    private final HistogramSnapshot guardLatency;
+    private final HistogramSnapshot actionLatency;
+
+    TransitionMetrics(HistogramSnapshot executionLatency, HistogramSnapshot guardLatency, HistogramSnapshot actionLatency) {
+        this.executionLatency = executionLatency;
+        this.guardLatency = guardLatency;
+        this.actionLatency = actionLatency;
+    }
+
+    /**
+     * Gets the number of times the transition was executed.
+     */
+    public long getCount() {
+        return executionLatency.getCount();
+    }
+
+    /**
+     * Gets the latency of executing the transition (exiting states, executing the action and entering states).
+     */
+    public HistogramSnapshot getExecutionLatency() {
+        return executionLatency;
+    }
+
+    /**
+     * Gets the latency of evaluating the guard of the transition, recorded each time the guard is evaluated.
+     */
+    public HistogramSnapshot getGuardLatency() {
+        return guardLatency;
+    }
+
+    /**
+     * Gets the latency of executing the action of the transition.
+     */
+    public HistogramSnapshot getActionLatency() {
+        return actionLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionMetrics{" +
+                "executionLatency=" + executionLatency +
+                ", guardLatency=" + guardLatency +
+                ", actionLatency=" + actionLatency +
+                '}';
+    }
+}
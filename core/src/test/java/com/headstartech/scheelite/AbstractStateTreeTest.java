@@ -395,4 +395,27 @@ public class AbstractStateTreeTest extends TestBase {
         assertEquals(res.get(2), stateB);
     }
 
+
+    @Test
+    public void isParentAfterSuperStateChanged() {
+        // given
+        MutableStateTree<TestEntity, StateId> tree = new MutableStateTree<TestEntity, StateId>();
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        tree.addState(c);
+        tree.addState(b, a);
+
+        // when
+        tree.addState(c, a);
+        tree.addState(b, c);
+
+        // then
+        assertTrue(tree.isParent(a));
+        assertTrue(tree.isParent(c));
+        assertFalse(tree.isParent(b));
+        assertTrue(tree.isAncestorOf(a, b));
+        assertTrue(tree.isDescendantOf(b, a));
+        assertFalse(tree.isAncestorOf(b, c));
+    }
 }
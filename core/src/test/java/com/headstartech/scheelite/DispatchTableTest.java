@@ -0,0 +1,269 @@
+package com.headstartech.scheelite;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.test.TestBase;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class DispatchTableTest extends TestBase {
+
+    @Test
+    public void getCandidatesOrderedFromCurrentStateToRoot() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        List<CompiledTransition<TestEntity, StateId>> res = table.getCandidates(b, new TestEventX()).getTransitions();
+
+        // then
+        assertEquals(res.size(), 2);
+        assertEquals(res.get(0).getTransition(), fromB);
+        assertEquals(res.get(1).getTransition(), fromA);
+    }
+
+    @Test
+    public void getCandidatesFiltersOnEventClass() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, TestEventY.class, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        List<CompiledTransition<TestEntity, StateId>> res = table.getCandidates(b, new TestEventY()).getTransitions();
+
+        // then
+        assertEquals(res.size(), 1);
+        assertEquals(res.get(0).getTransition(), fromA);
+    }
+
+    @Test
+    public void getCandidatesForEventSubclass() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, Object.class, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        List<CompiledTransition<TestEntity, StateId>> res = table.getCandidates(b, new SubTestEventX()).getTransitions();
+
+        // then
+        assertEquals(res.size(), 2);
+        assertEquals(res.get(0).getTransition(), fromB);
+        assertEquals(res.get(1).getTransition(), fromA);
+    }
+
+    @Test
+    public void getCandidatesForEventImplementingInterface() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, EventMarker.class, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        List<CompiledTransition<TestEntity, StateId>> res = table.getCandidates(b, new MarkedTestEventY()).getTransitions();
+
+        // then
+        assertEquals(res.size(), 1);
+        assertEquals(res.get(0).getTransition(), fromA);
+    }
+
+    @Test
+    public void getCandidatesForEventSubclassCached() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, Object.class, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        List<CompiledTransition<TestEntity, StateId>> first = table.getCandidates(b, new SubTestEventX()).getTransitions();
+        List<CompiledTransition<TestEntity, StateId>> second = table.getCandidates(b, new SubTestEventX()).getTransitions();
+
+        // then
+        assertSame(first, second);
+    }
+
+    @Test
+    public void getCandidatesWithoutEvent() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, null, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        List<CompiledTransition<TestEntity, StateId>> res = table.getCandidates(b, null).getTransitions();
+
+        // then
+        assertEquals(res.size(), 1);
+        assertEquals(res.get(0).getTransition(), fromA);
+    }
+
+    @Test
+    public void getCandidatesExcludesInitialTransitions() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> initial = new Transition<TestEntity, StateId>(a, b, TransitionType.INITIAL, null, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, initial, fromB);
+
+        // when
+        List<CompiledTransition<TestEntity, StateId>> res = table.getCandidates(b, null).getTransitions();
+
+        // then
+        assertTrue(res.isEmpty());
+    }
+
+    @Test
+    public void getCandidatesCompiledForState() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        Transition<TestEntity, StateId> fromC = new Transition<TestEntity, StateId>(c, b, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromC);
+
+        // when
+        CompiledTransition<TestEntity, StateId> fromB = table.getCandidates(b, new TestEventX()).getTransitions().get(0);
+        CompiledTransition<TestEntity, StateId> toB = table.getCandidates(c, new TestEventX()).getTransitions().get(0);
+
+        // then
+        assertEquals(fromB.getExitStates().size(), 2);
+        assertEquals(fromB.getExitStates().get(0), b);
+        assertEquals(fromB.getExitStates().get(1), a);
+        assertEquals(fromB.getEntryStates().size(), 1);
+        assertEquals(fromB.getEntryStates().get(0), c);
+        assertEquals(toB.getExitStates().size(), 1);
+        assertEquals(toB.getExitStates().get(0), c);
+        assertEquals(toB.getEntryStates().size(), 2);
+        assertEquals(toB.getEntryStates().get(0), a);
+        assertEquals(toB.getEntryStates().get(1), b);
+    }
+
+    @Test
+    public void getCandidatesUnconditionalForSingleUnguardedTransition() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, TestEventY.class, new AlwaysAcceptTestGuard(), null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        CandidateTransitions<TestEntity, StateId> unguarded = table.getCandidates(b, new TestEventX());
+        CandidateTransitions<TestEntity, StateId> guarded = table.getCandidates(b, new TestEventY());
+
+        // then
+        assertEquals(unguarded.getUnconditionalTransition().getTransition(), fromB);
+        assertFalse(unguarded.isEventRequired());
+        assertNull(guarded.getUnconditionalTransition());
+        assertTrue(guarded.isEventRequired());
+    }
+
+    @Test
+    public void getCandidatesEventRequiredForAction() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, TestEventX.class, null, new TestAction());
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB);
+
+        // when
+        CandidateTransitions<TestEntity, StateId> res = table.getCandidates(b, new TestEventX());
+
+        // then
+        assertNull(res.getUnconditionalTransition());
+        assertTrue(res.isEventRequired());
+    }
+
+    @Test
+    public void getCandidatesEvaluatedByDispatcher() {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        Transition<TestEntity, StateId> fromA = new Transition<TestEntity, StateId>(a, c, TransitionType.EXTERNAL, TestEventY.class, null, null);
+        Transition<TestEntity, StateId> fromB = new Transition<TestEntity, StateId>(b, c, TransitionType.EXTERNAL, TestEventX.class, null, null);
+        DispatcherFactory dispatcherFactory = new DispatcherFactory() {
+            @Override
+            public <T> Dispatcher<T> createDispatcher(List<DispatchCandidate<T>> candidates, boolean firstMatch) {
+                return new Dispatcher<T>() {
+                    @Override
+                    public long dispatch(T context, Object event, Optional<?> eventOpt) {
+                        return 0;
+                    }
+                };
+            }
+        };
+        DispatchTable<TestEntity, StateId> table = createTable(a, b, c, fromA, fromB, dispatcherFactory);
+
+        // when
+        CandidateTransitions<TestEntity, StateId> res = table.getCandidates(b, new TestEventY());
+
+        // then
+        assertNotNull(res.getDispatcher());
+        assertEquals(res.getTransitions().size(), 2);
+        assertEquals(res.getTransitions().get(0).getTransition(), fromB);
+        assertEquals(res.getTransitions().get(1).getTransition(), fromA);
+        assertNull(res.getUnconditionalTransition());
+    }
+
+    // b is a sub state of a, c is a top level state
+    private DispatchTable<TestEntity, StateId> createTable(TestState a, TestState b, TestState c,
+                                                           Transition<TestEntity, StateId> first, Transition<TestEntity, StateId> second) {
+        return createTable(a, b, c, first, second, null);
+    }
+
+    private DispatchTable<TestEntity, StateId> createTable(TestState a, TestState b, TestState c,
+                                                           Transition<TestEntity, StateId> first, Transition<TestEntity, StateId> second,
+                                                           DispatcherFactory dispatcherFactory) {
+        MutableStateTree<TestEntity, StateId> tree = new MutableStateTree<TestEntity, StateId>();
+        tree.addState(b, a);
+        tree.addState(c);
+        MutableTransitionMap<TestEntity, StateId> transitionMap = new MutableTransitionMap<TestEntity, StateId>();
+        transitionMap.addTransition(first);
+        transitionMap.addTransition(second);
+        return new DispatchTable<TestEntity, StateId>(tree, transitionMap, null, null, dispatcherFactory);
+    }
+
+    public class SubTestEventX extends TestEventX {
+    }
+
+    public interface EventMarker {
+    }
+
+    public class MarkedTestEventY extends TestEventY implements EventMarker {
+    }
+}
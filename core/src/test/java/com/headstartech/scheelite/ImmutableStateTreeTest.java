@@ -0,0 +1,202 @@
+package com.headstartech.scheelite;
+
+import com.headstartech.scheelite.test.TestBase;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class ImmutableStateTreeTest extends TestBase {
+
+    @Test
+    public void findStateWhenStateExists() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        mutableTree.addState(stateB, stateA);
+
+        // when
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // then
+        assertEquals(tree.findState(StateId.A), stateA);
+        assertEquals(tree.findState(StateId.B), stateB);
+        assertEquals(tree.getState(StateId.B).get(), stateB);
+    }
+
+    @Test
+    public void findStateWhenNotExists() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        mutableTree.addState(new TestState(StateId.A));
+
+        // when
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // then
+        assertNull(tree.findState(StateId.B));
+        assertFalse(tree.getState(StateId.B).isPresent());
+    }
+
+    @Test
+    public void ordinalsAreDense() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        TestState stateC = new TestState(StateId.C);
+        mutableTree.addState(stateB, stateA);
+        mutableTree.addState(stateC);
+
+        // when
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // then
+        assertEquals(tree.getStateCount(), 4);
+        assertEquals(tree.getOrdinal(tree.getRootState()), 0);
+        boolean[] seen = new boolean[tree.getStateCount()];
+        for (State<TestEntity, StateId> state : tree.getStates()) {
+            int ordinal = tree.getOrdinal(state);
+            assertEquals(tree.getState(ordinal), state);
+            seen[ordinal] = true;
+        }
+        for (int i = 1; i < seen.length; i++) {
+            assertTrue(seen[i]);
+        }
+    }
+
+    @Test
+    public void ordinalOfParentLowerThanChild() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        TestState stateC = new TestState(StateId.C);
+        mutableTree.addState(stateC, stateB);
+        mutableTree.addState(stateB, stateA);
+
+        // when
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // then
+        assertTrue(tree.getOrdinal(stateA) < tree.getOrdinal(stateB));
+        assertTrue(tree.getOrdinal(stateB) < tree.getOrdinal(stateC));
+    }
+
+    @Test
+    public void depthOfStates() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        mutableTree.addState(stateB, stateA);
+
+        // when
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // then
+        assertEquals(tree.getDepth(tree.getRootState()), 0);
+        assertEquals(tree.getDepth(stateA), 1);
+        assertEquals(tree.getDepth(stateB), 2);
+    }
+
+    @Test
+    public void getLowestCommonAncestorWhenSiblingSubtrees() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        TestState stateC = new TestState(StateId.C);
+        TestState stateD = new TestState(StateId.D);
+        TestState stateE = new TestState(StateId.E);
+        mutableTree.addState(stateB, stateA);
+        mutableTree.addState(stateC, stateB);
+        mutableTree.addState(stateD, stateA);
+        mutableTree.addState(stateE);
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // when/then
+        assertEquals(tree.getLowestCommonAncestor(stateC, stateD), stateA);
+        assertEquals(tree.getLowestCommonAncestor(stateD, stateC), stateA);
+        assertEquals(tree.getLowestCommonAncestor(stateC, stateB), stateB);
+        assertEquals(tree.getLowestCommonAncestor(stateC, stateC), stateC);
+        assertEquals(tree.getLowestCommonAncestor(stateC, stateE), tree.getRootState());
+    }
+
+    @Test
+    public void isAncestorOfAndDescendantOf() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        TestState stateC = new TestState(StateId.C);
+        mutableTree.addState(stateB, stateA);
+        mutableTree.addState(stateC);
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // when/then
+        assertTrue(tree.isAncestorOf(stateA, stateB));
+        assertTrue(tree.isAncestorOf(stateA, stateA));
+        assertFalse(tree.isAncestorOf(stateB, stateA));
+        assertFalse(tree.isAncestorOf(stateC, stateB));
+        assertTrue(tree.isDescendantOf(stateB, stateA));
+        assertFalse(tree.isDescendantOf(stateA, stateB));
+    }
+
+    @Test
+    public void getPathToAncestor() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        TestState stateC = new TestState(StateId.C);
+        mutableTree.addState(stateB, stateA);
+        mutableTree.addState(stateC, stateB);
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // when
+        List<State<TestEntity, StateId>> exclude = tree.getPathToAncestor(stateC, stateA, false);
+        List<State<TestEntity, StateId>> include = tree.getPathToAncestor(stateC, stateA, true);
+        List<State<TestEntity, StateId>> toRoot = tree.getPathToAncestor(stateC, tree.getRootState(), false);
+
+        // then
+        assertEquals(exclude.size(), 2);
+        assertEquals(exclude.get(0), stateC);
+        assertEquals(exclude.get(1), stateB);
+        assertEquals(include.size(), 3);
+        assertEquals(include.get(2), stateA);
+        assertEquals(toRoot.size(), 3);
+        assertEquals(toRoot.get(2), stateA);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getPathToAncestorWhenNotRelated() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        TestState stateA = new TestState(StateId.A);
+        TestState stateB = new TestState(StateId.B);
+        mutableTree.addState(stateA);
+        mutableTree.addState(stateB);
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // when
+        tree.getPathToAncestor(stateA, stateB, true);
+
+        // then ... exception should be thrown
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getOrdinalWhenNotExists() {
+        // given
+        MutableStateTree<TestEntity, StateId> mutableTree = new MutableStateTree<TestEntity, StateId>();
+        mutableTree.addState(new TestState(StateId.A));
+        ImmutableStateTree<TestEntity, StateId> tree = new ImmutableStateTree<TestEntity, StateId>(mutableTree);
+
+        // when
+        tree.getOrdinal(new TestState(StateId.B));
+
+        // then ... exception should be thrown
+    }
+}
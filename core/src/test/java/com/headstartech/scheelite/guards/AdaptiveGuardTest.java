@@ -0,0 +1,158 @@
+package com.headstartech.scheelite.guards;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.headstartech.scheelite.Guard;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+public class AdaptiveGuardTest {
+
+    @Test
+    public void resultIsSameAsInDeclarationOrder() throws Exception {
+        // given
+        List<ModuloGuard> components = ImmutableList.of(new ModuloGuard(2), new ModuloGuard(3), new ModuloGuard(5));
+        AdaptiveAndGuard<int[]> adaptiveAnd = new AdaptiveAndGuard<int[]>(components);
+        AdaptiveOrGuard<int[]> adaptiveOr = new AdaptiveOrGuard<int[]>(components);
+        AndGuard<int[]> and = new AndGuard<int[]>(components);
+        OrGuard<int[]> or = new OrGuard<int[]>(components);
+
+        for (int i = 0; i < 3 * AdaptiveOrdering.SAMPLE_INTERVAL; i++) {
+            // when
+            int[] context = { i };
+
+            // then
+            assertEquals(adaptiveAnd.evaluate(context, Optional.absent()), and.evaluate(context, Optional.absent()));
+            assertEquals(adaptiveOr.evaluate(context, Optional.absent()), or.evaluate(context, Optional.absent()));
+        }
+    }
+
+    @Test
+    public void cheapDecisiveComponentIsEvaluatedFirst() throws Exception {
+        // given
+        AdaptiveAndGuard<int[]> and = new AdaptiveAndGuard<int[]>(ImmutableList.of(new SlowGuard(true), new SlowGuard(false), new FastGuard(false)));
+        AdaptiveOrGuard<int[]> or = new AdaptiveOrGuard<int[]>(ImmutableList.of(new SlowGuard(false), new SlowGuard(true), new FastGuard(true)));
+
+        // when
+        for (int i = 0; i < 2 * AdaptiveOrdering.SAMPLE_INTERVAL; i++) {
+            and.evaluate(new int[] { i }, Optional.absent());
+            or.evaluate(new int[] { i }, Optional.absent());
+        }
+
+        // then
+        assertEquals(and.getOrder()[0], 2);
+        assertEquals(or.getOrder()[0], 2);
+    }
+
+    @Test
+    public void sampledEvaluationStopsAtDecisiveComponent() throws Exception {
+        // given ... every component is decisive
+        CountingGuard first = new CountingGuard(false);
+        CountingGuard second = new CountingGuard(false);
+        AdaptiveAndGuard<int[]> and = new AdaptiveAndGuard<int[]>(ImmutableList.of(first, second));
+        int evaluations = 2 * AdaptiveOrdering.SAMPLE_INTERVAL;
+
+        // when
+        for (int i = 0; i < evaluations; i++) {
+            and.evaluate(new int[] { i }, Optional.absent());
+        }
+
+        // then ... a single component evaluated every time, including the sampled evaluations
+        assertEquals(first.count + second.count, evaluations);
+    }
+
+    @Test
+    public void toStringNamesAdaptiveGuard() {
+        // given
+        AdaptiveAndGuard<int[]> and = new AdaptiveAndGuard<int[]>(ImmutableList.of(new FastGuard(true)));
+
+        // when
+        String res = and.toString();
+
+        // then
+        assertEquals(res, "Guards.adaptiveAnd(fast)");
+    }
+
+    @Test
+    public void notEqualToNonAdaptiveGuard() {
+        // given
+        List<FastGuard> components = ImmutableList.of(new FastGuard(true), new FastGuard(false));
+
+        // then
+        assertEquals(new AdaptiveAndGuard<int[]>(components), new AdaptiveAndGuard<int[]>(components));
+        assertEquals(new AdaptiveOrGuard<int[]>(components), new AdaptiveOrGuard<int[]>(components));
+        assertNotEquals(new AdaptiveAndGuard<int[]>(components), new AndGuard<int[]>(components));
+        assertNotEquals(new AndGuard<int[]>(components), new AdaptiveAndGuard<int[]>(components));
+        assertNotEquals(new AdaptiveOrGuard<int[]>(components), new OrGuard<int[]>(components));
+        assertNotEquals(new OrGuard<int[]>(components), new AdaptiveOrGuard<int[]>(components));
+        assertNotEquals(new AdaptiveAndGuard<int[]>(components), new AdaptiveOrGuard<int[]>(components));
+    }
+
+    private static class ModuloGuard implements Guard<int[]> {
+
+        private final int divisor;
+
+        private ModuloGuard(int divisor) {
+            this.divisor = divisor;
+        }
+
+        @Override
+        public boolean evaluate(int[] context, Optional<?> event) {
+            return context[0] % divisor == 0;
+        }
+    }
+
+    private static class FastGuard implements Guard<int[]> {
+
+        private final boolean result;
+
+        private FastGuard(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean evaluate(int[] context, Optional<?> event) {
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "fast";
+        }
+    }
+
+    private static class CountingGuard extends FastGuard {
+
+        private int count;
+
+        private CountingGuard(boolean result) {
+            super(result);
+        }
+
+        @Override
+        public boolean evaluate(int[] context, Optional<?> event) {
+            ++count;
+            return super.evaluate(context, event);
+        }
+    }
+
+    private static class SlowGuard extends FastGuard {
+
+        private SlowGuard(boolean result) {
+            super(result);
+        }
+
+        @Override
+        public boolean evaluate(int[] context, Optional<?> event) {
+            long end = System.nanoTime() + 20000;
+            while (System.nanoTime() < end) {
+                // busy wait
+            }
+            return super.evaluate(context, event);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.headstartech.scheelite.metrics;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundsContainValue() {
+        // given
+        long[] values = {0, 1, 7, 8, 15, 16, 17, 100, 1000, 123456, 987654321L, 1L << 36};
+
+        // when/then
+        for (long value : values) {
+            int bucket = LatencyHistogram.getBucket(value);
+            assertTrue(LatencyHistogram.getLowerBound(bucket) <= value, "value=" + value);
+            assertTrue(LatencyHistogram.getUpperBound(bucket) >= value, "value=" + value);
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            assertEquals(LatencyHistogram.getUpperBound(i) + 1, LatencyHistogram.getLowerBound(i + 1));
+            assertEquals(LatencyHistogram.getBucket(LatencyHistogram.getLowerBound(i)), i);
+        }
+    }
+
+    @Test
+    public void largeValuesInLastBucket() {
+        assertEquals(LatencyHistogram.getBucket(Long.MAX_VALUE), LatencyHistogram.BUCKETS - 1);
+    }
+
+    @Test
+    public void snapshot() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        // when
+        HistogramSnapshot snapshot = histogram.getSnapshot();
+
+        // then
+        assertEquals(snapshot.getCount(), 100);
+        assertEquals(snapshot.getTotal(), 5050000L);
+        assertEquals(snapshot.getMax(), 100000L);
+        assertEquals(snapshot.getMean(), 50500.0, 0.001);
+        assertEquals(snapshot.getValueAtPercentile(100.0), 100000L);
+        long median = snapshot.getValueAtPercentile(50.0);
+        assertTrue(median >= 50000L && median <= 50000L * 1.125, "median=" + median);
+    }
+
+    @Test
+    public void emptySnapshot() {
+        // when
+        HistogramSnapshot snapshot = new LatencyHistogram().getSnapshot();
+
+        // then
+        assertEquals(snapshot.getCount(), 0);
+        assertEquals(snapshot.getValueAtPercentile(99.0), 0);
+        assertEquals(snapshot.getMean(), 0.0);
+    }
+}
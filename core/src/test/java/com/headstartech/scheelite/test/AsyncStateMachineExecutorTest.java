@@ -0,0 +1,181 @@
+package com.headstartech.scheelite.test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.headstartech.scheelite.AsyncActionAdapter;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.concurrent.AsyncStateMachineExecutor;
+import com.headstartech.scheelite.concurrent.EntityStore;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class AsyncStateMachineExecutorTest extends TestBase {
+
+    private static final int ENTITIES = 1000;
+    private static final int EVENTS_PER_ENTITY = 20;
+
+    @Test
+    public void testEventsProcessedInOrderPerEntity() throws Exception {
+        // given ... actions completed later by two threads
+        ScheduledExecutorService completer = Executors.newScheduledThreadPool(2);
+        StateMachine<RecordingEntity, StateId> stateMachine = createStateMachine(completer);
+        RecordingStore store = new RecordingStore();
+        AsyncStateMachineExecutor<Integer, RecordingEntity, StateId> executor = AsyncStateMachineExecutor.newBuilder(stateMachine, store)
+                .build();
+        List<ListenableFuture<StateId>> futures = Lists.newArrayList();
+
+        // when
+        for (int i = 0; i < EVENTS_PER_ENTITY; i++) {
+            for (int key = 0; key < ENTITIES; key++) {
+                futures.add(executor.submit(key, new SequenceEvent(i)));
+            }
+        }
+        for (ListenableFuture<StateId> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        completer.shutdown();
+
+        // then
+        assertEquals(executor.getActiveEntityCount(), 0);
+        for (int key = 0; key < ENTITIES; key++) {
+            RecordingEntity entity = store.entities.get(key);
+            assertEquals(entity.sequence.size(), EVENTS_PER_ENTITY);
+            for (int i = 0; i < EVENTS_PER_ENTITY; i++) {
+                assertEquals(entity.sequence.get(i).intValue(), i);
+            }
+            assertEquals(entity.stateId, EVENTS_PER_ENTITY % 2 == 0 ? StateId.A : StateId.B);
+        }
+    }
+
+    @Test
+    public void testFailedEventKeepsState() throws Exception {
+        // given
+        ScheduledExecutorService completer = Executors.newScheduledThreadPool(1);
+        StateMachine<RecordingEntity, StateId> stateMachine = createStateMachine(completer);
+        RecordingStore store = new RecordingStore();
+        AsyncStateMachineExecutor<Integer, RecordingEntity, StateId> executor = AsyncStateMachineExecutor.newBuilder(stateMachine, store)
+                .build();
+
+        // when
+        ListenableFuture<StateId> first = executor.submit(1, new SequenceEvent(0));
+        ListenableFuture<StateId> failing = executor.submit(1, new SequenceEvent(-1));
+        ListenableFuture<StateId> last = executor.submit(1, new SequenceEvent(1));
+
+        // then
+        assertEquals(first.get(10, TimeUnit.SECONDS), StateId.B);
+        try {
+            failing.get(10, TimeUnit.SECONDS);
+            fail("future should fail");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof com.headstartech.scheelite.ExecutionException);
+        }
+        assertEquals(last.get(10, TimeUnit.SECONDS), StateId.A);
+        assertEquals(store.entities.get(1).sequence, Lists.newArrayList(0, 1));
+        completer.shutdown();
+    }
+
+    // alternates between A and B on every event, the action completing asynchronously
+    private StateMachine<RecordingEntity, StateId> createStateMachine(ScheduledExecutorService completer) {
+        RecordingState a = new RecordingState(StateId.A);
+        RecordingState b = new RecordingState(StateId.B);
+        RecordingAction action = new RecordingAction(completer);
+        return StateMachineBuilder.<RecordingEntity, StateId>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, SequenceEvent.class, action)
+                .withTransition(b, a, SequenceEvent.class, action)
+                .build();
+    }
+
+    static class SequenceEvent {
+        final int sequence;
+
+        SequenceEvent(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    static class RecordingEntity {
+        final List<Integer> sequence = Lists.newArrayList();
+        volatile StateId stateId = StateId.A;
+    }
+
+    static class RecordingState extends StateAdapter<RecordingEntity, StateId> {
+
+        private final StateId id;
+
+        RecordingState(StateId id) {
+            this.id = id;
+        }
+
+        @Override
+        public StateId getId() {
+            return id;
+        }
+    }
+
+    // records the sequence when completing, failing for negative sequences
+    static class RecordingAction extends AsyncActionAdapter<RecordingEntity> {
+
+        private final ScheduledExecutorService completer;
+
+        RecordingAction(ScheduledExecutorService completer) {
+            this.completer = completer;
+        }
+
+        @Override
+        public ListenableFuture<?> executeAsync(final RecordingEntity context, Optional<?> event) {
+            final SequenceEvent sequenceEvent = (SequenceEvent) event.get();
+            final SettableFuture<Void> future = SettableFuture.create();
+            completer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (sequenceEvent.sequence < 0) {
+                        future.setException(new IllegalStateException("failing event"));
+                        return;
+                    }
+                    synchronized (context) {
+                        context.sequence.add(sequenceEvent.sequence);
+                    }
+                    future.set(null);
+                }
+            }, 100, TimeUnit.MICROSECONDS);
+            return future;
+        }
+    }
+
+    static class RecordingStore implements EntityStore<Integer, RecordingEntity, StateId> {
+
+        final ConcurrentMap<Integer, RecordingEntity> entities = Maps.newConcurrentMap();
+
+        @Override
+        public RecordingEntity getContext(Integer key) {
+            RecordingEntity entity = new RecordingEntity();
+            RecordingEntity existing = entities.putIfAbsent(key, entity);
+            return existing != null ? existing : entity;
+        }
+
+        @Override
+        public StateId getStateId(Integer key, RecordingEntity context) {
+            return context.stateId;
+        }
+
+        @Override
+        public void saveStateId(Integer key, RecordingEntity context, StateId stateId) {
+            context.stateId = stateId;
+        }
+    }
+}
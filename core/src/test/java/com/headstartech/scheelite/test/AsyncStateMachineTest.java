@@ -0,0 +1,177 @@
+package com.headstartech.scheelite.test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.headstartech.scheelite.AsyncActionAdapter;
+import com.headstartech.scheelite.AsyncStateAdapter;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class AsyncStateMachineTest extends TestBase {
+
+    private final List<String> calls = Lists.newArrayList();
+
+    @BeforeMethod
+    public void clearCalls() {
+        calls.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void stepsChainedOnFutures() throws Exception {
+        // given
+        AsyncTestState a = new AsyncTestState(StateId.A);
+        AsyncTestState b = new AsyncTestState(StateId.B);
+        AsyncTestState c = new AsyncTestState(StateId.C);
+        AsyncTestAction action = new AsyncTestAction("action");
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, action)
+                .withCompositeState(b, c)
+                .build();
+
+        // when
+        ListenableFuture<StateId> res = stateMachine.processEventAsync(new TestEntity(), StateId.A, new TestEventX());
+
+        // then ... each step waits for the previous
+        assertEquals(calls, Lists.newArrayList("exit A"));
+        a.exitFuture.set(null);
+        assertEquals(calls, Lists.newArrayList("exit A", "action"));
+        action.future.set(null);
+        assertEquals(calls, Lists.newArrayList("exit A", "action", "enter B"));
+        b.entryFuture.set(null);
+        assertEquals(calls, Lists.newArrayList("exit A", "action", "enter B", "enter C"));
+        assertFalse(res.isDone());
+        c.entryFuture.set(null);
+        assertEquals(res.get(), StateId.C);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void completedFuturesProcessedSynchronously() throws Exception {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, new CompletedAsyncTestAction())
+                .build();
+
+        // when
+        ListenableFuture<StateId> res = stateMachine.processEventAsync(new TestEntity(), StateId.A, new TestEventX());
+
+        // then
+        assertTrue(res.isDone());
+        assertEquals(res.get(), StateId.B);
+        assertEquals(stateMachine.processEvent(new TestEntity(), StateId.A, new TestEventX()), StateId.B);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void startAsyncEntersInitialStates() throws Exception {
+        // given
+        AsyncTestState a = new AsyncTestState(StateId.A);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .build();
+
+        // when
+        ListenableFuture<StateId> res = stateMachine.startAsync(new TestEntity());
+
+        // then
+        assertFalse(res.isDone());
+        a.entryFuture.set(null);
+        assertEquals(res.get(), StateId.A);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void failedStepFailsFuture() throws Exception {
+        // given
+        AsyncTestState a = new AsyncTestState(StateId.A);
+        AsyncTestState b = new AsyncTestState(StateId.B);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .build();
+        ListenableFuture<StateId> res = stateMachine.processEventAsync(new TestEntity(), StateId.A, new TestEventX());
+        IllegalStateException exception = new IllegalStateException("exit failed");
+
+        // when
+        a.exitFuture.setException(exception);
+
+        // then
+        assertEquals(calls, Lists.newArrayList("exit A"));
+        try {
+            res.get();
+            fail("future should fail");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof ExecutionException);
+            assertEquals(e.getCause().getCause(), exception);
+        }
+    }
+
+    class AsyncTestState extends AsyncStateAdapter<TestEntity, StateId> {
+
+        private final StateId id;
+        private final SettableFuture<Void> entryFuture = SettableFuture.create();
+        private final SettableFuture<Void> exitFuture = SettableFuture.create();
+
+        AsyncTestState(StateId id) {
+            this.id = id;
+        }
+
+        @Override
+        public StateId getId() {
+            return id;
+        }
+
+        @Override
+        public ListenableFuture<?> onEntryAsync(TestEntity context) {
+            calls.add("enter " + id);
+            return entryFuture;
+        }
+
+        @Override
+        public ListenableFuture<?> onExitAsync(TestEntity context) {
+            calls.add("exit " + id);
+            return exitFuture;
+        }
+    }
+
+    class AsyncTestAction extends AsyncActionAdapter<TestEntity> {
+
+        private final String name;
+        private final SettableFuture<Void> future = SettableFuture.create();
+
+        AsyncTestAction(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public ListenableFuture<?> executeAsync(TestEntity context, Optional<?> event) {
+            calls.add(name);
+            return future;
+        }
+    }
+
+    class CompletedAsyncTestAction extends AsyncActionAdapter<TestEntity> {
+
+        @Override
+        public ListenableFuture<?> executeAsync(TestEntity context, Optional<?> event) {
+            return Futures.immediateFuture(null);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.headstartech.scheelite.test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.headstartech.scheelite.Action;
+import com.headstartech.scheelite.DeferredEventHandler;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.InternalEvents;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineListener;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class DeferredEventsTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deferredEventDispatchedAfterLeavingDeferringState() throws ExecutionException {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withTransition(b, c, TestEventY.class)
+                .withDeferredEvent(a, TestEventY.class)
+                .build();
+        int[] transitionCounts = new int[2];
+
+        // when
+        StateId res = stateMachine.processEvents(new TestEntity(), StateId.A,
+                Lists.newArrayList(new TestEventY(), new TestEventX()), transitionCounts);
+
+        // then
+        assertEquals(res, StateId.C);
+        assertEquals(transitionCounts[0], 0);
+        assertEquals(transitionCounts[1], 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eventDeferredBySuperStateNotHandled() throws ExecutionException {
+        // given
+        TestEventY event = new TestEventY();
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        StateMachineListener<TestEntity, StateId> listener = mock(StateMachineListener.class);
+        DeferredEventHandler<TestEntity, StateId> handler = mock(DeferredEventHandler.class);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b)
+                .withTransition(b, c, TestEventY.class)
+                .withDeferredEvent(a, TestEventY.class)
+                .withDeferredEventHandler(handler)
+                .withListener(listener)
+                .build();
+        TestEntity entity = new TestEntity();
+
+        // when
+        StateId res = stateMachine.processEvent(entity, StateId.B, event);
+
+        // then ... still deferred when processing completes, so handed over
+        assertEquals(res, StateId.B);
+        verify(listener, never()).eventReceived(any(TestEntity.class), any(StateId.class), eq(event));
+        verify(listener, never()).eventProcessed(any(TestEntity.class), any(StateId.class), any(StateId.class), eq(event), anyInt(), anyLong());
+        verify(handler).handleDeferredEvents(entity, StateId.B, Lists.<Object>newArrayList(event));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eventsStillDeferredHandedOverInOrder() throws ExecutionException {
+        // given ... the first Y is recalled when leaving A, but deferred again in C
+        TestState a = new TestState(StateId.A);
+        TestState c = new TestState(StateId.C);
+        DeferredEventHandler<TestEntity, StateId> handler = mock(DeferredEventHandler.class);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, c, TestEventX.class)
+                .withDeferredEvent(a, TestEventY.class)
+                .withDeferredEvent(c, TestEventY.class)
+                .withDeferredEventHandler(handler)
+                .build();
+        TestEntity entity = new TestEntity();
+        TestEventY first = new TestEventY();
+        TestEventY second = new TestEventY();
+
+        // when
+        StateId res = stateMachine.processEvents(entity, StateId.A, Lists.newArrayList(first, new TestEventX(), second));
+
+        // then
+        assertEquals(res, StateId.C);
+        verify(handler).handleDeferredEvents(entity, StateId.C, Lists.<Object>newArrayList(first, second));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deferredEventRecalledBeforeLaterInternalEvents() throws ExecutionException {
+        // given ... Y deferred in A, then X taking A to B posts another X, which must see B -Y-> C first
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, new Action<TestEntity>() {
+                    @Override
+                    public void execute(TestEntity context, Optional<?> event) {
+                        InternalEvents.post(new TestEventX());
+                    }
+                })
+                .withTransition(b, c, TestEventY.class)
+                .withTransition(b, d, TestEventX.class)
+                .withDeferredEvent(a, TestEventY.class)
+                .build();
+
+        // when
+        StateId res = stateMachine.processEvents(new TestEntity(), StateId.A,
+                Lists.newArrayList(new TestEventY(), new TestEventX()));
+
+        // then
+        assertEquals(res, StateId.C);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deferredEventHandedOverWhenProcessedAsynchronously() throws Exception {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        DeferredEventHandler<TestEntity, StateId> handler = mock(DeferredEventHandler.class);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventY.class)
+                .withDeferredEvent(a, TestEventY.class)
+                .withDeferredEventHandler(handler)
+                .build();
+        TestEntity entity = new TestEntity();
+        TestEventY event = new TestEventY();
+
+        // when
+        StateId res = stateMachine.processEventAsync(entity, StateId.A, event).get();
+
+        // then ... handed over right away
+        assertEquals(res, StateId.A);
+        assertTrue(stateMachine.getConfiguration().getDeferredEventClasses(a).contains(TestEventY.class));
+        verify(handler).handleDeferredEvents(entity, StateId.A, Lists.<Object>newArrayList(event));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void deferringStateNotInStateMachineRejected() {
+        // given
+        TestState a = new TestState(StateId.A);
+
+        // when
+        builder.withInitialTransition(a)
+                .withDeferredEvent(new TestState(StateId.B), TestEventY.class)
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.UnknownStateIdException;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+
+public class EnumStateMachineTest extends TestBase {
+
+    @BeforeMethod
+    @Override
+    public void setup() {
+        builder = StateMachineBuilder.forEnum(StateId.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void startEntersInitialSubStates() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity();
+        TestState a = spy(new TestState(StateId.A));
+        TestState b = spy(new TestState(StateId.B));
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b)
+                .build();
+
+        // when
+        StateId res = stateMachine.start(e);
+
+        // then
+        assertEquals(res, StateId.B);
+        InOrder inOrder = inOrder(a, b);
+        inOrder.verify(a).onEntry(e);
+        inOrder.verify(b).onEntry(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eventHandledBySuperStateTriggersSuperStateTransition() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity();
+        TestState a = spy(new TestState(StateId.A));
+        TestState b = spy(new TestState(StateId.B, HandleEvent.NO));
+        TestState c = spy(new TestState(StateId.C));
+        TestEventX event = new TestEventX();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b)
+                .withTransition(a, c, TestEventX.class)
+                .build();
+
+        // when
+        StateId res = stateMachine.processEvent(e, StateId.B, event);
+
+        // then
+        assertEquals(res, StateId.C);
+        verify(b).onEvent(e, event);
+        verify(a).onEvent(e, event);
+        InOrder inOrder = inOrder(a, b, c);
+        inOrder.verify(b).onExit(e);
+        inOrder.verify(a).onExit(e);
+        inOrder.verify(c).onEntry(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void finalStateCompletesCompositeState() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity();
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestFinalState c = new TestFinalState(StateId.C);
+        TestState d = new TestState(StateId.D);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b, c)
+                .withTransition(b, c, TestEventX.class)
+                .withCompositeStateCompletedTransition(c, d)
+                .build();
+
+        // when
+        StateId res = stateMachine.processEvent(e, StateId.B, new TestEventX());
+
+        // then
+        assertEquals(res, StateId.D);
+    }
+
+    @Test(expectedExceptions = UnknownStateIdException.class)
+    public void stateIdNotInChart() throws ExecutionException {
+        // given
+        TestState a = new TestState(StateId.A);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .build();
+
+        // when
+        stateMachine.processEvent(new TestEntity(), StateId.E, new TestEventX());
+
+        // then ... exception should be thrown
+    }
+}
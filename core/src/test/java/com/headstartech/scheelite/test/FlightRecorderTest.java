@@ -0,0 +1,120 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.FlightRecord;
+import com.headstartech.scheelite.FlightRecorder;
+import com.headstartech.scheelite.StateMachine;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class FlightRecorderTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTransitionsRecorded() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(c, d)
+                .withTransition(a, b, TestEventX.class)
+                .withTransition(b, c)
+                .withFlightRecorder(16)
+                .build();
+
+        // when
+        stateMachine.processEvent(e, e.getStateId(), new TestEventX());
+        List<FlightRecord<StateId>> records = stateMachine.getFlightRecorder().get().getRecords();
+
+        // then
+        assertEquals(records.size(), 2);
+        assertEquals(records.get(0).getSequence(), 0);
+        assertEquals(records.get(0).getSourceStateId(), StateId.A);
+        assertEquals(records.get(0).getTargetStateId(), StateId.B);
+        assertEquals(records.get(0).getEventClass().get(), TestEventX.class);
+        assertEquals(records.get(1).getSequence(), 1);
+        assertEquals(records.get(1).getSourceStateId(), StateId.B);
+        assertEquals(records.get(1).getTargetStateId(), StateId.D);
+        assertFalse(records.get(1).getEventClass().isPresent());
+        assertTrue(records.get(1).getTimestamp() > 0);
+    }
+
+    @Test
+    public void testOnlyMostRecentTransitionsKept() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withTransition(b, a, TestEventY.class)
+                .withFlightRecorder(3)
+                .build();
+
+        // when
+        StateId stateId = e.getStateId();
+        for (int i = 0; i < 5; i++) {
+            stateId = stateMachine.processEvent(e, stateId, new TestEventX());
+            stateId = stateMachine.processEvent(e, stateId, new TestEventY());
+        }
+        FlightRecorder<TestEntity, StateId> flightRecorder = stateMachine.getFlightRecorder().get();
+        List<FlightRecord<StateId>> records = flightRecorder.getRecords();
+
+        // then ... capacity rounded up to a power of two
+        assertEquals(flightRecorder.getCapacity(), 4);
+        assertEquals(records.size(), 4);
+        assertEquals(records.get(0).getSequence(), 6);
+        assertEquals(records.get(3).getSequence(), 9);
+        assertEquals(records.get(3).getSourceStateId(), StateId.B);
+        assertEquals(records.get(3).getEventClass().get(), TestEventY.class);
+    }
+
+    @Test
+    public void testDump() throws ExecutionException, IOException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withFlightRecorder(8)
+                .build();
+        stateMachine.processEvent(e, e.getStateId(), new TestEventX());
+
+        // when
+        StringBuilder sb = new StringBuilder();
+        stateMachine.getFlightRecorder().get().dump(sb);
+
+        // then
+        assertTrue(sb.toString().contains("sourceStateId=A, targetStateId=B"));
+    }
+
+    @Test
+    public void testFlightRecorderNotEnabled() {
+        // given
+        TestState a = new TestState(StateId.A);
+
+        // when
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .build();
+
+        // then
+        assertFalse(stateMachine.getFlightRecorder().isPresent());
+    }
+}
@@ -0,0 +1,201 @@
+package com.headstartech.scheelite.test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.headstartech.scheelite.Action;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.InternalEvents;
+import com.headstartech.scheelite.MaxTransitionsPerEventException;
+import com.headstartech.scheelite.StateMachine;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class InternalEventsTest extends TestBase {
+
+    private final List<String> calls = Lists.newArrayList();
+
+    @BeforeMethod
+    public void clearCalls() {
+        calls.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eventPostedByActionProcessedAfterTransition() throws ExecutionException {
+        // given
+        RecordingState a = new RecordingState(StateId.A);
+        RecordingState b = new RecordingState(StateId.B);
+        RecordingState c = new RecordingState(StateId.C);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, new PostingAction(new TestEventY()))
+                .withTransition(b, c, TestEventY.class)
+                .build();
+        int[] transitionCounts = new int[1];
+
+        // when
+        StateId res = stateMachine.processEvents(new TestEntity(), StateId.A, Lists.newArrayList(new TestEventX()), transitionCounts);
+
+        // then ... B entered before the posted event is processed
+        assertEquals(res, StateId.C);
+        assertEquals(calls, Lists.newArrayList("exit A", "post TestEventY", "enter B", "exit B", "enter C"));
+        assertEquals(transitionCounts[0], 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eventPostedOnEntryProcessedWhenStarting() throws ExecutionException {
+        // given
+        RecordingState a = new PostingState(StateId.A, new TestEventX());
+        RecordingState b = new RecordingState(StateId.B);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .build();
+
+        // when
+        StateId res = stateMachine.start(new TestEntity());
+
+        // then
+        assertEquals(res, StateId.B);
+        assertEquals(calls, Lists.newArrayList("enter A", "exit A", "enter B"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eventsPostedByNestedProcessingKeptApart() throws ExecutionException {
+        // given ... action of the outer state machine processes an event of the inner state machine
+        final StateMachine<TestEntity, StateId> inner = builder
+                .withInitialTransition(new TestState(StateId.A))
+                .withTransition(new TestState(StateId.A), new TestState(StateId.B), TestEventX.class, new PostingAction(new TestEventY()))
+                .withTransition(new TestState(StateId.B), new TestState(StateId.C), TestEventY.class)
+                .build();
+        setup();
+        StateMachine<TestEntity, StateId> outer = builder
+                .withInitialTransition(new TestState(StateId.A))
+                .withTransition(new TestState(StateId.A), new TestState(StateId.B), TestEventX.class, new Action<TestEntity>() {
+                    @Override
+                    public void execute(TestEntity context, Optional<?> event) throws Exception {
+                        calls.add("inner " + inner.processEvent(context, StateId.A, new TestEventX()));
+                    }
+                })
+                .build();
+
+        // when
+        StateId res = outer.processEvent(new TestEntity(), StateId.A, new TestEventX());
+
+        // then ... the posted event was processed by the inner state machine only
+        assertEquals(res, StateId.B);
+        assertEquals(calls, Lists.newArrayList("post TestEventY", "inner C"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void eventPostedByAsynchronousProcessingNotPostedToOuterProcessing() throws Exception {
+        // given ... action of the outer state machine processes an event of the inner state machine asynchronously
+        final StateMachine<TestEntity, StateId> inner = builder
+                .withInitialTransition(new TestState(StateId.A))
+                .withTransition(new TestState(StateId.A), new PostingState(StateId.B, new TestEventY()), TestEventX.class)
+                .build();
+        setup();
+        final List<ListenableFuture<StateId>> innerResults = Lists.newArrayList();
+        StateMachine<TestEntity, StateId> outer = builder
+                .withInitialTransition(new TestState(StateId.A))
+                .withTransition(new TestState(StateId.A), new TestState(StateId.B), TestEventX.class, new Action<TestEntity>() {
+                    @Override
+                    public void execute(TestEntity context, Optional<?> event) {
+                        innerResults.add(inner.processEventAsync(context, StateId.A, new TestEventX()));
+                    }
+                })
+                .withTransition(new TestState(StateId.B), new TestState(StateId.C), TestEventY.class)
+                .build();
+
+        // when
+        StateId res = outer.processEvent(new TestEntity(), StateId.A, new TestEventX());
+
+        // then ... posting failed the inner processing instead of reaching the outer state machine
+        assertEquals(res, StateId.B);
+        try {
+            innerResults.get(0).get();
+            fail("inner processing should fail");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(expectedExceptions = MaxTransitionsPerEventException.class)
+    public void postingEventsForeverStopped() throws ExecutionException {
+        // given ... every X posts another X
+        RecordingState a = new RecordingState(StateId.A);
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, a, TestEventX.class, new PostingAction(new TestEventX()))
+                .withMaxTransitions(10)
+                .build();
+
+        // when
+        stateMachine.processEvent(new TestEntity(), StateId.A, new TestEventX());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void postingWhenNotProcessingFails() {
+        // when
+        InternalEvents.post(new TestEventX());
+    }
+
+    class RecordingState extends TestState {
+
+        RecordingState(StateId id) {
+            super(id);
+        }
+
+        @Override
+        public void onEntry(TestEntity context) {
+            calls.add("enter " + getId());
+        }
+
+        @Override
+        public void onExit(TestEntity context) {
+            calls.add("exit " + getId());
+        }
+    }
+
+    class PostingState extends RecordingState {
+
+        private final Object event;
+
+        PostingState(StateId id, Object event) {
+            super(id);
+            this.event = event;
+        }
+
+        @Override
+        public void onEntry(TestEntity context) {
+            super.onEntry(context);
+            InternalEvents.post(event);
+        }
+    }
+
+    class PostingAction implements Action<TestEntity> {
+
+        private final Object event;
+
+        PostingAction(Object event) {
+            this.event = event;
+        }
+
+        @Override
+        public void execute(TestEntity context, Optional<?> event) throws Exception {
+            calls.add("post " + this.event);
+            InternalEvents.post(this.event);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.DeclarationOrderResolver;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.InnermostStateFirstResolver;
+import com.headstartech.scheelite.StateMachine;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class PriorityResolverTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void innermostStateFirstStopsAtFirstTriggeredTransition() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.B);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+        CountingGuard outerGuard = new CountingGuard();
+        CountingGuard innerGuard = new CountingGuard();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b)
+                .withTransition(a, c, TestEventX.class, outerGuard)
+                .withTransition(b, d, TestEventX.class, innerGuard)
+                .withMultipleTransitionsTriggerPolicy(new InnermostStateFirstResolver<TestEntity, StateId>())
+                .build();
+
+        // when
+        StateId state = stateMachine.processEvent(e, StateId.B, new TestEventX());
+
+        // then
+        assertEquals(state, StateId.D);
+        assertEquals(innerGuard.count, 1);
+        assertEquals(outerGuard.count, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void declarationOrderStopsAtFirstTriggeredTransition() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.B);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+        CountingGuard outerGuard = new CountingGuard();
+        CountingGuard innerGuard = new CountingGuard();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b)
+                .withTransition(a, c, TestEventX.class, outerGuard)
+                .withTransition(b, d, TestEventX.class, innerGuard)
+                .withMultipleTransitionsTriggerPolicy(new DeclarationOrderResolver<TestEntity, StateId>())
+                .build();
+
+        // when
+        StateId state = stateMachine.processEvent(e, StateId.B, new TestEventX());
+
+        // then
+        assertEquals(state, StateId.C);
+        assertEquals(outerGuard.count, 1);
+        assertEquals(innerGuard.count, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void declarationOrderEvaluatesNextCandidateWhenGuardDenies() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.B);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b)
+                .withTransition(a, c, TestEventX.class, new AlwaysDenyTestGuard())
+                .withTransition(b, d, TestEventX.class)
+                .withMultipleTransitionsTriggerPolicy(new DeclarationOrderResolver<TestEntity, StateId>())
+                .build();
+
+        // when
+        StateId state = stateMachine.processEvent(e, StateId.B, new TestEventX());
+
+        // then
+        assertEquals(state, StateId.D);
+    }
+}
@@ -0,0 +1,91 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.Guards;
+import com.headstartech.scheelite.PureGuard;
+import com.headstartech.scheelite.StateMachine;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class PureGuardTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void pureGuardIsEvaluatedOncePerEvent() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+        CountingPureGuard guard = new CountingPureGuard();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, Guards.and(guard, new AlwaysDenyTestGuard()))
+                .withTransition(a, c, TestEventX.class, guard)
+                .withTransition(a, d, TestEventX.class, Guards.not(guard))
+                .build();
+
+        // when
+        StateId state = stateMachine.processEvent(e, StateId.A, new TestEventX());
+
+        // then
+        assertEquals(state, StateId.C);
+        assertEquals(guard.count, 1);
+    }
+
+    @Test
+    public void pureGuardIsEvaluatedForEachEvent() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        CountingPureGuard guard = new CountingPureGuard();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, guard)
+                .withTransition(a, c, TestEventY.class, guard)
+                .withTransition(b, a, TestEventX.class)
+                .build();
+
+        // when
+        StateId state = stateMachine.processEvent(e, StateId.A, new TestEventX());
+        state = stateMachine.processEvent(e, state, new TestEventX());
+        state = stateMachine.processEvent(e, state, new TestEventY());
+
+        // then
+        assertEquals(state, StateId.C);
+        assertEquals(guard.count, 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void guardIsEvaluatedForEachTransition() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        CountingGuard guard = new CountingGuard();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, Guards.and(guard, new AlwaysDenyTestGuard()))
+                .withTransition(a, c, TestEventX.class, guard)
+                .build();
+
+        // when
+        StateId state = stateMachine.processEvent(e, StateId.A, new TestEventX());
+
+        // then
+        assertEquals(state, StateId.C);
+        assertEquals(guard.count, 2);
+    }
+
+    private class CountingPureGuard extends CountingGuard implements PureGuard<TestEntity> {
+    }
+}
@@ -0,0 +1,130 @@
+package com.headstartech.scheelite.test;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineListener;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class ReplayModeTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void startFollowsInitialTransitionsWithoutCallbacks() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity();
+        TestState a = spy(new TestState(StateId.A));
+        TestState b = spy(new TestState(StateId.B));
+        TestAction initialAction = spy(new TestAction());
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a, initialAction)
+                .withCompositeState(a, b)
+                .build();
+
+        // when
+        StateId res = stateMachine.getReplayMode().start(e);
+
+        // then
+        assertEquals(res, StateId.B);
+        verifyNoCallbacks(e, a, b);
+        verifyZeroInteractions(initialAction);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void processEventSelectsTransitionWithoutCallbacks() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity();
+        TestState a = spy(new TestState(StateId.A));
+        TestState b = spy(new TestState(StateId.B));
+        TestState c = spy(new TestState(StateId.C));
+        TestState d = spy(new TestState(StateId.D));
+        TestAction action = spy(new TestAction());
+        TestGuard guard = spy(new AlwaysDenyTestGuard());
+        TestEventX event = new TestEventX();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, guard)
+                .withTransition(a, c, TestEventX.class, action)
+                .withCompositeState(c, d)
+                .build();
+
+        // when
+        StateId res = stateMachine.getReplayMode().processEvent(e, StateId.A, event);
+
+        // then
+        assertEquals(res, StateId.D);
+        verify(guard).evaluate(eq(e), any(Optional.class));
+        verifyNoCallbacks(e, a, b, c, d);
+        verifyZeroInteractions(action);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void processEventFollowsCompletionTransitions() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity();
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestFinalState c = new TestFinalState(StateId.C);
+        TestState d = new TestState(StateId.D);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b, c)
+                .withTransition(b, c, TestEventX.class)
+                .withCompositeStateCompletedTransition(c, d)
+                .build();
+
+        // when
+        StateId res = stateMachine.getReplayMode().processEvent(e, StateId.B, new TestEventX());
+
+        // then
+        assertEquals(res, StateId.D);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void listenersNotNotified() throws ExecutionException {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        StateMachineListener<TestEntity, StateId> listener = mock(StateMachineListener.class);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withListener(listener)
+                .build();
+        StateMachine<TestEntity, StateId> replayMode = stateMachine.getReplayMode();
+
+        // when
+        StateId res = replayMode.processEvent(new TestEntity(), StateId.A, new TestEventX());
+
+        // then
+        assertEquals(res, StateId.B);
+        assertSame(replayMode.getReplayMode(), replayMode);
+        assertSame(replayMode.getConfiguration(), stateMachine.getConfiguration());
+        verifyZeroInteractions(listener);
+    }
+
+    private void verifyNoCallbacks(TestEntity e, TestState... states) {
+        for (TestState state : states) {
+            verify(state, never()).onEntry(e);
+            verify(state, never()).onExit(e);
+            verify(state, never()).onEvent(eq(e), any());
+        }
+    }
+}
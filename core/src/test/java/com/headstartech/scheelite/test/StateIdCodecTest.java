@@ -0,0 +1,142 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.StateIdCodec;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.UnknownStateIdException;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+public class StateIdCodecTest extends TestBase {
+
+    @Test
+    public void encodeAndDecode() {
+        // given
+        StateIdCodec<StateId> codec = new StateIdCodec<StateId>(createStateMachine(builder).getConfiguration());
+
+        for (StateId stateId : new StateId[] { StateId.A, StateId.B, StateId.C, StateId.D }) {
+            // when
+            byte[] bytes = codec.encode(stateId);
+
+            // then
+            assertEquals(bytes.length, 1);
+            assertEquals(codec.decode(bytes), stateId);
+            assertEquals(codec.decodePosition(codec.encodePosition(stateId)), stateId);
+        }
+    }
+
+    @Test
+    public void ordinalsAndFingerprintStableAcrossBuilds() {
+        // given
+        StateIdCodec<StateId> codec = new StateIdCodec<StateId>(createStateMachine(builder).getConfiguration());
+        StateIdCodec<StateId> other = new StateIdCodec<StateId>(
+                createStateMachine(StateMachineBuilder.<TestEntity, StateId>newBuilder()).getConfiguration());
+
+        // when
+        byte[] position = codec.encodePosition(StateId.C);
+
+        // then
+        assertEquals(other.getFingerprint(), codec.getFingerprint());
+        assertEquals(other.decodePosition(position), StateId.C);
+        assertEquals(codec.getOrdinal(StateId.A), 0);
+        assertEquals(codec.getOrdinal(StateId.B), 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void ordinalsAndFingerprintIndependentOfDeclarationOrder() {
+        // given ... the same chart declaring the transitions in reverse order
+        StateIdCodec<StateId> codec = new StateIdCodec<StateId>(createStateMachine(builder).getConfiguration());
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+        StateMachine<TestEntity, StateId> reordered = StateMachineBuilder.<TestEntity, StateId>newBuilder()
+                .withTransition(a, d, TestEventY.class)
+                .withTransition(b, c, TestEventX.class)
+                .withCompositeState(a, b, c)
+                .withInitialTransition(a)
+                .build();
+
+        // when
+        StateIdCodec<StateId> other = new StateIdCodec<StateId>(reordered.getConfiguration());
+
+        // then
+        assertEquals(other.getFingerprint(), codec.getFingerprint());
+        for (StateId stateId : new StateId[] { StateId.A, StateId.B, StateId.C, StateId.D }) {
+            assertEquals(other.getOrdinal(stateId), codec.getOrdinal(stateId));
+        }
+        assertEquals(codec.getOrdinal(StateId.D), 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void decodePositionOfOtherStateMachineFails() {
+        // given
+        StateIdCodec<StateId> codec = new StateIdCodec<StateId>(createStateMachine(builder).getConfiguration());
+        TestState a = new TestState(StateId.A);
+        TestState c = new TestState(StateId.C);
+        StateMachine<TestEntity, StateId> otherStateMachine = StateMachineBuilder.<TestEntity, StateId>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, c, TestEventX.class)
+                .build();
+        StateIdCodec<StateId> other = new StateIdCodec<StateId>(otherStateMachine.getConfiguration());
+        assertNotEquals(other.getFingerprint(), codec.getFingerprint());
+
+        // when
+        other.decodePosition(codec.encodePosition(StateId.A));
+
+        // then ... exception should be thrown
+    }
+
+    @Test(expectedExceptions = UnknownStateIdException.class)
+    public void encodeUnknownStateIdFails() {
+        // given
+        StateIdCodec<StateId> codec = new StateIdCodec<StateId>(createStateMachine(builder).getConfiguration());
+
+        // when
+        codec.encode(StateId.E);
+
+        // then ... exception should be thrown
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void decodeInvalidOrdinalFails() {
+        // given
+        StateIdCodec<StateId> codec = new StateIdCodec<StateId>(createStateMachine(builder).getConfiguration());
+
+        // when
+        codec.decode(new byte[] { 4 });
+
+        // then ... exception should be thrown
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void readTruncatedVarintFails() {
+        // given
+        StateIdCodec<StateId> codec = new StateIdCodec<StateId>(createStateMachine(builder).getConfiguration());
+
+        // when
+        codec.read(ByteBuffer.wrap(new byte[] { (byte) 0x81 }));
+
+        // then ... exception should be thrown
+    }
+
+    // a is composite with sub states b and c, d is a top level state
+    @SuppressWarnings("unchecked")
+    private StateMachine<TestEntity, StateId> createStateMachine(StateMachineBuilder<TestEntity, StateId> builder) {
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+        return builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b, c)
+                .withTransition(b, c, TestEventX.class)
+                .withTransition(a, d, TestEventY.class)
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Verifies that processing an event in steady state doesn't allocate.
+ */
+public class StateMachineAllocationTest extends TestBase {
+
+    private static final int WARMUP_EVENTS = 200000;
+    private static final int MEASURED_EVENTS = 100000;
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testNoAllocationWhenTakingTransition() throws ExecutionException {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestState d = new TestState(StateId.D);
+        TestEventX eventX = new TestEventX();
+        TestEventY eventY = new TestEventY();
+        TestEntity e = new TestEntity(StateId.B);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b, c)
+                .withTransition(b, c, TestEventX.class)
+                .withTransition(c, b, TestEventY.class)
+                .withTransition(a, d, new AlwaysDenyTestGuard())
+                .build();
+
+        // when
+        processEvents(stateMachine, e, eventX, eventY, WARMUP_EVENTS);
+        long allocatedBytes = getAllocatedBytes(stateMachine, e, eventX, eventY, MEASURED_EVENTS);
+
+        // then ... less than a byte per event (allowing for a constant measurement overhead)
+        assertTrue(allocatedBytes < MEASURED_EVENTS, String.format("allocated %d bytes processing %d events", allocatedBytes, MEASURED_EVENTS));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOnlyEventWrapperAllocatedForGuardsAndActions() throws ExecutionException {
+        // given
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestEventX eventX = new TestEventX();
+        TestEventY eventY = new TestEventY();
+        TestEntity e = new TestEntity(StateId.A);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, new AlwaysAcceptTestGuard(), new TestAction())
+                .withTransition(b, a, TestEventY.class, new AlwaysAcceptTestGuard(), new TestAction())
+                .build();
+
+        // when
+        processEvents(stateMachine, e, eventX, eventY, WARMUP_EVENTS);
+        long allocatedBytes = getAllocatedBytes(stateMachine, e, eventX, eventY, MEASURED_EVENTS);
+
+        // then ... at most the Optional passed to guards and actions (object header and one reference)
+        assertTrue(allocatedBytes <= 24L * MEASURED_EVENTS, String.format("allocated %d bytes processing %d events", allocatedBytes, MEASURED_EVENTS));
+    }
+
+    private long getAllocatedBytes(StateMachine<TestEntity, StateId> stateMachine, TestEntity e, Object first, Object second, int events) throws ExecutionException {
+        com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // calibrate for any allocation done by the measurement itself
+        long calibrationStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        long calibrationEnd = threadMXBean.getThreadAllocatedBytes(threadId);
+        long overhead = calibrationEnd - calibrationStart;
+
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        processEvents(stateMachine, e, first, second, events);
+        long end = threadMXBean.getThreadAllocatedBytes(threadId);
+        return Math.max(0L, end - start - overhead);
+    }
+
+    private void processEvents(StateMachine<TestEntity, StateId> stateMachine, TestEntity e, Object first, Object second, int events) throws ExecutionException {
+        StateId stateId = e.getStateId();
+        for (int i = 0; i < events; i++) {
+            stateId = stateMachine.processEvent(e, stateId, (i % 2) == 0 ? first : second);
+        }
+    }
+
+    private com.sun.management.ThreadMXBean getThreadMXBean() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("thread allocation counters not supported by JVM");
+        }
+        com.sun.management.ThreadMXBean res = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!res.isThreadAllocatedMemorySupported() || !res.isThreadAllocatedMemoryEnabled()) {
+            throw new SkipException("thread allocation counters not enabled");
+        }
+        return res;
+    }
+}
@@ -0,0 +1,127 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.UnknownStateIdException;
+import org.mockito.InOrder;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.spy;
+import static org.testng.Assert.assertEquals;
+
+public class StateMachineBatchTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testProcessEvents() throws Exception {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = spy(new TestState(StateId.A));
+        TestState b = spy(new TestState(StateId.B));
+        TestState c = spy(new TestState(StateId.C));
+        TestEventX eventX = new TestEventX();
+        TestEventY eventY = new TestEventY();
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withTransition(b, c, TestEventY.class)
+                .build();
+
+        // when
+        StateId stateId = stateMachine.processEvents(e, e.getStateId(), Arrays.asList(eventX, eventX, eventY));
+
+        // then
+        assertEquals(stateId, StateId.C);
+        InOrder inOrder = inOrder(a, b, c);
+        inOrder.verify(a).onEvent(e, eventX);
+        inOrder.verify(a).onExit(e);
+        inOrder.verify(b).onEntry(e);
+        inOrder.verify(b).onEvent(e, eventX);
+        inOrder.verify(b).onEvent(e, eventY);
+        inOrder.verify(b).onExit(e);
+        inOrder.verify(c).onEntry(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testProcessEventsWithTransitionCounts() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestEventX eventX = new TestEventX();
+        TestEventY eventY = new TestEventY();
+        int[] transitionCounts = new int[4];
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withTransition(b, c)
+                .withTransition(c, a, TestEventY.class)
+                .build();
+
+        // when
+        StateId stateId = stateMachine.processEvents(e, e.getStateId(), Arrays.asList(eventY, eventX, eventX, eventY), transitionCounts);
+
+        // then
+        assertEquals(stateId, StateId.A);
+        assertEquals(transitionCounts, new int[] {0, 2, 0, 1});
+    }
+
+    @Test
+    public void testProcessEventsWhenNoEvents() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .build();
+
+        // when
+        StateId stateId = stateMachine.processEvents(e, e.getStateId(), Collections.emptyList());
+
+        // then
+        assertEquals(stateId, StateId.A);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testProcessEventsWhenTooFewTransitionCounts() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .build();
+
+        // when
+        stateMachine.processEvents(e, e.getStateId(), Arrays.asList(new TestEventX(), new TestEventX()), new int[1]);
+
+        // then ... exception should be thrown
+    }
+
+    @Test(expectedExceptions = UnknownStateIdException.class)
+    public void testProcessEventsWhenNoStateForStateId() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.B);
+        TestState a = new TestState(StateId.A);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .build();
+
+        // when
+        stateMachine.processEvents(e, e.getStateId(), Arrays.asList(new TestEventX()));
+
+        // then ... exception should be thrown
+    }
+}
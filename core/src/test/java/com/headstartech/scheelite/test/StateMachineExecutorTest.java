@@ -0,0 +1,207 @@
+package com.headstartech.scheelite.test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.concurrent.EntityStore;
+import com.headstartech.scheelite.concurrent.EventExceptionHandler;
+import com.headstartech.scheelite.concurrent.StateMachineExecutor;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class StateMachineExecutorTest extends TestBase {
+
+    private static final int ENTITIES = 50;
+    private static final int EVENTS_PER_ENTITY = 200;
+    private static final int ERROR = -2;
+
+    @Test
+    public void testEventsProcessedInOrderPerEntity() throws Exception {
+        // given
+        StateMachine<RecordingEntity, StateId> stateMachine = createStateMachine();
+        RecordingStore store = new RecordingStore();
+        StateMachineExecutor<Integer, RecordingEntity, StateId> executor = StateMachineExecutor.newBuilder(stateMachine, store)
+                .withLanes(4)
+                .withQueueCapacity(16)
+                .withMaxBatchSize(8)
+                .build();
+
+        // when
+        for (int i = 0; i < EVENTS_PER_ENTITY; i++) {
+            for (int key = 0; key < ENTITIES; key++) {
+                executor.submit(key, new SequenceEvent(i));
+            }
+        }
+        executor.shutdown();
+        boolean terminated = executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // then
+        assertTrue(terminated);
+        for (int key = 0; key < ENTITIES; key++) {
+            RecordingEntity entity = store.entities.get(key);
+            assertEquals(entity.sequence.size(), EVENTS_PER_ENTITY);
+            for (int i = 0; i < EVENTS_PER_ENTITY; i++) {
+                assertEquals(entity.sequence.get(i).intValue(), i);
+            }
+            assertEquals(entity.stateId, EVENTS_PER_ENTITY % 2 == 0 ? StateId.A : StateId.B);
+        }
+    }
+
+    @Test
+    public void testExceptionHandlerInvoked() throws Exception {
+        // given
+        StateMachine<RecordingEntity, StateId> stateMachine = createStateMachine();
+        RecordingStore store = new RecordingStore();
+        final List<Object> failedEvents = new CopyOnWriteArrayList<Object>();
+        StateMachineExecutor<Integer, RecordingEntity, StateId> executor = StateMachineExecutor.newBuilder(stateMachine, store)
+                .withLanes(2)
+                .withExceptionHandler(new EventExceptionHandler<Integer>() {
+                    @Override
+                    public void handleException(Integer key, Object event, Exception exception) {
+                        failedEvents.add(event);
+                    }
+                })
+                .build();
+        SequenceEvent failing = new SequenceEvent(-1);
+
+        // when
+        executor.submit(1, new SequenceEvent(0));
+        executor.submit(1, failing);
+        executor.submit(1, new SequenceEvent(1));
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // then ... the failing event is reported and the following event is processed
+        assertEquals(failedEvents, Collections.<Object>singletonList(failing));
+        assertEquals(store.entities.get(1).sequence, Lists.newArrayList(0, 1));
+        assertEquals(store.entities.get(1).stateId, StateId.A);
+    }
+
+    @Test
+    public void testErrorHandledAndLaneKeptAlive() throws Exception {
+        // given
+        StateMachine<RecordingEntity, StateId> stateMachine = createStateMachine();
+        RecordingStore store = new RecordingStore();
+        final List<Exception> exceptions = new CopyOnWriteArrayList<Exception>();
+        StateMachineExecutor<Integer, RecordingEntity, StateId> executor = StateMachineExecutor.newBuilder(stateMachine, store)
+                .withLanes(1)
+                .withExceptionHandler(new EventExceptionHandler<Integer>() {
+                    @Override
+                    public void handleException(Integer key, Object event, Exception exception) {
+                        exceptions.add(exception);
+                    }
+                })
+                .build();
+
+        // when
+        executor.submit(1, new SequenceEvent(0));
+        executor.submit(1, new SequenceEvent(ERROR));
+        executor.submit(1, new SequenceEvent(1));
+        executor.shutdown();
+        boolean terminated = executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // then ... the error is reported wrapped and the following event is processed
+        assertTrue(terminated);
+        assertEquals(exceptions.size(), 1);
+        assertTrue(exceptions.get(0).getCause() instanceof AssertionError);
+        assertEquals(store.entities.get(1).sequence, Lists.newArrayList(0, 1));
+    }
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testSubmitAfterShutdown() throws Exception {
+        // given
+        StateMachine<RecordingEntity, StateId> stateMachine = createStateMachine();
+        StateMachineExecutor<Integer, RecordingEntity, StateId> executor = StateMachineExecutor.newBuilder(stateMachine, new RecordingStore())
+                .build();
+        executor.shutdown();
+
+        // when
+        executor.submit(1, new SequenceEvent(0));
+
+        // then ... exception should be thrown
+    }
+
+    // alternates between A and B on every event
+    private StateMachine<RecordingEntity, StateId> createStateMachine() {
+        RecordingState a = new RecordingState(StateId.A);
+        RecordingState b = new RecordingState(StateId.B);
+        return StateMachineBuilder.<RecordingEntity, StateId>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, SequenceEvent.class)
+                .withTransition(b, a, SequenceEvent.class)
+                .build();
+    }
+
+    static class SequenceEvent {
+        final int sequence;
+
+        SequenceEvent(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    static class RecordingEntity {
+        final List<Integer> sequence = Lists.newArrayList();
+        StateId stateId = StateId.A;
+    }
+
+    static class RecordingState extends StateAdapter<RecordingEntity, StateId> {
+
+        private final StateId id;
+
+        RecordingState(StateId id) {
+            this.id = id;
+        }
+
+        @Override
+        public StateId getId() {
+            return id;
+        }
+
+        @Override
+        public boolean onEvent(RecordingEntity context, Object event) {
+            SequenceEvent sequenceEvent = (SequenceEvent) event;
+            if (sequenceEvent.sequence == ERROR) {
+                throw new AssertionError("error event");
+            }
+            if (sequenceEvent.sequence < 0) {
+                throw new IllegalStateException("failing event");
+            }
+            context.sequence.add(sequenceEvent.sequence);
+            return true;
+        }
+    }
+
+    static class RecordingStore implements EntityStore<Integer, RecordingEntity, StateId> {
+
+        final ConcurrentMap<Integer, RecordingEntity> entities = Maps.newConcurrentMap();
+
+        @Override
+        public RecordingEntity getContext(Integer key) {
+            RecordingEntity entity = new RecordingEntity();
+            RecordingEntity existing = entities.putIfAbsent(key, entity);
+            return existing != null ? existing : entity;
+        }
+
+        @Override
+        public StateId getStateId(Integer key, RecordingEntity context) {
+            return context.stateId;
+        }
+
+        @Override
+        public void saveStateId(Integer key, RecordingEntity context, StateId stateId) {
+            context.stateId = stateId;
+        }
+    }
+}
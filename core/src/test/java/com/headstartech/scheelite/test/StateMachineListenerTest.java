@@ -0,0 +1,134 @@
+package com.headstartech.scheelite.test;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineListener;
+import com.headstartech.scheelite.Transition;
+import org.mockito.InOrder;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.fail;
+
+public class StateMachineListenerTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testListenerNotifiedWhenProcessingEvent() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.B);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestState c = new TestState(StateId.C);
+        TestEventX event = new TestEventX();
+        TestGuard guard = new AlwaysAcceptTestGuard();
+        TestAction action = new TestAction();
+        StateMachineListener<TestEntity, StateId> listener = mock(StateMachineListener.class);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withCompositeState(a, b)
+                .withTransition(b, c, TestEventX.class, guard, action)
+                .withListener(listener)
+                .build();
+
+        // when
+        stateMachine.processEvent(e, e.getStateId(), event);
+
+        // then
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).eventReceived(e, StateId.B, event);
+        inOrder.verify(listener).guardEvaluated(eq(e), any(Transition.class), eq(true), anyLong());
+        inOrder.verify(listener).transitionSelected(eq(e), eq(StateId.B), any(Transition.class));
+        inOrder.verify(listener).stateExited(eq(e), eq(StateId.B), anyLong());
+        inOrder.verify(listener).stateExited(eq(e), eq(StateId.A), anyLong());
+        inOrder.verify(listener).actionExecuted(eq(e), any(Transition.class), anyLong());
+        inOrder.verify(listener).stateEntered(eq(e), eq(StateId.C), anyLong());
+        inOrder.verify(listener).transitionExecuted(eq(e), eq(StateId.B), any(Transition.class), anyLong());
+        inOrder.verify(listener).eventProcessed(eq(e), eq(StateId.B), eq(StateId.C), eq(event), eq(1), anyLong());
+        verifyNoMoreInteractions(listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testListenerNotifiedOfInitialTransitions() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        StateMachineListener<TestEntity, StateId> listener = mock(StateMachineListener.class);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a, new TestAction())
+                .withCompositeState(a, b)
+                .withListener(listener)
+                .build();
+
+        // when
+        stateMachine.start(e);
+
+        // then
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).actionExecuted(eq(e), any(Transition.class), anyLong());
+        inOrder.verify(listener).stateEntered(eq(e), eq(StateId.A), anyLong());
+        inOrder.verify(listener).stateEntered(eq(e), eq(StateId.B), anyLong());
+        verifyNoMoreInteractions(listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testAllListenersNotified() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+        TestEventX event = new TestEventX();
+        StateMachineListener<TestEntity, StateId> first = mock(StateMachineListener.class);
+        StateMachineListener<TestEntity, StateId> second = mock(StateMachineListener.class);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withListener(first)
+                .withListener(second)
+                .build();
+
+        // when
+        stateMachine.processEvent(e, e.getStateId(), event);
+
+        // then
+        verify(first).eventProcessed(eq(e), eq(StateId.A), eq(StateId.B), eq(event), eq(1), anyLong());
+        verify(second).eventProcessed(eq(e), eq(StateId.A), eq(StateId.B), eq(event), eq(1), anyLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testListenerNotifiedWhenEventFailed() throws Exception {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = spy(new TestState(StateId.A));
+        TestState b = new TestState(StateId.B);
+        TestEventX event = new TestEventX();
+        StateMachineListener<TestEntity, StateId> listener = mock(StateMachineListener.class);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withListener(listener)
+                .build();
+        doThrow(new IllegalStateException()).when(a).onExit(e);
+
+        // when
+        try {
+            stateMachine.processEvent(e, e.getStateId(), event);
+            fail("should have thrown");
+        } catch (ExecutionException ex) {
+            // then
+            verify(listener).eventFailed(eq(e), eq(StateId.A), eq(event), eq(ex), anyLong());
+            verify(listener, never()).eventProcessed(any(TestEntity.class), any(StateId.class), any(StateId.class), any(), anyInt(), anyLong());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.headstartech.scheelite.test;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.Transition;
+import com.headstartech.scheelite.metrics.StateMachineMetrics;
+import com.headstartech.scheelite.metrics.TransitionMetrics;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class StateMachineMetricsTest extends TestBase {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMetricsRecorded() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class, new AlwaysAcceptTestGuard(), new TestAction())
+                .withTransition(b, a, TestEventY.class)
+                .withMetrics()
+                .build();
+
+        // when
+        StateId stateId = e.getStateId();
+        for (int i = 0; i < 3; i++) {
+            stateId = stateMachine.processEvent(e, stateId, new TestEventX());
+            stateId = stateMachine.processEvent(e, stateId, new TestEventY());
+        }
+        StateMachineMetrics<TestEntity, StateId> metrics = stateMachine.getMetrics().get();
+
+        // then
+        assertEquals(metrics.getTransitionMetrics().size(), 2);
+        for (Transition<TestEntity, StateId> transition : metrics.getTransitionMetrics().keySet()) {
+            TransitionMetrics transitionMetrics = metrics.getTransitionMetrics().get(transition);
+            assertEquals(transitionMetrics.getCount(), 3);
+            if (transition.getMainSourceState().equals(a)) {
+                assertEquals(transitionMetrics.getGuardLatency().getCount(), 3);
+                assertEquals(transitionMetrics.getActionLatency().getCount(), 3);
+            } else {
+                assertEquals(transitionMetrics.getGuardLatency().getCount(), 0);
+                assertEquals(transitionMetrics.getActionLatency().getCount(), 0);
+            }
+        }
+        assertEquals(metrics.getStateMetrics().get(StateId.A).getExitLatency().getCount(), 3);
+        assertEquals(metrics.getStateMetrics().get(StateId.A).getEntryLatency().getCount(), 3);
+        assertEquals(metrics.getStateMetrics().get(StateId.B).getEntryLatency().getCount(), 3);
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() throws ExecutionException {
+        // given
+        TestEntity e = new TestEntity(StateId.A);
+        TestState a = new TestState(StateId.A);
+        TestState b = new TestState(StateId.B);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .withTransition(a, b, TestEventX.class)
+                .withMetrics()
+                .build();
+        StateMachineMetrics<TestEntity, StateId> before = stateMachine.getMetrics().get();
+
+        // when
+        stateMachine.processEvent(e, e.getStateId(), new TestEventX());
+
+        // then
+        assertEquals(before.getStateMetrics().get(StateId.B).getEntryLatency().getCount(), 0);
+        assertEquals(stateMachine.getMetrics().get().getStateMetrics().get(StateId.B).getEntryLatency().getCount(), 1);
+    }
+
+    @Test
+    public void testMetricsNotEnabled() {
+        // given
+        TestState a = new TestState(StateId.A);
+
+        StateMachine<TestEntity, StateId> stateMachine = builder
+                .withInitialTransition(a)
+                .build();
+
+        // when
+        Optional<StateMachineMetrics<TestEntity, StateId>> metrics = stateMachine.getMetrics();
+
+        // then
+        assertFalse(metrics.isPresent());
+    }
+}
@@ -170,4 +170,15 @@ public class TestBase {
         }
     }
 
+    public static class CountingGuard implements Guard<TestEntity> {
+
+        int count;
+
+        @Override
+        public boolean evaluate(TestEntity context, Optional<?> event) {
+            ++count;
+            return true;
+        }
+    }
+
 }
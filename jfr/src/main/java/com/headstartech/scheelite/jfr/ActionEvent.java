@@ -0,0 +1,30 @@
+package com.headstartech.scheelite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Event emitted when the action of a transition has been executed.
+ */
+@Name("com.headstartech.scheelite.Action")
+@Label("Action Execution")
+@Description("Execution of the action of a transition")
+@Category("Scheelite")
+class ActionEvent extends jdk.jfr.Event {
+
+    @Label("Source State")
+    String sourceStateId;
+
+    @Label("Target State")
+    String targetStateId;
+
+    @Label("Action Class")
+    Class<?> actionClass;
+
+    @Label("Execution Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long executionTime;
+}
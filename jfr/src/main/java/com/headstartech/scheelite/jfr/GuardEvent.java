@@ -0,0 +1,36 @@
+package com.headstartech.scheelite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Event emitted when the guard of a candidate transition has been evaluated.
+ */
+@Name("com.headstartech.scheelite.Guard")
+@Label("Guard Evaluation")
+@Description("Evaluation of the guard of a candidate transition")
+@Category("Scheelite")
+class GuardEvent extends jdk.jfr.Event {
+
+    @Label("Source State")
+    String sourceStateId;
+
+    @Label("Target State")
+    String targetStateId;
+
+    @Label("Trigger Event Class")
+    Class<?> triggerEventClass;
+
+    @Label("Guard Class")
+    Class<?> guardClass;
+
+    @Label("Result")
+    boolean result;
+
+    @Label("Evaluation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long evaluationTime;
+}
@@ -0,0 +1,97 @@
+package com.headstartech.scheelite.jfr;
+
+import com.headstartech.scheelite.StateMachineListenerAdapter;
+import com.headstartech.scheelite.Transition;
+import jdk.jfr.EventType;
+
+/**
+ * Listener emitting JDK Flight Recorder events for event processing, transition execution, guard evaluation and
+ * action execution. Register it using {@link com.headstartech.scheelite.StateMachineBuilder#withListener}.
+ *
+ * The events are emitted when the step has completed and carry the time spent as a field, so the listener keeps no
+ * state between callbacks and works when asynchronous processing continues on another thread. Events are only
+ * created when enabled in the running recording.
+ *
+ * @param <T> context type
+ * @param <U> state id type
+ */
+public class JfrStateMachineListener<T, U> extends StateMachineListenerAdapter<T, U> {
+
+    private static final EventType PROCESS_EVENT_TYPE = EventType.getEventType(ProcessEventEvent.class);
+    private static final EventType TRANSITION_TYPE = EventType.getEventType(TransitionEvent.class);
+    private static final EventType GUARD_TYPE = EventType.getEventType(GuardEvent.class);
+    private static final EventType ACTION_TYPE = EventType.getEventType(ActionEvent.class);
+
+    @Override
+    public void eventProcessed(T context, U sourceStateId, U targetStateId, Object event, int transitions, long durationNanos) {
+        if (PROCESS_EVENT_TYPE.isEnabled()) {
+            ProcessEventEvent jfrEvent = new ProcessEventEvent();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.sourceStateId = String.valueOf(sourceStateId);
+                jfrEvent.targetStateId = String.valueOf(targetStateId);
+                jfrEvent.eventClass = event.getClass();
+                jfrEvent.transitions = transitions;
+                jfrEvent.processingTime = durationNanos;
+                jfrEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public void eventFailed(T context, U stateId, Object event, Exception exception, long durationNanos) {
+        if (PROCESS_EVENT_TYPE.isEnabled()) {
+            ProcessEventEvent jfrEvent = new ProcessEventEvent();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.sourceStateId = String.valueOf(stateId);
+                jfrEvent.eventClass = event.getClass();
+                jfrEvent.failed = true;
+                jfrEvent.processingTime = durationNanos;
+                jfrEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public void transitionExecuted(T context, U sourceStateId, Transition<T, U> transition, long durationNanos) {
+        if (TRANSITION_TYPE.isEnabled()) {
+            TransitionEvent jfrEvent = new TransitionEvent();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.sourceStateId = String.valueOf(sourceStateId);
+                jfrEvent.targetStateId = String.valueOf(transition.getMainTargetState().getId());
+                jfrEvent.triggerEventClass = transition.getTriggerEventClass().orNull();
+                jfrEvent.executionTime = durationNanos;
+                jfrEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public void guardEvaluated(T context, Transition<T, U> transition, boolean result, long durationNanos) {
+        if (GUARD_TYPE.isEnabled()) {
+            GuardEvent jfrEvent = new GuardEvent();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.sourceStateId = String.valueOf(transition.getMainSourceState().getId());
+                jfrEvent.targetStateId = String.valueOf(transition.getMainTargetState().getId());
+                jfrEvent.triggerEventClass = transition.getTriggerEventClass().orNull();
+                jfrEvent.guardClass = transition.getGuard().get().getClass();
+                jfrEvent.result = result;
+                jfrEvent.evaluationTime = durationNanos;
+                jfrEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public void actionExecuted(T context, Transition<T, U> transition, long durationNanos) {
+        if (ACTION_TYPE.isEnabled()) {
+            ActionEvent jfrEvent = new ActionEvent();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.sourceStateId = String.valueOf(transition.getMainSourceState().getId());
+                jfrEvent.targetStateId = String.valueOf(transition.getMainTargetState().getId());
+                jfrEvent.actionClass = transition.getAction().get().getClass();
+                jfrEvent.executionTime = durationNanos;
+                jfrEvent.commit();
+            }
+        }
+    }
+}
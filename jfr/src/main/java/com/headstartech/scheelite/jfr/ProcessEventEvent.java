@@ -0,0 +1,36 @@
+package com.headstartech.scheelite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Event emitted when the state machine has processed an event.
+ */
+@Name("com.headstartech.scheelite.ProcessEvent")
+@Label("Process Event")
+@Description("Processing of an event by a state machine")
+@Category("Scheelite")
+class ProcessEventEvent extends jdk.jfr.Event {
+
+    @Label("Source State")
+    String sourceStateId;
+
+    @Label("Target State")
+    String targetStateId;
+
+    @Label("Event Class")
+    Class<?> eventClass;
+
+    @Label("Transitions")
+    int transitions;
+
+    @Label("Failed")
+    boolean failed;
+
+    @Label("Processing Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long processingTime;
+}
@@ -0,0 +1,30 @@
+package com.headstartech.scheelite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Event emitted when a transition has been executed.
+ */
+@Name("com.headstartech.scheelite.Transition")
+@Label("Transition")
+@Description("Execution of a transition (exiting states, executing the action and entering states)")
+@Category("Scheelite")
+class TransitionEvent extends jdk.jfr.Event {
+
+    @Label("Source State")
+    String sourceStateId;
+
+    @Label("Target State")
+    String targetStateId;
+
+    @Label("Trigger Event Class")
+    Class<?> triggerEventClass;
+
+    @Label("Execution Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long executionTime;
+}
@@ -0,0 +1,157 @@
+package com.headstartech.scheelite.jfr;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.headstartech.scheelite.Action;
+import com.headstartech.scheelite.AsyncActionAdapter;
+import com.headstartech.scheelite.Guard;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class JfrStateMachineListenerTest {
+
+    @Test
+    public void testEventsRecorded() throws Exception {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, new TestGuard(), new TestAction())
+                .withListener(new JfrStateMachineListener<Object, String>())
+                .build();
+        File file = File.createTempFile("scheelite", ".jfr");
+        file.deleteOnExit();
+
+        // when
+        Recording recording = new Recording();
+        try {
+            recording.start();
+            stateMachine.processEvent(new Object(), "A", "event");
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            recording.close();
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+
+        // then
+        RecordedEvent processEvent = findEvent(events, "com.headstartech.scheelite.ProcessEvent");
+        assertEquals(processEvent.getString("sourceStateId"), "A");
+        assertEquals(processEvent.getString("targetStateId"), "B");
+        assertEquals(processEvent.getInt("transitions"), 1);
+        assertFalse(processEvent.getBoolean("failed"));
+        RecordedEvent transitionEvent = findEvent(events, "com.headstartech.scheelite.Transition");
+        assertEquals(transitionEvent.getString("sourceStateId"), "A");
+        assertEquals(transitionEvent.getString("targetStateId"), "B");
+        findEvent(events, "com.headstartech.scheelite.Guard");
+        findEvent(events, "com.headstartech.scheelite.Action");
+    }
+
+    @Test
+    public void testProcessEventRecordedWhenCompletedOnOtherThread() throws Exception {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        final SettableFuture<Void> actionFuture = SettableFuture.create();
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, new AsyncActionAdapter<Object>() {
+                    @Override
+                    public ListenableFuture<?> executeAsync(Object context, Optional<?> event) {
+                        return actionFuture;
+                    }
+                })
+                .withListener(new JfrStateMachineListener<Object, String>())
+                .build();
+        File file = File.createTempFile("scheelite", ".jfr");
+        file.deleteOnExit();
+
+        // when ... processing continues on the thread completing the action
+        Recording recording = new Recording();
+        try {
+            recording.start();
+            ListenableFuture<String> res = stateMachine.processEventAsync(new Object(), "A", "event");
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    actionFuture.set(null);
+                }
+            });
+            thread.start();
+            thread.join();
+            assertEquals(res.get(), "B");
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            recording.close();
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+
+        // then
+        RecordedEvent processEvent = findEvent(events, "com.headstartech.scheelite.ProcessEvent");
+        assertEquals(processEvent.getString("sourceStateId"), "A");
+        assertEquals(processEvent.getString("targetStateId"), "B");
+        assertFalse(processEvent.getBoolean("failed"));
+    }
+
+    private RecordedEvent findEvent(List<RecordedEvent> events, String name) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                return event;
+            }
+        }
+        throw new AssertionError("event not recorded: name=" + name);
+    }
+
+    static class TestState extends StateAdapter<Object, String> {
+
+        private final String id;
+
+        TestState(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TestState && id.equals(((TestState) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    static class TestGuard implements Guard<Object> {
+
+        @Override
+        public boolean evaluate(Object context, Optional<?> event) {
+            return true;
+        }
+    }
+
+    static class TestAction implements Action<Object> {
+
+        @Override
+        public void execute(Object context, Optional<?> event) {
+        }
+    }
+}
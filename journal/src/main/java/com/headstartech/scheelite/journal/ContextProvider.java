@@ -0,0 +1,17 @@
+package com.headstartech.scheelite.journal;
+
+/**
+ * Provides the context of an entity when replaying a journal.
+ *
+ * @param <T> context type
+ */
+public interface ContextProvider<T> {
+
+    /**
+     * Gets the context of the entity.
+     *
+     * @param key the entity key
+     * @return the context
+     */
+    T getContext(long key);
+}
@@ -0,0 +1,29 @@
+package com.headstartech.scheelite.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the events stored in a journal.
+ *
+ * @param <E> event type
+ */
+public interface EventCodec<E> {
+
+    /**
+     * Writes the event at the position of the buffer.
+     *
+     * @param event the event
+     * @param buffer the buffer
+     * @throws java.nio.BufferOverflowException if the remaining bytes of the buffer can't hold the event
+     */
+    void encode(E event, ByteBuffer buffer);
+
+    /**
+     * Reads an event written by {@link #encode(Object, ByteBuffer)}, i.e. the bytes from the position to the limit
+     * of the buffer.
+     *
+     * @param buffer the buffer
+     * @return the event
+     */
+    E decode(ByteBuffer buffer);
+}
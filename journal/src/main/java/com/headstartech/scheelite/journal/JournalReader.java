@@ -0,0 +1,83 @@
+package com.headstartech.scheelite.journal;
+
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateIdCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads the committed records of journal segments written by {@link JournalWriter}.
+ *
+ * Records are decoded straight from the memory-mapped segment, without copying. Instances are thread safe if the
+ * event codec is.
+ *
+ * @param <E> event type
+ * @param <U> state id type
+ */
+public class JournalReader<E, U> {
+
+    private final StateIdCodec<U> stateIdCodec;
+    private final EventCodec<E> eventCodec;
+
+    public JournalReader(StateIdCodec<U> stateIdCodec, EventCodec<E> eventCodec) {
+        this.stateIdCodec = checkNotNull(stateIdCodec);
+        this.eventCodec = checkNotNull(eventCodec);
+    }
+
+    /**
+     * Gets the segment files of the journal directory, in the order they were written.
+     */
+    public List<File> getSegments(File directory) throws IOException {
+        return JournalSegment.list(checkNotNull(directory));
+    }
+
+    /**
+     * Reads the committed records of a segment, in the order they were appended.
+     *
+     * @param segment the segment file
+     * @param handler the handler of the records
+     * @return the number of records read
+     * @throws IOException if the segment can't be read, isn't a journal segment, was written for a different state
+     *                     machine (see {@link StateIdCodec#getFingerprint()}) or holds a malformed record
+     * @throws ExecutionException if the handler throws an exception
+     */
+    public long read(File segment, JournalRecordHandler<E, U> handler) throws IOException, ExecutionException {
+        checkNotNull(segment);
+        checkNotNull(handler);
+        ByteBuffer buffer = JournalSegment.read(segment, stateIdCodec.getFingerprint());
+        int limit = buffer.limit();
+        long res = 0;
+        while (buffer.hasRemaining()) {
+            long key;
+            U stateId;
+            E event;
+            try {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                if (length < 0 || end > limit) {
+                    throw new IOException(String.format("malformed record: file=%s, position=%d",
+                            segment, buffer.position() - JournalSegment.LENGTH_SIZE));
+                }
+                key = Varints.readLong(buffer);
+                stateId = stateIdCodec.read(buffer);
+                buffer.limit(end);
+                event = eventCodec.decode(buffer);
+                buffer.limit(limit);
+                buffer.position(end);
+            } catch (BufferUnderflowException e) {
+                throw new IOException(String.format("truncated record: file=%s", segment), e);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("malformed record: file=%s", segment), e);
+            }
+            handler.handle(key, event, stateId);
+            res++;
+        }
+        return res;
+    }
+}
@@ -0,0 +1,24 @@
+package com.headstartech.scheelite.journal;
+
+import com.headstartech.scheelite.ExecutionException;
+
+/**
+ * Handles the records read from a journal segment.
+ *
+ * @param <E> event type
+ * @param <U> state id type
+ *
+ * @see JournalReader#read(java.io.File, JournalRecordHandler)
+ */
+public interface JournalRecordHandler<E, U> {
+
+    /**
+     * Handles a record.
+     *
+     * @param key the entity key
+     * @param event the event
+     * @param stateId the state id after processing the event
+     * @throws ExecutionException if handling the record fails
+     */
+    void handle(long key, E event, U stateId) throws ExecutionException;
+}
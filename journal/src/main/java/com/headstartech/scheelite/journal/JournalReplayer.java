@@ -0,0 +1,81 @@
+package com.headstartech.scheelite.journal;
+
+import com.google.common.collect.Maps;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateMachine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Replays journal segments through a state machine, rebuilding the current state of the entities.
+ *
+ * Every record is processed by the state machine, starting from the state of the entity after the previous record
+ * (or the state machine's initial state for entities not seen before), and the resulting state is checked against
+ * the state recorded in the journal. Pass the replay mode of the state machine (see
+ * {@link StateMachine#getReplayMode()}) to rebuild the states without running the actions and state callbacks again.
+ *
+ * @param <T> context type
+ * @param <E> event type
+ * @param <U> state id type
+ */
+public class JournalReplayer<T, E, U> {
+
+    private final StateMachine<T, U> stateMachine;
+    private final JournalReader<E, U> reader;
+    private final ContextProvider<T> contextProvider;
+
+    public JournalReplayer(StateMachine<T, U> stateMachine, JournalReader<E, U> reader, ContextProvider<T> contextProvider) {
+        this.stateMachine = checkNotNull(stateMachine);
+        this.reader = checkNotNull(reader);
+        this.contextProvider = checkNotNull(contextProvider);
+    }
+
+    /**
+     * Replays all segments of the journal directory.
+     *
+     * @return the state id of each entity in the journal
+     * @see #replay(File, Map)
+     */
+    public Map<Long, U> replayAll(File directory) throws IOException, ExecutionException {
+        Map<Long, U> res = Maps.newHashMap();
+        for (File segment : reader.getSegments(directory)) {
+            replay(segment, res);
+        }
+        return res;
+    }
+
+    /**
+     * Replays a segment.
+     *
+     * @param segment the segment file
+     * @param stateIds the state id of each entity before the segment, updated with the state ids after the segment
+     * @return <code>stateIds</code>
+     * @throws IOException if the segment can't be read
+     * @throws ExecutionException if the state machine throws an exception
+     * @throws IllegalStateException if the state machine ends up in a different state than the one recorded
+     */
+    public Map<Long, U> replay(File segment, final Map<Long, U> stateIds) throws IOException, ExecutionException {
+        checkNotNull(stateIds);
+        reader.read(segment, new JournalRecordHandler<E, U>() {
+            @Override
+            public void handle(long key, E event, U stateId) throws ExecutionException {
+                T context = contextProvider.getContext(key);
+                U current = stateIds.get(key);
+                if (current == null) {
+                    current = stateMachine.start(context);
+                }
+                U next = stateMachine.processEvent(context, current, event);
+                if (!next.equals(stateId)) {
+                    throw new IllegalStateException(String.format("replayed state doesn't match journal: key=%d, event=%s, stateId=%s, expected=%s",
+                            key, event, next, stateId));
+                }
+                stateIds.put(key, next);
+            }
+        });
+        return stateIds;
+    }
+}
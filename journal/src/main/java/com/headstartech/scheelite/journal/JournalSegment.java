@@ -0,0 +1,177 @@
+package com.headstartech.scheelite.journal;
+
+import com.google.common.collect.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A memory-mapped journal segment file.
+ *
+ * The segment starts with a header holding the format, the fingerprint of the state ids (see
+ * {@link com.headstartech.scheelite.StateIdCodec#getFingerprint()}) and the committed position. Records follow the
+ * header, each record being the length of the rest of the record (4 bytes), the entity key (varint), the ordinal of
+ * the resulting state id (varint) and the encoded event. Only records before the committed position are read, so
+ * records appended but not committed before a crash are ignored.
+ */
+final class JournalSegment {
+
+    static final String SUFFIX = ".journal";
+
+    static final int MAGIC = 0x53434a31;  // "SCJ1"
+    static final int HEADER_SIZE = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FINGERPRINT_OFFSET = 8;
+    private static final int COMMITTED_OFFSET = 16;
+    static final int LENGTH_SIZE = 4;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private long committed;
+
+    private JournalSegment(File file, MappedByteBuffer buffer, long committed) {
+        this.file = file;
+        this.buffer = buffer;
+        this.committed = committed;
+    }
+
+    /**
+     * Creates a segment file of the specified size.
+     */
+    static JournalSegment create(File file, long fingerprint, int size) throws IOException {
+        if (file.exists()) {
+            throw new IOException(String.format("segment already exists: file=%s", file));
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putLong(FINGERPRINT_OFFSET, fingerprint);
+            buffer.putLong(COMMITTED_OFFSET, HEADER_SIZE);
+            buffer.force();
+            buffer.position(HEADER_SIZE);
+            return new JournalSegment(file, buffer, HEADER_SIZE);
+        } finally {
+            // the mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Opens a segment file for reading, checking its format and fingerprint.
+     *
+     * @return the committed records
+     */
+    static ByteBuffer read(File file, long fingerprint) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_SIZE) {
+                throw new IOException(String.format("not a journal segment: file=%s", file));
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException(String.format("not a journal segment: file=%s", file));
+            }
+            if (buffer.getLong(FINGERPRINT_OFFSET) != fingerprint) {
+                throw new IOException(String.format("journal segment written for a different state machine: file=%s, fingerprint=%016x, expected=%016x",
+                        file, buffer.getLong(FINGERPRINT_OFFSET), fingerprint));
+            }
+            long committed = buffer.getLong(COMMITTED_OFFSET);
+            if (committed < HEADER_SIZE || committed > buffer.capacity()) {
+                throw new IOException(String.format("invalid committed position: file=%s, committed=%d", file, committed));
+            }
+            buffer.position(HEADER_SIZE);
+            buffer.limit((int) committed);
+            return buffer;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Gets the segment files in the directory, in the order they were written.
+     */
+    static List<File> list(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException(String.format("not a directory: directory=%s", directory));
+        }
+        List<File> res = Lists.newArrayList();
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(SUFFIX)) {
+                res.add(file);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Gets the name of the segment file with the specified index, sorting in index order.
+     */
+    static String getName(long index) {
+        return String.format(Locale.ROOT, "%016d%s", index, SUFFIX);
+    }
+
+    /**
+     * Parses the index of a segment file name.
+     *
+     * @return the index or <code>-1</code> if the name isn't a segment file name
+     */
+    static long getIndex(String name) {
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the buffer records are appended to, positioned after the last record. Only used by the appending thread.
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Makes the records before the position durable and marks them committed. The records are forced to disk
+     * before the committed position is updated, so the committed position never covers records not on disk.
+     */
+    synchronized void commit(int position) {
+        if (position <= committed) {
+            return;
+        }
+        buffer.force();
+        buffer.putLong(COMMITTED_OFFSET, position);
+        buffer.force();
+        committed = position;
+    }
+
+    /**
+     * Truncates the segment file after the committed records, when no more records are appended. The mapping is
+     * released when the segment is garbage collected.
+     */
+    synchronized void truncate() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(committed);
+        } finally {
+            raf.close();
+        }
+    }
+}
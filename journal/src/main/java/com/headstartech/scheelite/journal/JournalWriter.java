@@ -0,0 +1,205 @@
+package com.headstartech.scheelite.journal;
+
+import com.headstartech.scheelite.StateIdCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Appends records (entity key, event, resulting state id) to the memory-mapped segment files of a journal directory.
+ *
+ * Appending only copies the record to the mapped segment. Records are made durable by committing: a thread
+ * committing its record while another thread is forcing the segment to disk waits for that commit and then commits
+ * all records appended meanwhile with a single force (group commit). A new segment is started when a record doesn't
+ * fit the current segment, and when the writer is created, so existing segments are never written again. Closing the
+ * writer truncates the last segment after the committed records, so the unused part of the segment isn't kept on
+ * disk.
+ *
+ * Instances are thread safe.
+ *
+ * @param <E> event type
+ * @param <U> state id type
+ *
+ * @see JournalReader
+ */
+public class JournalWriter<E, U> implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final File directory;
+    private final StateIdCodec<U> stateIdCodec;
+    private final EventCodec<E> eventCodec;
+    private final int segmentSize;
+
+    private final Object appendLock = new Object();
+    private JournalSegment segment;  // guarded by appendLock
+    private long segmentIndex;  // guarded by appendLock
+    private long appended;  // guarded by appendLock
+    private boolean closed;  // guarded by appendLock
+
+    private final Object commitLock = new Object();
+    private long committed;  // guarded by commitLock
+    private boolean committing;  // guarded by commitLock
+
+    public JournalWriter(File directory, StateIdCodec<U> stateIdCodec, EventCodec<E> eventCodec) throws IOException {
+        this(directory, stateIdCodec, eventCodec, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public JournalWriter(File directory, StateIdCodec<U> stateIdCodec, EventCodec<E> eventCodec, int segmentSize) throws IOException {
+        this.directory = checkNotNull(directory);
+        this.stateIdCodec = checkNotNull(stateIdCodec);
+        this.eventCodec = checkNotNull(eventCodec);
+        checkArgument(segmentSize > JournalSegment.HEADER_SIZE, "segmentSize too small: segmentSize=%s", segmentSize);
+        this.segmentSize = segmentSize;
+
+        long lastIndex = -1;
+        for (File file : JournalSegment.list(directory)) {
+            lastIndex = Math.max(lastIndex, JournalSegment.getIndex(file.getName()));
+        }
+        synchronized (appendLock) {
+            this.segmentIndex = lastIndex;
+            startSegment();
+        }
+    }
+
+    /**
+     * Appends a record, not waiting for it to be durable.
+     *
+     * @param key the entity key
+     * @param event the event
+     * @param stateId the state id after processing the event
+     * @return the sequence number of the record, to pass to {@link #commit(long)}
+     * @throws IOException if a new segment can't be created
+     * @throws IllegalArgumentException if the record doesn't fit an empty segment
+     */
+    public long append(long key, E event, U stateId) throws IOException {
+        checkNotNull(event);
+        checkNotNull(stateId);
+        synchronized (appendLock) {
+            checkState(!closed, "journal writer closed");
+            if (!write(segment.getBuffer(), key, event, stateId)) {
+                // commit the full segment before starting the next, commits only cover the current segment
+                segment.commit(segment.getBuffer().position());
+                startSegment();
+                checkArgument(write(segment.getBuffer(), key, event, stateId), "record larger than segment: segmentSize=%s", segmentSize);
+            }
+            return ++appended;
+        }
+    }
+
+    /**
+     * Appends a record and waits for it to be durable.
+     *
+     * @see #append(long, Object, Object)
+     * @see #commit(long)
+     */
+    public void appendAndCommit(long key, E event, U stateId) throws IOException {
+        commit(append(key, event, stateId));
+    }
+
+    /**
+     * Waits for the record with the specified sequence number, and all records appended before it, to be durable.
+     *
+     * @param sequence the sequence number returned by {@link #append(long, Object, Object)}
+     */
+    public void commit(long sequence) throws IOException {
+        synchronized (commitLock) {
+            while (committed < sequence) {
+                if (!committing) {
+                    committing = true;
+                    break;
+                }
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting for commit", e);
+                }
+            }
+            if (committed >= sequence) {
+                return;
+            }
+        }
+
+        // lead the commit of all records appended so far
+        long target = 0;
+        try {
+            JournalSegment currentSegment;
+            int position;
+            synchronized (appendLock) {
+                currentSegment = segment;
+                position = segment.getBuffer().position();
+                target = appended;
+            }
+            currentSegment.commit(position);
+        } finally {
+            synchronized (commitLock) {
+                committed = Math.max(committed, target);
+                committing = false;
+                commitLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for all appended records to be durable.
+     */
+    public void commit() throws IOException {
+        long sequence;
+        synchronized (appendLock) {
+            sequence = appended;
+        }
+        commit(sequence);
+    }
+
+    /**
+     * Commits all appended records, truncates the current segment after them and closes the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        JournalSegment lastSegment;
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lastSegment = segment;
+        }
+        // nothing is appended once closed, so after this commit the segment is never written again
+        commit();
+        lastSegment.truncate();
+    }
+
+    private boolean write(ByteBuffer buffer, long key, E event, U stateId) {
+        int start = buffer.position();
+        if (buffer.remaining() < JournalSegment.LENGTH_SIZE) {
+            return false;
+        }
+        try {
+            buffer.position(start + JournalSegment.LENGTH_SIZE);
+            Varints.writeLong(key, buffer);
+            stateIdCodec.write(stateId, buffer);
+            eventCodec.encode(event, buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            return false;
+        } catch (RuntimeException e) {
+            buffer.position(start);
+            throw e;
+        }
+        buffer.putInt(start, buffer.position() - start - JournalSegment.LENGTH_SIZE);
+        return true;
+    }
+
+    private void startSegment() throws IOException {
+        segmentIndex++;
+        segment = JournalSegment.create(new File(directory, JournalSegment.getName(segmentIndex)), stateIdCodec.getFingerprint(), segmentSize);
+    }
+}
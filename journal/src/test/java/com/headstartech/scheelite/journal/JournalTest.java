@@ -0,0 +1,323 @@
+package com.headstartech.scheelite.journal;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateIdCodec;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class JournalTest {
+
+    private static final TestEvent NEXT = new Next();
+    private static final TestEvent RESET = new Reset();
+
+    private File directory;
+    private StateMachine<Object, String> stateMachine;
+    private StateIdCodec<String> stateIdCodec;
+    private JournalReader<TestEvent, String> reader;
+
+    @BeforeMethod
+    public void setup() {
+        directory = Files.createTempDir();
+        stateMachine = createStateMachine();
+        stateIdCodec = new StateIdCodec<String>(stateMachine.getConfiguration());
+        reader = new JournalReader<TestEvent, String>(stateIdCodec, new TestEventCodec());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void committedRecordsAreRead() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec());
+        writer.append(1, NEXT, "B");
+        writer.append(300, NEXT, "C");
+        writer.appendAndCommit(1, RESET, "A");
+        writer.close();
+
+        // when
+        List<String> records = readAll();
+
+        // then
+        assertEquals(records, Lists.newArrayList("1:next:B", "300:next:C", "1:reset:A"));
+    }
+
+    @Test
+    public void uncommittedRecordsAreIgnored() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec());
+        writer.appendAndCommit(1, NEXT, "B");
+        writer.append(1, NEXT, "C");
+
+        // when
+        List<String> records = readAll();
+
+        // then
+        assertEquals(records, Lists.newArrayList("1:next:B"));
+    }
+
+    @Test
+    public void newSegmentStartedWhenSegmentIsFull() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec(), 64);
+        List<String> expected = Lists.newArrayList();
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            writer.append(i, NEXT, "B");
+            expected.add(i + ":next:B");
+        }
+        writer.close();
+
+        // then
+        assertEquals(reader.getSegments(directory).size(), 4);
+        assertEquals(readAll(), expected);
+    }
+
+    @Test
+    public void newWriterStartsNewSegment() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec());
+        writer.appendAndCommit(1, NEXT, "B");
+        writer.close();
+
+        // when
+        writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec());
+        writer.appendAndCommit(1, NEXT, "C");
+        writer.close();
+
+        // then
+        assertEquals(reader.getSegments(directory).size(), 2);
+        assertEquals(readAll(), Lists.newArrayList("1:next:B", "1:next:C"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void recordLargerThanSegmentFails() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec(), 64);
+
+        // when
+        writer.append(1, new TestEvent("an event too large to fit in an empty segment of the journal"), "B");
+
+        // then ... exception should be thrown
+    }
+
+    @Test
+    public void concurrentCommitsAreGrouped() throws Exception {
+        // given
+        final JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec(), 4096);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = Lists.newArrayList();
+
+        // when
+        for (int i = 0; i < 4; i++) {
+            final long key = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int j = 0; j < 100; j++) {
+                        writer.appendAndCommit(key, NEXT, "B");
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(readAll().size(), 400);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void segmentOfOtherStateMachineFails() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec());
+        writer.appendAndCommit(1, NEXT, "B");
+        writer.close();
+        TestState a = new TestState("A");
+        TestState d = new TestState("D");
+        StateMachine<Object, String> other = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, d, Next.class)
+                .build();
+        JournalReader<TestEvent, String> otherReader = new JournalReader<TestEvent, String>(new StateIdCodec<String>(other.getConfiguration()),
+                new TestEventCodec());
+
+        // when
+        otherReader.read(otherReader.getSegments(directory).get(0), new CollectingHandler());
+
+        // then ... exception should be thrown
+    }
+
+    @Test
+    public void replayRebuildsStates() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec());
+        writer.append(1, NEXT, "B");
+        writer.append(2, NEXT, "B");
+        writer.append(1, NEXT, "C");
+        writer.append(3, RESET, "A");
+        writer.close();
+        JournalReplayer<Object, TestEvent, String> replayer = new JournalReplayer<Object, TestEvent, String>(stateMachine, reader, new TestContextProvider());
+
+        // when
+        Map<Long, String> states = replayer.replayAll(directory);
+
+        // then
+        Map<Long, String> expected = Maps.newHashMap();
+        expected.put(1L, "C");
+        expected.put(2L, "B");
+        expected.put(3L, "A");
+        assertEquals(states, expected);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void replayOfDivergingJournalFails() throws Exception {
+        // given
+        JournalWriter<TestEvent, String> writer = new JournalWriter<TestEvent, String>(directory, stateIdCodec, new TestEventCodec());
+        writer.append(1, NEXT, "C");
+        writer.close();
+        JournalReplayer<Object, TestEvent, String> replayer = new JournalReplayer<Object, TestEvent, String>(stateMachine, reader, new TestContextProvider());
+
+        // when
+        replayer.replayAll(directory);
+
+        // then ... exception should be thrown
+    }
+
+    private List<String> readAll() throws IOException, ExecutionException {
+        CollectingHandler handler = new CollectingHandler();
+        for (File segment : reader.getSegments(directory)) {
+            reader.read(segment, handler);
+        }
+        return handler.records;
+    }
+
+    // a -next-> b -next-> c, reset returns to a
+    private static StateMachine<Object, String> createStateMachine() {
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        TestState c = new TestState("C");
+        return StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, Next.class)
+                .withTransition(b, c, Next.class)
+                .withTransition(a, a, Reset.class)
+                .withTransition(b, a, Reset.class)
+                .withTransition(c, a, Reset.class)
+                .build();
+    }
+
+    static class TestEvent {
+
+        private final String name;
+
+        TestEvent(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static class Next extends TestEvent {
+
+        Next() {
+            super("next");
+        }
+    }
+
+    static class Reset extends TestEvent {
+
+        Reset() {
+            super("reset");
+        }
+    }
+
+    static class TestEventCodec implements EventCodec<TestEvent> {
+
+        @Override
+        public void encode(TestEvent event, ByteBuffer buffer) {
+            buffer.put(event.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public TestEvent decode(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            String name = new String(bytes, Charsets.UTF_8);
+            if (name.equals(NEXT.toString())) {
+                return NEXT;
+            } else if (name.equals(RESET.toString())) {
+                return RESET;
+            }
+            return new TestEvent(name);
+        }
+    }
+
+    static class CollectingHandler implements JournalRecordHandler<TestEvent, String> {
+
+        private final List<String> records = Lists.newArrayList();
+
+        @Override
+        public void handle(long key, TestEvent event, String stateId) {
+            records.add(key + ":" + event + ":" + stateId);
+        }
+    }
+
+    static class TestContextProvider implements ContextProvider<Object> {
+
+        @Override
+        public Object getContext(long key) {
+            return key;
+        }
+    }
+
+    static class TestState extends StateAdapter<Object, String> {
+
+        private final String id;
+
+        TestState(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+}
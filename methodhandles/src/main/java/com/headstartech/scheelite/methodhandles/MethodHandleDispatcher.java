@@ -0,0 +1,32 @@
+package com.headstartech.scheelite.methodhandles;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.Dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Dispatcher invoking a method handle chain created by {@link MethodHandleDispatcherFactory}.
+ *
+ * @param <T> context type
+ */
+final class MethodHandleDispatcher<T> implements Dispatcher<T> {
+
+    private final MethodHandle chain;
+
+    MethodHandleDispatcher(MethodHandle chain) {
+        this.chain = chain;
+    }
+
+    @Override
+    public long dispatch(T context, Object event, Optional<?> eventOpt) throws Exception {
+        try {
+            return (long) chain.invokeExact((Object) context, event, eventOpt, 0L);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.headstartech.scheelite.methodhandles;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.DispatchCandidate;
+import com.headstartech.scheelite.Dispatcher;
+import com.headstartech.scheelite.DispatcherFactory;
+import com.headstartech.scheelite.Guard;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Creates dispatchers evaluating the candidates through a method handle chain built when the state machine is built,
+ * for state machines built at runtime where generating a specialized state machine isn't an option.
+ *
+ * The chain is a tree of {@link MethodHandles#guardWithTest} handles, one per candidate in evaluation order. The test
+ * of a candidate checks the trigger event class of the candidate (if any) and then evaluates its guard (if any),
+ * each bound to the handle of the candidate.
+ *
+ * <pre>
+ * StateMachine&lt;Context, Id&gt; stateMachine = StateMachineBuilder.&lt;Context, Id&gt;newBuilder()
+ *      ...
+ *      .withDispatcherFactory(new MethodHandleDispatcherFactory())
+ *      .build();
+ * </pre>
+ */
+public class MethodHandleDispatcherFactory implements DispatcherFactory {
+
+    private static final MethodHandle IS_INSTANCE;  // (Class, Object)boolean
+    private static final MethodHandle EVALUATE;  // (Guard, Object, Optional)boolean
+    private static final MethodHandle SET_BIT;  // (long, long)long
+    private static final MethodHandle FALSE;  // (Object, Object, Optional)boolean
+    private static final MethodHandle TRIGGERED;  // (Object, Object, Optional, long)long
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            IS_INSTANCE = lookup.findVirtual(Class.class, "isInstance", methodType(boolean.class, Object.class));
+            EVALUATE = lookup.findVirtual(Guard.class, "evaluate", methodType(boolean.class, Object.class, Optional.class));
+            SET_BIT = lookup.findStatic(MethodHandleDispatcherFactory.class, "setBit", methodType(long.class, long.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        FALSE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, Object.class, Object.class, Optional.class);
+        TRIGGERED = MethodHandles.dropArguments(MethodHandles.identity(long.class), 0, Object.class, Object.class, Optional.class);
+    }
+
+    @Override
+    public <T> Dispatcher<T> createDispatcher(List<DispatchCandidate<T>> candidates, boolean firstMatch) {
+        checkNotNull(candidates);
+        checkArgument(candidates.size() <= Dispatcher.MAX_CANDIDATES, "too many candidates: size=%s", candidates.size());
+
+        // (context, event, eventOpt, triggered)triggered, built from the last candidate to the first
+        MethodHandle chain = TRIGGERED;
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            MethodHandle setBit = MethodHandles.insertArguments(SET_BIT, 1, 1L << i);
+            MethodHandle triggered = MethodHandles.filterArguments(firstMatch ? TRIGGERED : chain, 3, setBit);
+            MethodHandle test = createTest(candidates.get(i));
+            chain = test != null ? MethodHandles.guardWithTest(test, triggered, chain) : triggered;
+        }
+        return new MethodHandleDispatcher<T>(chain);
+    }
+
+    /**
+     * Creates the test of a candidate.
+     *
+     * @return the (context, event, eventOpt)boolean test or <code>null</code> if the candidate has neither a trigger
+     * event class nor a guard
+     */
+    private static MethodHandle createTest(DispatchCandidate<?> candidate) {
+        MethodHandle guardTest = null;
+        if (candidate.getGuard().isPresent()) {
+            guardTest = MethodHandles.dropArguments(EVALUATE.bindTo(candidate.getGuard().get()), 1, Object.class);
+        }
+        if (!candidate.getTriggerEventClass().isPresent()) {
+            return guardTest;
+        }
+        MethodHandle eventTest = MethodHandles.dropArguments(IS_INSTANCE.bindTo(candidate.getTriggerEventClass().get()), 0, Object.class);
+        eventTest = MethodHandles.dropArguments(eventTest, 2, Optional.class);
+        return guardTest != null ? MethodHandles.guardWithTest(eventTest, guardTest, FALSE) : eventTest;
+    }
+
+    private static long setBit(long triggered, long bit) {
+        return triggered | bit;
+    }
+}
@@ -0,0 +1,207 @@
+package com.headstartech.scheelite.methodhandles;
+
+import com.google.common.base.Optional;
+import com.headstartech.scheelite.DeclarationOrderResolver;
+import com.headstartech.scheelite.ExecutionException;
+import com.headstartech.scheelite.Guard;
+import com.headstartech.scheelite.StateAdapter;
+import com.headstartech.scheelite.StateMachine;
+import com.headstartech.scheelite.StateMachineBuilder;
+import com.headstartech.scheelite.StateMachineListenerAdapter;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class MethodHandleDispatcherFactoryTest {
+
+    @Test
+    public void guardsAreEvaluatedByMethodHandleChain() throws ExecutionException {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        TestGuard guard = new TestGuard(true);
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, guard)
+                .withDispatcherFactory(new MethodHandleDispatcherFactory())
+                .build();
+
+        // when
+        String res = stateMachine.processEvent(new Object(), "A", "event");
+
+        // then
+        assertEquals(res, "B");
+        assertTrue(guard.dispatched);
+    }
+
+    @Test
+    public void chainIsNotUsedWithListeners() throws ExecutionException {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        TestGuard guard = new TestGuard(true);
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, guard)
+                .withListener(new StateMachineListenerAdapter<Object, String>() {})
+                .withDispatcherFactory(new MethodHandleDispatcherFactory())
+                .build();
+
+        // when
+        String res = stateMachine.processEvent(new Object(), "A", "event");
+
+        // then
+        assertEquals(res, "B");
+        assertFalse(guard.dispatched);
+    }
+
+    @Test
+    public void triggerEventClassMatchesSubClasses() throws ExecutionException {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        TestState c = new TestState("C");
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, Number.class)
+                .withTransition(a, c, String.class)
+                .withDispatcherFactory(new MethodHandleDispatcherFactory())
+                .build();
+
+        // when
+        String number = stateMachine.processEvent(new Object(), "A", 1);
+        String string = stateMachine.processEvent(new Object(), "A", "event");
+        String other = stateMachine.processEvent(new Object(), "A", new Object());
+
+        // then
+        assertEquals(number, "B");
+        assertEquals(string, "C");
+        assertEquals(other, "A");
+    }
+
+    @Test
+    public void guardSelectsTransitionTakingTriggerlessTransitions() throws ExecutionException {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        TestState c = new TestState("C");
+        TestState d = new TestState("D");
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, new TestGuard(false))
+                .withTransition(a, c, String.class, new TestGuard(true))
+                .withTransition(c, d, new TestGuard(true))
+                .withDispatcherFactory(new MethodHandleDispatcherFactory())
+                .build();
+
+        // when
+        String res = stateMachine.processEvent(new Object(), "A", "event");
+
+        // then
+        assertEquals(res, "D");
+    }
+
+    @Test(expectedExceptions = ExecutionException.class)
+    public void multipleTriggeredTransitionsAreResolved() throws ExecutionException {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        TestState c = new TestState("C");
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, new TestGuard(true))
+                .withTransition(a, c, String.class, new TestGuard(true))
+                .withDispatcherFactory(new MethodHandleDispatcherFactory())
+                .build();
+
+        // when
+        stateMachine.processEvent(new Object(), "A", "event");
+    }
+
+    @Test
+    public void priorityResolverStopsAtFirstTriggeredTransition() throws ExecutionException {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        TestState c = new TestState("C");
+        TestGuard second = new TestGuard(true);
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, new TestGuard(true))
+                .withTransition(a, c, String.class, second)
+                .withMultipleTransitionsTriggerPolicy(new DeclarationOrderResolver<Object, String>())
+                .withDispatcherFactory(new MethodHandleDispatcherFactory())
+                .build();
+
+        // when
+        String res = stateMachine.processEvent(new Object(), "A", "event");
+
+        // then
+        assertEquals(res, "B");
+        assertEquals(second.count, 0);
+    }
+
+    @Test
+    public void guardExceptionIsWrapped() {
+        // given
+        TestState a = new TestState("A");
+        TestState b = new TestState("B");
+        final Exception exception = new Exception();
+        StateMachine<Object, String> stateMachine = StateMachineBuilder.<Object, String>newBuilder()
+                .withInitialTransition(a)
+                .withTransition(a, b, String.class, new Guard<Object>() {
+                    @Override
+                    public boolean evaluate(Object context, Optional<?> event) throws Exception {
+                        throw exception;
+                    }
+                })
+                .withDispatcherFactory(new MethodHandleDispatcherFactory())
+                .build();
+
+        // when
+        try {
+            stateMachine.processEvent(new Object(), "A", "event");
+            fail("no exception thrown");
+        } catch (ExecutionException e) {
+            // then
+            assertEquals(e.getCause(), exception);
+        }
+    }
+
+    static class TestState extends StateAdapter<Object, String> {
+
+        private final String id;
+
+        TestState(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+
+    static class TestGuard implements Guard<Object> {
+
+        private final boolean result;
+        int count;
+        boolean dispatched;  // evaluated by a method handle dispatcher
+
+        TestGuard(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean evaluate(Object context, Optional<?> event) {
+            ++count;
+            for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+                dispatched |= element.getClassName().equals(MethodHandleDispatcher.class.getName());
+            }
+            return result;
+        }
+    }
+}
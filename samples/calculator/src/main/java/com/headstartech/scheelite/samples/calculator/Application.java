@@ -8,9 +8,27 @@ import com.headstartech.scheelite.StateMachineBuilder;
  */
 public class Application {
 
-    @SuppressWarnings("unchecked")
     public static void main(String[] args) throws Exception {
+        StateMachine<CalculatorContext, CalculatorState> fsm = createStateMachine();
+
+        CalculatorContext context = new CalculatorContext();
+        CalculatorState state = fsm.start(context);
+        state = fsm.processEvent(context, state, new DigitEvent(7));
+        state = fsm.processEvent(context, state, new OperationEvent(Operation.ADDITION));
+        state = fsm.processEvent(context, state, new DigitEvent(4));
+        state = fsm.processEvent(context, state, new ResultEvent());
+        state = fsm.processEvent(context, state, new OperationEvent(Operation.SUBTRACTION));
+        state = fsm.processEvent(context, state, new DigitEvent(2));
+        state = fsm.processEvent(context, state, new ResultEvent());
+        fsm.processEvent(context, state, new OffEvent());
+    }
+
+    public static StateMachine<CalculatorContext, CalculatorState> createStateMachine() {
+        return createStateMachineBuilder().build();
+    }
 
+    @SuppressWarnings("unchecked")
+    public static StateMachineBuilder<CalculatorContext, CalculatorState> createStateMachineBuilder() {
         OnState onState = new OnState();
         InitState initState = new InitState();
         Operand1State operand1State = new Operand1State();
@@ -19,8 +37,8 @@ public class Application {
         ResultState resultState = new ResultState();
         OffState offState = new OffState();
 
-        StateMachineBuilder<CalculatorContext, CalculatorState> fsmBuilder = StateMachineBuilder.<CalculatorContext, CalculatorState>newBuilder();
-        StateMachine<CalculatorContext, CalculatorState> fsm = fsmBuilder
+        StateMachineBuilder<CalculatorContext, CalculatorState> fsmBuilder = StateMachineBuilder.<CalculatorContext, CalculatorState>forEnum(CalculatorState.class);
+        return fsmBuilder
                 .withInitialTransition(onState)
                 .withCompositeState(onState, initState, operand1State, operand2State, opEnteredState, resultState)
                 .withTransition(initState, operand1State, DigitEvent.class)
@@ -29,19 +47,6 @@ public class Application {
                 .withTransition(operand2State, resultState, ResultEvent.class)
                 .withTransition(resultState, operand1State, DigitEvent.class)
                 .withTransition(resultState, opEnteredState, OperationEvent.class)
-                .withTransition(onState, offState, OffEvent.class)
-                .build();
-
-
-        CalculatorContext context = new CalculatorContext();
-        CalculatorState state = fsm.start(context);
-        state = fsm.processEvent(context, state, new DigitEvent(7));
-        state = fsm.processEvent(context, state, new OperationEvent(Operation.ADDITION));
-        state = fsm.processEvent(context, state, new DigitEvent(4));
-        state = fsm.processEvent(context, state, new ResultEvent());
-        state = fsm.processEvent(context, state, new OperationEvent(Operation.SUBTRACTION));
-        state = fsm.processEvent(context, state, new DigitEvent(2));
-        state = fsm.processEvent(context, state, new ResultEvent());
-        fsm.processEvent(context, state, new OffEvent());
+                .withTransition(onState, offState, OffEvent.class);
     }
 }
@@ -11,7 +11,7 @@ public class CalculatorContext {
     private Integer result;
     private Operation op;
 
-    CalculatorContext() {
+    public CalculatorContext() {
     }
 
     void clear() {